@@ -0,0 +1,226 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.xml.bind.DatatypeConverter;
+
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.artifact.Artifact;
+import org.sonatype.aether.repository.Authentication;
+import org.sonatype.aether.repository.LocalArtifactRequest;
+import org.sonatype.aether.repository.LocalArtifactResult;
+import org.sonatype.aether.repository.RemoteRepository;
+import org.sonatype.aether.resolution.ArtifactRequest;
+import org.sonatype.aether.resolution.ArtifactResolutionException;
+import org.sonatype.aether.resolution.ArtifactResult;
+import org.sonatype.aether.util.artifact.DefaultArtifact;
+
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.commons.SemVersion;
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+import eu.trentorise.opendata.josman.exceptions.JosmanNotFoundException;
+
+/**
+ * Resolves javadoc jars like Maven does: local repository first, then remote
+ * repositories and mirrors configured for the build. Downloaded jars stay in
+ * the local repository, checksums are verified according to the session
+ * policy.
+ * 
+ * Single files of a jar, like the eval map, are read from the local
+ * repository if the jar is there, otherwise they are fetched with http Range
+ * requests from the same repositories, honouring mirrors, proxies and
+ * authentication of Maven settings.
+ * 
+ * @since 0.8.0
+ */
+public class AetherJavadocResolver implements JavadocResolver {
+
+    private static final Logger LOG = Logger.getLogger(AetherJavadocResolver.class.getName());
+
+    private final RepositorySystem repoSystem;
+
+    private final RepositorySystemSession repoSession;
+
+    private final ImmutableList<RemoteRepository> remoteRepos;
+
+    /**
+     * @since 0.8.0
+     */
+    public AetherJavadocResolver(RepositorySystem repoSystem, RepositorySystemSession repoSession,
+            List<RemoteRepository> remoteRepos) {
+        checkNotNull(repoSystem);
+        checkNotNull(repoSession);
+        checkNotNull(remoteRepos);
+        this.repoSystem = repoSystem;
+        this.repoSession = repoSession;
+        this.remoteRepos = ImmutableList.copyOf(remoteRepos);
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Override
+    public File resolve(String groupId, String artifactId, SemVersion version) {
+        checkNotEmpty(groupId, "Invalid groupId!");
+        checkNotEmpty(artifactId, "Invalid artifactId!");
+        checkNotNull(version);
+
+        ArtifactRequest request = new ArtifactRequest();
+        request.setArtifact(javadocArtifact(groupId, artifactId, version));
+        request.setRepositories(remoteRepos);
+        File ret;
+        try {
+            ArtifactResult result = repoSystem.resolveArtifact(repoSession, request);
+            ret = result.getArtifact()
+                        .getFile();
+        } catch (ArtifactResolutionException ex) {
+            throw new JosmanNotFoundException("Couldn't resolve javadoc jar of " + groupId + ":" + artifactId + ":"
+                    + version, ex);
+        } catch (RuntimeException ex) {
+            throw new JosmanIoException("Error while resolving javadoc jar of " + groupId + ":" + artifactId + ":"
+                    + version, ex);
+        }
+        if (ret == null || !ret.isFile()) {
+            throw new JosmanNotFoundException("Couldn't resolve javadoc jar of " + groupId + ":" + artifactId + ":"
+                    + version);
+        }
+        return ret;
+    }
+
+    private static Artifact javadocArtifact(String groupId, String artifactId, SemVersion version) {
+        return new DefaultArtifact(groupId, artifactId, "javadoc", "jar", version.toString());
+    }
+
+    /**
+     * Returns the content of file at {@code entryPath} inside the javadoc jar,
+     * or null if the jar doesn't have it. If the jar is not in the local
+     * repository, only the needed parts of it are downloaded with http Range
+     * requests, trying remote repositories in order. If a repository doesn't
+     * support them, the whole jar is resolved.
+     * 
+     * @since 0.8.0
+     */
+    @Override
+    @Nullable
+    public byte[] fetchEntry(String groupId, String artifactId, SemVersion version, String entryPath) {
+        checkNotEmpty(groupId, "Invalid groupId!");
+        checkNotEmpty(artifactId, "Invalid artifactId!");
+        checkNotNull(version);
+        checkNotEmpty(entryPath, "Invalid entry path!");
+
+        Artifact artifact = javadocArtifact(groupId, artifactId, version);
+        LocalArtifactResult local = repoSession.getLocalRepositoryManager()
+                                               .find(repoSession, new LocalArtifactRequest(artifact, remoteRepos,
+                                                       null));
+        if (local.getFile() != null && local.getFile()
+                                            .isFile()) {
+            LOG.log(Level.FINE, "Reading {0} from local {1}", new Object[] { entryPath, local.getFile() });
+            return CentralJavadocResolver.readEntry(local.getFile(), entryPath);
+        }
+        if (repoSession.isOffline()) {
+            throw new JosmanNotFoundException("Javadoc jar of " + artifact + " is not in local repository "
+                    + "and Maven is offline");
+        }
+
+        String path = groupId.replace(".", "/") + "/" + artifactId + "/" + version + "/"
+                + Josmans.javadocJarName(artifactId, version);
+        IOException lastError = null;
+        for (RemoteRepository configured : remoteRepos) {
+            RemoteRepository repo = effectiveRepository(configured);
+            if (!repo.getPolicy(false)
+                     .isEnabled()
+                    || !("http".equals(repo.getProtocol()) || "https".equals(repo.getProtocol()))) {
+                continue;
+            }
+            String url = repo.getUrl()
+                             .endsWith("/") ? repo.getUrl() + path : repo.getUrl() + "/" + path;
+            Map<String, String> headers = new HashMap<>();
+            Authentication auth = repo.getAuthentication();
+            if (auth != null && auth.getUsername() != null) {
+                headers.put("Authorization", basic(auth));
+            }
+            Proxy proxy = null;
+            org.sonatype.aether.repository.Proxy repoProxy = repo.getProxy();
+            if (repoProxy != null) {
+                proxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(repoProxy.getHost(), repoProxy.getPort()));
+                if (repoProxy.getAuthentication() != null && repoProxy.getAuthentication()
+                                                                      .getUsername() != null) {
+                    headers.put("Proxy-Authorization", basic(repoProxy.getAuthentication()));
+                }
+            }
+            try {
+                RemoteZip zip = new RemoteZip(new URL(url), proxy, headers);
+                byte[] ret = zip.read(entryPath);
+                LOG.log(Level.INFO, "Read {0} from {1} with {2} range requests, {3} bytes",
+                        new Object[] { entryPath, url, zip.getRequests(), zip.getDownloaded() });
+                return ret;
+            } catch (RemoteZip.RangeNotSupportedException ex) {
+                LOG.log(Level.INFO, "Range requests not supported ({0}), resolving whole jar", ex.getMessage());
+                return CentralJavadocResolver.readEntry(resolve(groupId, artifactId, version), entryPath);
+            } catch (FileNotFoundException ex) {
+                LOG.log(Level.FINE, "Javadoc jar not found at {0}", url);
+            } catch (IOException ex) {
+                LOG.log(Level.FINE, "Couldn't read " + entryPath + " from " + url, ex);
+                lastError = ex;
+            }
+        }
+        if (lastError != null) {
+            throw new JosmanIoException("Error while reading " + entryPath + " from javadoc jar of " + artifact
+                    + " in " + remoteRepos, lastError);
+        }
+        throw new JosmanNotFoundException("Couldn't find javadoc jar of " + artifact + " in " + remoteRepos);
+    }
+
+    /**
+     * Returns the repository requests actually go to, with mirror, proxy and
+     * authentication from Maven settings. Repositories of the project usually
+     * have them already.
+     */
+    private RemoteRepository effectiveRepository(RemoteRepository repo) {
+        RemoteRepository ret = repo;
+        if (repoSession.getMirrorSelector() != null) {
+            RemoteRepository mirror = repoSession.getMirrorSelector()
+                                                 .getMirror(repo);
+            if (mirror != null) {
+                ret = mirror;
+            }
+        }
+        if (ret.getProxy() == null && repoSession.getProxySelector() != null) {
+            ret = ret.setProxy(repoSession.getProxySelector()
+                                          .getProxy(ret));
+        }
+        if (ret.getAuthentication() == null && repoSession.getAuthenticationSelector() != null) {
+            ret = ret.setAuthentication(repoSession.getAuthenticationSelector()
+                                                   .getAuthentication(ret));
+        }
+        return ret;
+    }
+
+    private static String basic(Authentication auth) {
+        String password = auth.getPassword() == null ? "" : auth.getPassword();
+        return "Basic " + DatatypeConverter.printBase64Binary((auth.getUsername() + ":" + password)
+                                                                    .getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String toString() {
+        return "Maven repositories " + remoteRepos;
+    }
+}
@@ -0,0 +1,265 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.apache.commons.csv.CSVRecord;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Records for each generated output file the fingerprint of the inputs it was
+ * made from, so later builds can skip outputs whose inputs didn't change.
+ * Paths are stored relative to the pages dir.
+ *
+ * The manifest of previous build is only trusted if it was made with the same
+ * site fingerprint (tags, configuration, templates...), otherwise it is
+ * considered empty.
+ *
+ * Thread safe.
+ *
+ * @since 0.8.0
+ */
+final class BuildManifest {
+
+    private static final Logger LOG = Logger.getLogger(BuildManifest.class.getName());
+
+    /**
+     * Name of the manifest file inside the pages dir. It starts with a dot so
+     * Github Pages won't serve it.
+     */
+    static final String FILENAME = ".josman-manifest.csv";
+
+    private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT.withRecordSeparator("\n");
+
+    private static final String[] CSV_HEADER = { "output", "fingerprint" };
+
+    /**
+     * Key under which the site fingerprint is stored.
+     */
+    private static final String SITE_KEY = "*";
+
+    private final File pagesDir;
+
+    private final String siteFingerprint;
+
+    private final Map<String, String> previous;
+
+    private final boolean reusable;
+
+    private final ConcurrentMap<String, String> current;
+
+    private final Set<String> changed;
+
+    private BuildManifest(File pagesDir, String siteFingerprint, Map<String, String> previous, boolean reusable) {
+        this.pagesDir = pagesDir.getAbsoluteFile();
+        this.siteFingerprint = siteFingerprint;
+        this.previous = previous;
+        this.reusable = reusable;
+        this.current = new ConcurrentHashMap<>();
+        this.changed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    }
+
+    /**
+     * Loads the manifest of previous build from {@code pagesDir}. If it is
+     * missing, unreadable or was made with a different site fingerprint, the
+     * returned manifest is not {@link #isReusable() reusable}.
+     *
+     * @since 0.8.0
+     */
+    static BuildManifest load(File pagesDir, String siteFingerprint) {
+        checkNotNull(pagesDir);
+        checkNotNull(siteFingerprint);
+
+        File file = new File(pagesDir, FILENAME);
+        Map<String, String> previous = new HashMap<>();
+        boolean reusable = false;
+
+        if (file.exists()) {
+            try (Reader in = new InputStreamReader(new FileInputStream(file), "UTF-8")) {
+                boolean header = true;
+                for (CSVRecord record : CSV_FORMAT.parse(in)) {
+                    if (header) {
+                        header = false;
+                    } else {
+                        previous.put(record.get(0), record.get(1));
+                    }
+                }
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Couldn't read build manifest " + file.getAbsolutePath()
+                        + ", will regenerate everything.", ex);
+                previous.clear();
+            }
+            if (!siteFingerprint.equals(previous.get(SITE_KEY))) {
+                LOG.info("Tags, configuration or templates changed since previous build, will regenerate everything.");
+                previous.clear();
+            } else {
+                reusable = true;
+            }
+        } else {
+            LOG.info("Couldn't find build manifest " + file.getAbsolutePath() + ", will regenerate everything.");
+        }
+        previous.remove(SITE_KEY);
+        return new BuildManifest(pagesDir, siteFingerprint, previous, reusable);
+    }
+
+    /**
+     * Returns true if outputs of previous build can be kept.
+     *
+     * @since 0.8.0
+     */
+    boolean isReusable() {
+        return reusable;
+    }
+
+    /**
+     * Returns the fingerprint of inputs shared by all the pages
+     *
+     * @since 0.8.0
+     */
+    String getSiteFingerprint() {
+        return siteFingerprint;
+    }
+
+    /**
+     * Deletes the manifest file, so if the build is interrupted outputs
+     * written in the meanwhile won't be trusted by the next one.
+     *
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    void invalidate() {
+        File file = new File(pagesDir, FILENAME);
+        if (file.exists() && !file.delete()) {
+            throw new JosmanIoException("Couldn't delete build manifest " + file.getAbsolutePath());
+        }
+    }
+
+    private String relPath(File target) {
+        return pagesDir.toURI()
+                       .relativize(target.getAbsoluteFile()
+                                         .toURI())
+                       .getPath();
+    }
+
+    /**
+     * Returns true if {@code target} exists and was made by previous build from
+     * inputs with the same {@code fingerprint}, and wasn't written since by
+     * current build (i.e. a template image overridden by a docs image). If so,
+     * {@code target} is kept in the manifest.
+     *
+     * @since 0.8.0
+     */
+    boolean isUpToDate(File target, String fingerprint) {
+        checkNotNull(fingerprint);
+        String relPath = relPath(target);
+        if (fingerprint.equals(previous.get(relPath)) && !changed.contains(relPath) && target.exists()) {
+            current.put(relPath, fingerprint);
+            return true;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Records {@code target} was just written from inputs with given
+     * {@code fingerprint}. Use an empty fingerprint for outputs which must
+     * always be regenerated.
+     *
+     * @since 0.8.0
+     */
+    void record(File target, String fingerprint) {
+        checkNotNull(fingerprint);
+        String relPath = relPath(target);
+        current.put(relPath, fingerprint);
+        changed.add(relPath);
+    }
+
+    /**
+     * Deletes outputs inside {@code dir} that were made by previous build but
+     * were neither kept nor written by current one.
+     *
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    void deleteStale(File dir) {
+        String prefix = relPath(dir);
+        if (!prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        for (String relPath : previous.keySet()) {
+            if (relPath.startsWith(prefix) && !current.containsKey(relPath)) {
+                File file = new File(pagesDir, relPath);
+                LOG.log(Level.INFO, "Deleting stale output {0}", file.getAbsolutePath());
+                if (file.exists() && !file.delete()) {
+                    throw new JosmanIoException("Couldn't delete stale output " + file.getAbsolutePath());
+                }
+                changed.add(relPath);
+            }
+        }
+    }
+
+    /**
+     * Returns true if any output inside {@code dir} was written or deleted
+     * during current build.
+     *
+     * @since 0.8.0
+     */
+    boolean isChanged(File dir) {
+        String prefix = relPath(dir);
+        if (!prefix.endsWith("/")) {
+            prefix += "/";
+        }
+        for (String relPath : changed) {
+            if (relPath.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes the manifest of current build into the pages dir.
+     *
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    void save() {
+        File file = new File(pagesDir, FILENAME);
+        TreeMap<String, String> sorted = new TreeMap<>(current);
+        try (Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+                CSVPrinter printer = new CSVPrinter(out, CSV_FORMAT)) {
+            printer.printRecord((Object[]) CSV_HEADER);
+            printer.printRecord(SITE_KEY, siteFingerprint);
+            for (Map.Entry<String, String> entry : sorted.entrySet()) {
+                printer.printRecord(entry.getKey(), entry.getValue());
+            }
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while writing build manifest " + file.getAbsolutePath(), ex);
+        }
+        LOG.log(Level.INFO, "Wrote build manifest with {0} outputs, {1} of them changed",
+                new Object[] { sorted.size(), changed.size() });
+    }
+}
@@ -0,0 +1,335 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import eu.trentorise.opendata.commons.SemVersion;
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+import eu.trentorise.opendata.josman.exceptions.JosmanNotFoundException;
+
+/**
+ * Downloads javadoc jars from a Maven repository over http, by default Maven
+ * Central. Used when Maven repositories of the build are not available, i.e.
+ * outside of Maven.
+ *
+ * If a cache directory is provided, jars are kept there among builds
+ * together with their SHA-1, which is checked against the one published by
+ * the repository on download and against the jar each time it is reused.
+ *
+ * Single files of a jar, like the eval map, can also be fetched with
+ * {@link #fetchEntry(String, String, SemVersion, String) fetchEntry} without
+ * downloading the whole jar.
+ *
+ * @since 0.8.0
+ */
+public class CentralJavadocResolver implements JavadocResolver {
+
+    private static final Logger LOG = Logger.getLogger(CentralJavadocResolver.class.getName());
+
+    /**
+     * @since 0.8.0
+     */
+    public static final String CENTRAL_URL = "https://repo1.maven.org/maven2";
+
+    private static final int TIMEOUT_MILLIS = 20000;
+
+    private final String repoUrl;
+
+    @Nullable
+    private final File cacheDir;
+
+    /**
+     * Creates a resolver for Maven Central.
+     *
+     * @param cacheDir
+     *            directory where to keep jars among builds. If null jars are
+     *            downloaded into temporary files each time.
+     *
+     * @since 0.8.0
+     */
+    public CentralJavadocResolver(@Nullable File cacheDir) {
+        this(CENTRAL_URL, cacheDir);
+    }
+
+    /**
+     * @param repoUrl
+     *            base url of a Maven 2 repository, i.e. {@link #CENTRAL_URL}
+     * @param cacheDir
+     *            directory where to keep jars among builds. If null jars are
+     *            downloaded into temporary files each time.
+     *
+     * @since 0.8.0
+     */
+    public CentralJavadocResolver(String repoUrl, @Nullable File cacheDir) {
+        checkNotEmpty(repoUrl, "Invalid repository url!");
+        this.repoUrl = repoUrl.endsWith("/") ? repoUrl.substring(0, repoUrl.length() - 1) : repoUrl;
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Override
+    public File resolve(String groupId, String artifactId, SemVersion version) {
+        checkNotEmpty(groupId, "Invalid groupId!");
+        checkNotEmpty(artifactId, "Invalid artifactId!");
+        checkNotNull(version);
+
+        String jarName = Josmans.javadocJarName(artifactId, version);
+        String url = repoUrl + "/" + groupId.replace(".", "/") + "/" + artifactId + "/" + version + "/" + jarName;
+
+        File jarFile;
+        File sha1File;
+        if (cacheDir == null) {
+            try {
+                jarFile = File.createTempFile(groupId + "-" + artifactId + "-javadoc", ".jar");
+                jarFile.deleteOnExit();
+            } catch (IOException ex) {
+                throw new JosmanIoException("Couldn't create target javadoc file!", ex);
+            }
+            sha1File = null;
+        } else {
+            File dir = new File(new File(new File(new File(cacheDir, "javadoc"), groupId), artifactId),
+                    version.toString());
+            jarFile = new File(dir, jarName);
+            sha1File = new File(dir, jarName + ".sha1");
+            if (isCacheValid(jarFile, sha1File)) {
+                LOG.log(Level.INFO, "Using cached javadoc {0}", jarFile.getAbsolutePath());
+                return jarFile;
+            }
+        }
+
+        LOG.log(Level.INFO, "Fetching javadoc from {0} into {1} ...", new Object[] { url, jarFile.getAbsolutePath() });
+        File tmp = null;
+        try {
+            File parent = jarFile.getParentFile();
+            if (!parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Couldn't create directory " + parent.getAbsolutePath());
+            }
+            tmp = File.createTempFile(jarName, ".tmp", parent);
+            FileUtils.copyURLToFile(new URL(url), tmp, TIMEOUT_MILLIS, TIMEOUT_MILLIS);
+
+            String sha1 = sha1(tmp);
+            String expectedSha1 = fetchSha1(url + ".sha1");
+            if (expectedSha1 != null && !expectedSha1.equalsIgnoreCase(sha1)) {
+                throw new IOException("SHA-1 mismatch for " + url + ": expected " + expectedSha1 + ", found instead "
+                        + sha1);
+            }
+            moveAtomically(tmp, jarFile);
+            tmp = null;
+            if (sha1File != null) {
+                FileUtils.write(sha1File, sha1, "UTF-8");
+            }
+            LOG.log(Level.INFO, "Done copying javadoc.");
+            return jarFile;
+        } catch (FileNotFoundException ex) {
+            throw new JosmanNotFoundException("Couldn't find javadoc at " + url, ex);
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while fetch-and-write javadoc for " + groupId + "/" + artifactId + "-"
+                    + version + " into file " + jarFile.getAbsolutePath(), ex);
+        } finally {
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Returns the content of file at {@code entryPath} inside the javadoc jar,
+     * or null if the jar doesn't have it. If the jar isn't cached, only the
+     * needed parts of it are downloaded with http Range requests, falling
+     * back to downloading the whole jar if the repository doesn't support
+     * them. Results are kept in cache dir, if any.
+     *
+     * @param entryPath
+     *            path inside the jar, i.e.
+     *            {@link JosmanProject#RELATIVE_EVAL_FILEPATH}
+     * @throws JosmanNotFoundException
+     *             if the jar doesn't exist
+     * @throws JosmanIoException
+     *             on any other error
+     *
+     * @since 0.8.0
+     */
+    @Override
+    @Nullable
+    public byte[] fetchEntry(String groupId, String artifactId, SemVersion version, String entryPath) {
+        checkNotEmpty(groupId, "Invalid groupId!");
+        checkNotEmpty(artifactId, "Invalid artifactId!");
+        checkNotNull(version);
+        checkNotEmpty(entryPath, "Invalid entry path!");
+
+        String jarName = Josmans.javadocJarName(artifactId, version);
+        String url = repoUrl + "/" + groupId.replace(".", "/") + "/" + artifactId + "/" + version + "/" + jarName;
+
+        File entryFile = null;
+        File missingFile = null;
+        if (cacheDir != null) {
+            File dir = new File(new File(new File(new File(cacheDir, "javadoc"), groupId), artifactId),
+                    version.toString());
+            File jarFile = new File(dir, jarName);
+            if (isCacheValid(jarFile, new File(dir, jarName + ".sha1"))) {
+                return readEntry(jarFile, entryPath);
+            }
+            File entriesDir = new File(dir, "entries");
+            entryFile = new File(entriesDir, entryPath);
+            missingFile = new File(entriesDir, entryPath + ".missing");
+            try {
+                if (entryFile.isFile()) {
+                    LOG.log(Level.FINE, "Using cached {0}", entryFile.getAbsolutePath());
+                    return FileUtils.readFileToByteArray(entryFile);
+                }
+                if (missingFile.isFile()) {
+                    return null;
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Couldn't read cached {0}, fetching it again", entryFile.getAbsolutePath());
+            }
+        }
+
+        byte[] ret;
+        try {
+            RemoteZip zip = new RemoteZip(new URL(url));
+            ret = zip.read(entryPath);
+            LOG.log(Level.INFO, "Read {0} from {1} with {2} range requests, {3} bytes",
+                    new Object[] { entryPath, url, zip.getRequests(), zip.getDownloaded() });
+        } catch (RemoteZip.RangeNotSupportedException ex) {
+            LOG.log(Level.INFO, "Range requests not supported ({0}), fetching whole jar", ex.getMessage());
+            return readEntry(resolve(groupId, artifactId, version), entryPath);
+        } catch (FileNotFoundException ex) {
+            throw new JosmanNotFoundException("Couldn't find javadoc at " + url, ex);
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while reading " + entryPath + " from " + url, ex);
+        }
+
+        if (entryFile != null) {
+            try {
+                if (ret == null) {
+                    FileUtils.write(missingFile, "", "UTF-8");
+                } else {
+                    File parent = entryFile.getParentFile();
+                    if (!parent.mkdirs() && !parent.isDirectory()) {
+                        throw new IOException("Couldn't create directory " + parent.getAbsolutePath());
+                    }
+                    File tmp = File.createTempFile(entryFile.getName(), ".tmp", entryFile.getParentFile());
+                    FileUtils.writeByteArrayToFile(tmp, ret);
+                    moveAtomically(tmp, entryFile);
+                }
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, "Couldn't cache {0}", entryFile.getAbsolutePath());
+                LOG.log(Level.FINE, "Error was: ", ex);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns null if jar doesn't have the entry.
+     *
+     * @throws JosmanIoException
+     */
+    @Nullable
+    static byte[] readEntry(File jarFile, String entryPath) {
+        try (JarFile jar = new JarFile(jarFile)) {
+            JarEntry entry = jar.getJarEntry(entryPath);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = jar.getInputStream(entry)) {
+                return IOUtils.toByteArray(in);
+            }
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while reading " + entryPath + " from " + jarFile.getAbsolutePath(), ex);
+        }
+    }
+
+    /**
+     * Returns true if jar exists and matches the stored SHA-1.
+     */
+    private static boolean isCacheValid(File jarFile, File sha1File) {
+        if (!jarFile.isFile() || !sha1File.isFile()) {
+            return false;
+        }
+        try {
+            String expected = FileUtils.readFileToString(sha1File, "UTF-8")
+                                       .trim();
+            if (expected.equalsIgnoreCase(sha1(jarFile))) {
+                return true;
+            }
+            LOG.log(Level.WARNING, "Cached javadoc {0} is corrupted, fetching it again", jarFile.getAbsolutePath());
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Couldn't verify cached javadoc {0}, fetching it again", jarFile.getAbsolutePath());
+            LOG.log(Level.FINE, "Error was: ", ex);
+        }
+        return false;
+    }
+
+    /**
+     * Returns the published SHA-1, or null if repository doesn't have it.
+     */
+    @Nullable
+    private static String fetchSha1(String url) throws IOException {
+        try (InputStream in = new URL(url).openStream()) {
+            String text = IOUtils.toString(in, "UTF-8")
+                                 .trim();
+            // some repos also put the file name after the hash
+            int space = text.indexOf(' ');
+            return space == -1 ? text : text.substring(0, space);
+        } catch (FileNotFoundException ex) {
+            LOG.log(Level.WARNING, "No SHA-1 published at {0}, can't verify download", url);
+            return null;
+        }
+    }
+
+    static String sha1(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest.digest()) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 should always be available!", ex);
+        }
+    }
+
+    private static void moveAtomically(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException ex) {
+            Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Maven repository at " + repoUrl;
+    }
+}
@@ -13,6 +13,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -21,7 +22,8 @@ import javax.annotation.concurrent.Immutable;
 import org.apache.commons.io.DirectoryWalker;
 
 /**
- * Copies directory to destination and converts md files to html.
+ * Copies directory to destination and converts md files to html. Files may
+ * be processed in parallel, see {@link JosmanConfig#getThreads()}
  * @author David Leoni
  */
 @Immutable
@@ -37,6 +39,11 @@ public class DirWalker extends DirectoryWalker {
     private List<String> relPaths;
     private Map<String, String> evals;
 
+    /**
+     * Pages being processed in current walk
+     */
+    private PageBatch batch;
+
     /**
      * @throws JosmanNotFoundException if source root doesn't exists    
      */
@@ -54,10 +61,10 @@ public class DirWalker extends DirectoryWalker {
             throw new JosmanNotFoundException("source root does not exists: " + sourceRoot.getAbsolutePath());
         }
         checkNotNull(destinationRoot);
-        if (destinationRoot.exists()) {
+        checkNotNull(josman);
+        if (destinationRoot.exists() && !josman.getConfig().isIncremental()) {
             throw new JosmanNotFoundException("destination directory does already exists: " + destinationRoot.getAbsolutePath());
         }
-        checkNotNull(josman);
         checkNotNull(version);
         
         checkNotNull(relPaths, "Invalid relative paths!");
@@ -77,11 +84,13 @@ public class DirWalker extends DirectoryWalker {
      * @throws JosmanIoException
      */
     public void process() {
+        batch = project.newPageBatch();
         try {
-            walk(sourceRoot, new ArrayList());
+            walk(sourceRoot, Collections.synchronizedList(new ArrayList()));
         } catch (IOException ex) {
             throw new JosmanIoException("Error while copying root " + sourceRoot.getAbsolutePath(), ex);
         }
+        batch.await();
     }   
     
     /**
@@ -94,6 +103,11 @@ public class DirWalker extends DirectoryWalker {
     protected boolean handleDirectory(File directory, int depth, Collection results) {
         LOG.log(Level.INFO, "Processing directory {0}", directory.getAbsolutePath());
         File target = new File(destinationRoot, directory.getAbsolutePath().replace(sourceRoot.getAbsolutePath(), ""));
+        if (project.getConfig().isIncremental() && target.isDirectory()) {
+            LOG.log(Level.FINE, "Keeping target directory {0}", target.getAbsolutePath());
+            results.add(target);
+            return true;
+        }
         if (target.exists()) {
             throw new JosmanIoException("Target directory already exists!! " + target.getAbsolutePath());
         }
@@ -110,18 +124,28 @@ public class DirWalker extends DirectoryWalker {
      * copied. Processed File is added to results.
      */
     @Override
-    protected void handleFile(File file, int depth, Collection results) throws IOException {       
-        String targetRelPath = file
+    protected void handleFile(final File file, int depth, final Collection results) throws IOException {       
+        final String targetRelPath = file
                             .getAbsolutePath()
                             .replace(sourceRoot.getAbsolutePath(), "")
                             .substring(1); // so we get rid of "\" at the beginning
         
-        results.add(project.copyStream(
-                            new FileInputStream(file), 
+        // directories are created during the walk, so pages can go in parallel
+        batch.submit(new Runnable() {
+            @Override
+            public void run() {
+                try (FileInputStream stream = new FileInputStream(file)) {
+                    results.add(project.copyStream(
+                            stream, 
                             JosmanProject.DOCS_FOLDER + "/" + targetRelPath, 
                             version,
                             relPaths,
                             evals));
+                } catch (IOException ex) {
+                    throw new JosmanIoException("Error while reading file " + file.getAbsolutePath(), ex);
+                }
+            }
+        });
     }
 
     public File getSourceRoot() {
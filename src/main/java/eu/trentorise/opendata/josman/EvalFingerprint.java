@@ -0,0 +1,171 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Fingerprints of the inputs of {@code josman:eval}, that is the test
+ * classpath and the set of expressions found in docs, as stored by previous
+ * run and as computed by the current one.
+ *
+ * Jars are fingerprinted by content. Their hashes are stored too and reused
+ * as long as size and modification time of a jar don't change, so unchanged
+ * jars are not read again. Class directories are fingerprinted by path, size
+ * and modification time of their files.
+ *
+ * @since 0.8.0
+ */
+final class EvalFingerprint {
+
+    private static final Logger LOG = Logger.getLogger(EvalFingerprint.class.getName());
+
+    private static final String CLASSPATH = "classpath";
+
+    private static final String EXPRS = "exprs";
+
+    private static final String JAR_PREFIX = "jar.";
+
+    private final Properties previous;
+
+    private final Properties current;
+
+    private EvalFingerprint(Properties previous) {
+        this.previous = previous;
+        this.current = new Properties();
+    }
+
+    /**
+     * Loads fingerprints stored by previous run. If file is missing or
+     * unreadable, previous fingerprints are empty.
+     *
+     * @since 0.8.0
+     */
+    static EvalFingerprint load(File file) {
+        checkNotNull(file);
+        Properties props = new Properties();
+        if (file.exists()) {
+            try (InputStream in = new FileInputStream(file)) {
+                props.load(in);
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Ignoring unreadable eval fingerprint {0}", file.getAbsolutePath());
+                LOG.log(Level.FINE, "Error was: ", ex);
+                props = new Properties();
+            }
+        }
+        return new EvalFingerprint(props);
+    }
+
+    /**
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    EvalFingerprint putClasspath(List<String> elements) {
+        checkNotNull(elements);
+        Fingerprint fingerprint = new Fingerprint();
+        try {
+            for (String element : elements) {
+                File file = new File(element);
+                fingerprint.put(element);
+                if (file.isDirectory()) {
+                    for (File f : new TreeSet<>(FileUtils.listFiles(file, null, true))) {
+                        fingerprint.put(f.getPath())
+                                   .put(String.valueOf(f.length()))
+                                   .put(String.valueOf(f.lastModified()));
+                    }
+                } else if (file.isFile()) {
+                    fingerprint.put(jarHash(file));
+                } else {
+                    fingerprint.put((String) null);
+                }
+            }
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while fingerprinting test classpath!", ex);
+        }
+        current.setProperty(CLASSPATH, fingerprint.hex());
+        return this;
+    }
+
+    /**
+     * Returns the hash of a jar, reusing previous one if jar size and
+     * modification time didn't change.
+     */
+    private String jarHash(File jar) throws IOException {
+        String key = JAR_PREFIX + jar.getPath();
+        String stamp = jar.length() + ":" + jar.lastModified() + ":";
+        String prev = previous.getProperty(key);
+        String ret;
+        if (prev != null && prev.startsWith(stamp)) {
+            ret = prev.substring(stamp.length());
+        } else {
+            ret = CentralJavadocResolver.sha1(jar);
+        }
+        current.setProperty(key, stamp + ret);
+        return ret;
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    EvalFingerprint putExprs(Collection<String> exprs) {
+        checkNotNull(exprs);
+        current.setProperty(EXPRS, new Fingerprint().put(new TreeSet<>(exprs))
+                                                    .hex());
+        return this;
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    boolean isClasspathUnchanged() {
+        return isUnchanged(CLASSPATH);
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    boolean isExprsUnchanged() {
+        return isUnchanged(EXPRS);
+    }
+
+    private boolean isUnchanged(String key) {
+        String cur = current.getProperty(key);
+        return cur != null && cur.equals(previous.getProperty(key));
+    }
+
+    /**
+     * Stores current fingerprints.
+     *
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    void save(File file) {
+        checkNotNull(file);
+        File parent = file.getParentFile();
+        if (parent != null && !parent.mkdirs() && !parent.isDirectory()) {
+            throw new JosmanIoException("Couldn't create directory " + parent.getAbsolutePath());
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            current.store(out, "Inputs of last josman:eval run, delete to force evaluation");
+        } catch (IOException ex) {
+            throw new JosmanIoException("Couldn't write eval fingerprint " + file.getAbsolutePath(), ex);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Read-only eval map backed by a memory mapped binary index, stored next to
+ * the CSV eval map (i.e. {@code josman-eval.idx} next to
+ * {@code josman-eval.csv}). Opening it costs a checksum of the CSV and a
+ * check of the offset table, and lookups are binary searches on the mapped
+ * file, so only the entries actually used by pages are decoded.
+ *
+ * Index layout, big endian:
+ *
+ * <pre>
+ * int    magic
+ * int    format version
+ * long   length of the CSV
+ * long   CRC32 of the CSV
+ * int    number of entries n
+ * int[n+1] offsets of entries, relative to data start
+ * data   for each entry: int expr length, UTF-8 expr, UTF-8 value
+ * </pre>
+ *
+ * Entries are sorted by the bytes of their UTF-8 expression. The CSV is
+ * always the reference: if the index is missing, corrupt or doesn't match
+ * the CSV it is ignored.
+ *
+ * Thread safe.
+ *
+ * @since 0.8.0
+ */
+final class EvalIndex extends AbstractMap<String, String> {
+
+    private static final Logger LOG = Logger.getLogger(EvalIndex.class.getName());
+
+    private static final int MAGIC = 0x4A4D4549;
+
+    private static final int FORMAT_VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 4;
+
+    private static final String CSV_EXTENSION = ".csv";
+
+    private static final String INDEX_EXTENSION = ".idx";
+
+    private static final Comparator<byte[]> UNSIGNED_BYTES = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            int n = Math.min(a.length, b.length);
+            for (int i = 0; i < n; i++) {
+                int c = (a[i] & 0xFF) - (b[i] & 0xFF);
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return a.length - b.length;
+        }
+    };
+
+    private final ByteBuffer buf;
+
+    private final int size;
+
+    private final int dataStart;
+
+    private final long csvLength;
+
+    private final long csvCrc;
+
+    private EvalIndex(ByteBuffer buf, int size, long csvLength, long csvCrc) {
+        this.buf = buf;
+        this.size = size;
+        this.dataStart = HEADER_SIZE + 4 * (size + 1);
+        this.csvLength = csvLength;
+        this.csvCrc = csvCrc;
+    }
+
+    /**
+     * Checks all offsets and expression lengths lie within the file, so
+     * lookups on a damaged index can't read out of bounds. Only the offset
+     * table and the length of each expression are read.
+     */
+    private boolean isValid(int length) {
+        int dataLength = length - dataStart;
+        if (offset(0) != 0 || offset(size) != dataLength) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            int start = offset(i);
+            int next = offset(i + 1);
+            if (next < start + 4 || next > dataLength) {
+                return false;
+            }
+            int exprLength = buf.getInt(dataStart + start);
+            if (exprLength < 0 || exprLength > next - start - 4) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a fingerprint of the CSV this index was made from, which
+     * identifies the whole map without decoding it.
+     *
+     * @since 0.8.0
+     */
+    String csvFingerprint() {
+        return csvLength + ":" + Long.toHexString(csvCrc);
+    }
+
+    /**
+     * Returns the index file of given CSV eval map, i.e.
+     * {@code josman-eval.idx} for {@code josman-eval.csv}
+     *
+     * @since 0.8.0
+     */
+    static File indexFile(File csvFile) {
+        checkNotNull(csvFile);
+        String name = csvFile.getName();
+        if (name.endsWith(CSV_EXTENSION)) {
+            name = name.substring(0, name.length() - CSV_EXTENSION.length());
+        }
+        return new File(csvFile.getParentFile(), name + INDEX_EXTENSION);
+    }
+
+    /**
+     * Writes the index of {@code evals}, which must have already been written
+     * to {@code csvFile}. The index is written to a temporary file and then
+     * moved in place, as the previous one may still be mapped.
+     *
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    static void write(Map<String, String> evals, File csvFile) {
+        checkNotNull(evals);
+        checkNotNull(csvFile);
+
+        List<byte[][]> entries = new ArrayList<>(evals.size());
+        for (Map.Entry<String, String> entry : evals.entrySet()) {
+            entries.add(new byte[][] { entry.getKey()
+                                            .getBytes(StandardCharsets.UTF_8),
+                    checkNotNull(entry.getValue()).getBytes(StandardCharsets.UTF_8) });
+        }
+        Collections.sort(entries, new Comparator<byte[][]>() {
+            @Override
+            public int compare(byte[][] a, byte[][] b) {
+                return UNSIGNED_BYTES.compare(a[0], b[0]);
+            }
+        });
+
+        File file = indexFile(csvFile);
+        File tmp = null;
+        try {
+            long crc = crc(csvFile);
+            tmp = File.createTempFile("josman-eval", ".tmp", file.getAbsoluteFile()
+                                                                 .getParentFile());
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeLong(csvFile.length());
+                out.writeLong(crc);
+                out.writeInt(entries.size());
+                int offset = 0;
+                out.writeInt(offset);
+                for (byte[][] entry : entries) {
+                    offset += 4 + entry[0].length + entry[1].length;
+                    out.writeInt(offset);
+                }
+                for (byte[][] entry : entries) {
+                    out.writeInt(entry[0].length);
+                    out.write(entry[0]);
+                    out.write(entry[1]);
+                }
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while writing eval index " + file.getAbsolutePath(), ex);
+        } finally {
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    /**
+     * Maps the index of given CSV eval map.
+     *
+     * @return null if the index is missing, corrupt or doesn't match the CSV
+     *
+     * @since 0.8.0
+     */
+    @Nullable
+    static EvalIndex open(File csvFile) {
+        checkNotNull(csvFile);
+        File file = indexFile(csvFile);
+        if (!file.isFile() || !csvFile.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+                FileChannel channel = raf.getChannel()) {
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                LOG.log(Level.WARNING, "Ignoring eval index with invalid size: {0}", file.getAbsolutePath());
+                return null;
+            }
+            // mapping stays valid after the channel is closed
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT_VERSION) {
+                LOG.log(Level.WARNING, "Ignoring eval index with unknown format: {0}", file.getAbsolutePath());
+                return null;
+            }
+            if (buf.getLong(8) != csvFile.length() || buf.getLong(16) != crc(csvFile)) {
+                LOG.log(Level.INFO, "Ignoring stale eval index {0}", file.getAbsolutePath());
+                return null;
+            }
+            int size = buf.getInt(24);
+            if (size < 0 || size > (length - HEADER_SIZE) / 4 - 1) {
+                LOG.log(Level.WARNING, "Ignoring corrupt eval index {0}", file.getAbsolutePath());
+                return null;
+            }
+            EvalIndex ret = new EvalIndex(buf, size, buf.getLong(8), buf.getLong(16));
+            if (!ret.isValid((int) length)) {
+                LOG.log(Level.WARNING, "Ignoring corrupt eval index {0}", file.getAbsolutePath());
+                return null;
+            }
+            return ret;
+        } catch (IOException ex) {
+            LOG.log(Level.WARNING, "Ignoring unreadable eval index {0}", file.getAbsolutePath());
+            LOG.log(Level.FINE, "Error was: ", ex);
+            return null;
+        }
+    }
+
+    private static long crc(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Offset of entry {@code i} relative to data start
+     */
+    private int offset(int i) {
+        return buf.getInt(HEADER_SIZE + 4 * i);
+    }
+
+    private String decode(int from, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(from);
+        dup.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private String expr(int i) {
+        int start = dataStart + offset(i);
+        return decode(start + 4, buf.getInt(start));
+    }
+
+    private String value(int i) {
+        int start = dataStart + offset(i);
+        int valueStart = start + 4 + buf.getInt(start);
+        return decode(valueStart, dataStart + offset(i + 1) - valueStart);
+    }
+
+    /**
+     * Compares the expression of entry {@code i} with {@code key}
+     */
+    private int compare(int i, byte[] key) {
+        int start = dataStart + offset(i);
+        int length = buf.getInt(start);
+        int n = Math.min(length, key.length);
+        for (int k = 0; k < n; k++) {
+            int c = (buf.get(start + 4 + k) & 0xFF) - (key[k] & 0xFF);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Returns the position of {@code expr}, or -1 if not found
+     */
+    private int find(Object expr) {
+        if (!(expr instanceof String)) {
+            return -1;
+        }
+        byte[] key = ((String) expr).getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(mid, key);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(Object expr) {
+        int i = find(expr);
+        return i == -1 ? null : value(i);
+    }
+
+    @Override
+    public boolean containsKey(Object expr) {
+        return find(expr) != -1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        return new AbstractSet<Map.Entry<String, String>>() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                return new Iterator<Map.Entry<String, String>>() {
+                    private int i = 0;
+
+                    @Override
+                    public boolean hasNext() {
+                        return i < size;
+                    }
+
+                    @Override
+                    public Map.Entry<String, String> next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        Map.Entry<String, String> ret = new SimpleImmutableEntry<>(expr(i), value(i));
+                        i++;
+                        return ret;
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException("Eval index is read-only!");
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+}
@@ -0,0 +1,194 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Resolves {@code $evalNow} expressions of a class loader to method handles
+ * once, so evaluating the same expression again costs just a call. Values of
+ * static final fields can't change, so they are read only once.
+ *
+ * Caches are kept per class loader in a weak map, and are softly referenced
+ * so they don't keep a class loader alive when memory is needed.
+ *
+ * Thread safe.
+ *
+ * @since 0.8.0
+ */
+final class ExprCache {
+
+    private static final MethodType OBJECT_GETTER = MethodType.methodType(Object.class);
+
+    private static final Map<ClassLoader, SoftReference<ExprCache>> CACHES = new WeakHashMap<>();
+
+    private static final int MAX_CHECKED = 10000;
+
+    /**
+     * Expressions which passed {@link Josmans#checkExpr(String)}
+     */
+    private static final ConcurrentMap<String, Boolean> CHECKED = new ConcurrentHashMap<>();
+
+    /**
+     * A resolved expression
+     */
+    private static final class Target {
+        final MethodHandle handle;
+
+        /**
+         * Only set for static final fields
+         */
+        @Nullable
+        final String constant;
+
+        Target(MethodHandle handle, @Nullable String constant) {
+            this.handle = handle;
+            this.constant = constant;
+        }
+    }
+
+    private final ClassLoader classLoader;
+
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    private ExprCache(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Returns the cache of given class loader.
+     *
+     * @since 0.8.0
+     */
+    static ExprCache of(ClassLoader classLoader) {
+        checkNotNull(classLoader);
+        synchronized (CACHES) {
+            SoftReference<ExprCache> ref = CACHES.get(classLoader);
+            ExprCache ret = ref == null ? null : ref.get();
+            if (ret == null) {
+                ret = new ExprCache(classLoader);
+                CACHES.put(classLoader, new SoftReference<>(ret));
+            }
+            return ret;
+        }
+    }
+
+    /**
+     * Like {@link Josmans#checkExpr(String)}, remembering valid expressions so
+     * they are not parsed again.
+     *
+     * @throws IllegalArgumentException
+     *
+     * @since 0.8.0
+     */
+    static void check(String expr) {
+        if (expr != null && CHECKED.containsKey(expr)) {
+            return;
+        }
+        Josmans.checkExpr(expr);
+        if (CHECKED.size() >= MAX_CHECKED) {
+            CHECKED.clear();
+        }
+        CHECKED.put(expr, Boolean.TRUE);
+    }
+
+    /**
+     * Evaluates an expression like {@code my.Class.field} or
+     * {@code my.Class.method()}, which must have already been checked with
+     * {@link Josmans#checkExpr(String)}
+     *
+     * @throws JosmanException
+     *             on any error
+     *
+     * @since 0.8.0
+     */
+    String eval(String expr) {
+        Target target = targets.get(expr);
+        if (target == null) {
+            target = resolve(expr);
+            Target prev = targets.putIfAbsent(expr, target);
+            if (prev != null) {
+                target = prev;
+            }
+        }
+        if (target.constant != null) {
+            return target.constant;
+        }
+        return invoke(expr, target.handle);
+    }
+
+    private static String invoke(String expr, MethodHandle handle) {
+        try {
+            return String.valueOf((Object) handle.invokeExact());
+        } catch (Throwable tr) {
+            throw new JosmanException("Error processing " + expr, tr);
+        }
+    }
+
+    private Target resolve(String expr) {
+        String[] names = expr.split("\\.");
+        String last = names[names.length - 1];
+        int paren = last.indexOf('(');
+        String methodOrFieldName = paren == -1 ? last : last.substring(0, paren);
+
+        StringBuilder className = new StringBuilder(names[0]);
+        for (int j = 1; j < names.length - 1; j++) {
+            className.append('.')
+                     .append(names[j]);
+        }
+        Class<?> clazz;
+        try {
+            clazz = Class.forName(className.toString(), true, classLoader);
+        } catch (Exception ex) {
+            throw new JosmanException("Error while loading class for calling method " + expr, ex);
+        }
+
+        MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+        try {
+            Method method;
+            try {
+                method = clazz.getMethod(methodOrFieldName);
+            } catch (NoSuchMethodException ex) {
+                method = null;
+            }
+            if (method != null) {
+                if (!Modifier.isStatic(method.getModifiers())) {
+                    throw new JosmanException("Non-static methods are not supported!");
+                }
+                return new Target(lookup.unreflect(method)
+                                        .asType(OBJECT_GETTER),
+                        null);
+            }
+
+            Field field = clazz.getField(methodOrFieldName);
+            if (!Modifier.isStatic(field.getModifiers())) {
+                throw new JosmanException("Non-static fields are not supported!");
+            }
+            MethodHandle getter = lookup.unreflectGetter(field)
+                                        .asType(OBJECT_GETTER);
+            if (Modifier.isFinal(field.getModifiers())) {
+                return new Target(getter, invoke(expr, getter));
+            } else {
+                return new Target(getter, null);
+            }
+        } catch (JosmanException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new JosmanException("Error processing " + expr, ex);
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Evaluates {@code $evalNow} expressions on dedicated daemon threads, so an
+ * expression taking more than a timeout can be abandoned instead of stalling
+ * the build. At most a given number of expressions are evaluated at the same
+ * time. Abandoned evaluations which ignore interruption don't count against
+ * that bound, so they can't starve the following ones. Without a timeout
+ * expressions are evaluated in the calling thread.
+ *
+ * An expression which failed or timed out is not evaluated again, later
+ * evaluations of it fail at once.
+ *
+ * Durations of evaluations are recorded, and logged as a histogram together
+ * with the slowest expressions on {@link #close()}.
+ *
+ * Thread safe.
+ *
+ * @since 0.8.0
+ */
+final class ExprEvaluator implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(ExprEvaluator.class.getName());
+
+    /**
+     * Upper bounds of histogram buckets, in millisecs. Last bucket is
+     * unbounded.
+     */
+    private static final long[] BUCKETS = { 1, 10, 100, 1000, 10000 };
+
+    private static final int SLOWEST = 5;
+
+    /**
+     * Durations of an expression
+     */
+    private static final class Stats {
+        final String expr;
+        String slowestRelPath;
+        int count;
+        long totalNanos;
+        long maxNanos;
+
+        Stats(String expr) {
+            this.expr = expr;
+        }
+
+        synchronized void add(long nanos, String relPath) {
+            count++;
+            totalNanos += nanos;
+            if (nanos >= maxNanos) {
+                maxNanos = nanos;
+                slowestRelPath = relPath;
+            }
+        }
+    }
+
+    /**
+     * Evaluation running on its own thread. Its permit is given back either
+     * when it completes or when it is abandoned, whichever comes first.
+     */
+    private final class Worker extends FutureTask<String> {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        Worker(Callable<String> callable) {
+            super(callable);
+        }
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+
+        @Override
+        protected void done() {
+            workers.remove(this);
+            release();
+        }
+    }
+
+    private final long timeoutMillis;
+
+    private final int threads;
+
+    private final Semaphore permits;
+
+    private final Set<Worker> workers = Collections.newSetFromMap(new ConcurrentHashMap<Worker, Boolean>());
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    /**
+     * Expressions which failed or timed out, with the error
+     */
+    private final ConcurrentMap<String, Throwable> failures = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+    private final ConcurrentMap<String, Stats> stats = new ConcurrentHashMap<>();
+
+    private final AtomicInteger timeouts = new AtomicInteger();
+
+    /**
+     * @param timeoutMillis
+     *            maximum time for evaluating an expression, counted from when
+     *            its evaluation starts. Waiting for a free thread is bounded
+     *            by the same time, separately. If zero there is no timeout and
+     *            expressions are evaluated in the calling thread
+     * @param threads
+     *            maximum number of expressions evaluated at the same time
+     *
+     * @since 0.8.0
+     */
+    ExprEvaluator(long timeoutMillis, int threads) {
+        checkArgument(timeoutMillis >= 0, "Timeout must be non negative, found instead %s", timeoutMillis);
+        checkArgument(threads >= 1, "Threads must be at least 1, found instead %s", threads);
+        this.timeoutMillis = timeoutMillis;
+        this.threads = threads;
+        this.permits = new Semaphore(threads, true);
+    }
+
+    /**
+     * Evaluates an expression already checked with
+     * {@link Josmans#checkExpr(String)}
+     *
+     * @param relPath
+     *            the path to the file containing the expression
+     * @throws JosmanException
+     *             on any error, including timeout
+     *
+     * @since 0.8.0
+     */
+    String eval(final String expr, String relPath, final ClassLoader classLoader) {
+        checkNotNull(expr);
+        checkNotNull(classLoader);
+
+        Throwable failure = failures.get(expr);
+        if (failure != null) {
+            throw new JosmanException("Expression already failed, not evaluating it again: " + expr, failure);
+        }
+
+        if (timeoutMillis == 0) {
+            long start = System.nanoTime();
+            try {
+                return evalWithContext(expr, classLoader);
+            } catch (RuntimeException ex) {
+                failures.putIfAbsent(expr, ex);
+                throw ex;
+            } finally {
+                record(expr, relPath, System.nanoTime() - start);
+            }
+        }
+
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                // not the fault of the expression, so not remembered
+                throw new JosmanException("Waited more than " + timeoutMillis + " ms for one of " + threads
+                        + " evaluation threads to become free, giving up on " + expr);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new JosmanException("Interrupted while waiting to evaluate " + expr, ex);
+        }
+
+        Worker worker = new Worker(new Callable<String>() {
+            @Override
+            public String call() {
+                return evalWithContext(expr, classLoader);
+            }
+        });
+        workers.add(worker);
+        // daemon, so expressions ignoring interruption don't prevent exit
+        Thread thread = new Thread(worker, "josman-eval-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        long start = System.nanoTime();
+        try {
+            thread.start();
+            return worker.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            abandon(worker);
+            timeouts.incrementAndGet();
+            LOG.log(Level.WARNING, "Expression took more than " + timeoutMillis + " ms, abandoning it.\n"
+                    + Josmans.reportExpr(expr, relPath));
+            JosmanException ret = new JosmanException("Timeout after " + timeoutMillis + " ms while evaluating "
+                    + expr, ex);
+            failures.putIfAbsent(expr, ret);
+            throw ret;
+        } catch (ExecutionException ex) {
+            failures.putIfAbsent(expr, ex.getCause());
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new JosmanException("Error processing " + expr, ex.getCause());
+        } catch (CancellationException ex) {
+            throw new JosmanException("Evaluation of " + expr + " was abandoned", ex);
+        } catch (InterruptedException ex) {
+            abandon(worker);
+            Thread.currentThread()
+                  .interrupt();
+            throw new JosmanException("Interrupted while evaluating " + expr, ex);
+        } catch (RuntimeException | Error ex) {
+            // i.e. thread couldn't be started
+            abandon(worker);
+            throw ex;
+        } finally {
+            record(expr, relPath, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Interrupts the evaluation and gives back its permit right away, as it
+     * may ignore interruption and never complete.
+     */
+    private void abandon(Worker worker) {
+        worker.cancel(true);
+        worker.release();
+    }
+
+    /**
+     * Evaluates with {@code classLoader} as thread context class loader, as
+     * code looking up services, JAXB contexts or loggers through it expects
+     * the test classpath like in tests.
+     */
+    private static String evalWithContext(String expr, ClassLoader classLoader) {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+            return ExprCache.of(classLoader)
+                            .eval(expr);
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    private void record(String expr, String relPath, long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int bucket = 0;
+        while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+            bucket++;
+        }
+        histogram.incrementAndGet(bucket);
+
+        Stats s = stats.get(expr);
+        if (s == null) {
+            Stats prev = stats.putIfAbsent(expr, s = new Stats(expr));
+            if (prev != null) {
+                s = prev;
+            }
+        }
+        s.add(nanos, relPath);
+    }
+
+    /**
+     * Returns the number of evaluations per duration bucket, see
+     * {@link #histogramReport()}
+     *
+     * @since 0.8.0
+     */
+    long[] getHistogram() {
+        long[] ret = new long[histogram.length()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = histogram.get(i);
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of expressions which timed out
+     *
+     * @since 0.8.0
+     */
+    int getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * Returns a readable histogram of durations and the slowest expressions.
+     *
+     * @since 0.8.0
+     */
+    String histogramReport() {
+        StringBuilder sb = new StringBuilder();
+        long[] counts = getHistogram();
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        sb.append("Evaluated ")
+          .append(total)
+          .append(" expressions (")
+          .append(stats.size())
+          .append(" distinct), ")
+          .append(timeouts.get())
+          .append(" timed out. Durations:\n");
+        for (int i = 0; i < counts.length; i++) {
+            String label = i < BUCKETS.length ? "< " + BUCKETS[i] + " ms" : ">= " + BUCKETS[BUCKETS.length - 1] + " ms";
+            sb.append(String.format("    %-12s %d%n", label, counts[i]));
+        }
+
+        List<Stats> sorted = new ArrayList<>(stats.values());
+        Collections.sort(sorted, new Comparator<Stats>() {
+            @Override
+            public int compare(Stats a, Stats b) {
+                return Long.compare(b.totalNanos, a.totalNanos);
+            }
+        });
+        if (!sorted.isEmpty()) {
+            sb.append("Slowest expressions (total / max ms, count, slowest in file):\n");
+        }
+        for (Stats s : sorted.subList(0, Math.min(SLOWEST, sorted.size()))) {
+            synchronized (s) {
+                sb.append(String.format("    %d / %d ms  %dx  %s  in %s%n",
+                        TimeUnit.NANOSECONDS.toMillis(s.totalNanos), TimeUnit.NANOSECONDS.toMillis(s.maxNanos),
+                        s.count, s.expr, s.slowestRelPath));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Logs and clears durations and remembered failures, abandoning running
+     * evaluations. The evaluator can still be used afterwards.
+     *
+     * @since 0.8.0
+     */
+    @Override
+    public void close() {
+        if (!stats.isEmpty()) {
+            LOG.info(histogramReport());
+        }
+        stats.clear();
+        failures.clear();
+        timeouts.set(0);
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, 0);
+        }
+        for (Worker worker : workers) {
+            abandon(worker);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Finds {@code $eval{EXPR}} and {@code $evalNow{EXPR}} statements in a text,
+ * in time linear with the length of the text whatever the input. Used like a
+ * {@link java.util.regex.Matcher}:
+ *
+ * <pre>
+ * ExprScanner scanner = new ExprScanner(text);
+ * while (scanner.find()) {
+ *     scanner.expr(); // ...
+ * }
+ * </pre>
+ *
+ * An expression is a sequence of letters, digits, underscores, dots and
+ * pipes, optionally followed by parenthesis enclosing anything but a line
+ * terminator, with optional whitespace around it, i.e.
+ * {@code $evalNow{ my.Class.method() }}.
+ *
+ * Escaped statements like {@code $'eval{EXPR}} are never found, and
+ * {@link #appendText(StringBuilder, int, int)} unescapes them.
+ *
+ * Not thread safe.
+ *
+ * @since 0.8.0
+ */
+final class ExprScanner {
+
+    private static final String EVAL = "$eval";
+
+    private static final String ESCAPED_EVAL = "$'eval";
+
+    private String text;
+
+    /**
+     * Where next find starts
+     */
+    private int from;
+
+    private int start;
+
+    private int end;
+
+    private int exprStart;
+
+    private int exprEnd;
+
+    private boolean evalNow;
+
+    /**
+     * Position of the first ')' or line terminator at or after
+     * {@link #closeSearchFrom}, or text length if none
+     */
+    private int close;
+
+    private int closeSearchFrom;
+
+    /**
+     * End of the statement closed by the ')' at {@link #close}, or -1 if
+     * there is no '}' after it
+     */
+    private int closeEnd;
+
+    /**
+     * Position of the first escaped statement at or after
+     * {@link #escapeSearchFrom}, or text length if none
+     */
+    private int escape;
+
+    private int escapeSearchFrom;
+
+    /**
+     * @since 0.8.0
+     */
+    ExprScanner(String text) {
+        reset(text);
+    }
+
+    /**
+     * Starts scanning a new text.
+     *
+     * @since 0.8.0
+     */
+    ExprScanner reset(String text) {
+        checkNotNull(text);
+        this.text = text;
+        this.from = 0;
+        this.start = -1;
+        this.end = 0;
+        this.close = -1;
+        this.closeSearchFrom = -1;
+        this.escape = -1;
+        this.escapeSearchFrom = -1;
+        return this;
+    }
+
+    /**
+     * Finds next statement.
+     *
+     * @return false if there are no more statements
+     *
+     * @since 0.8.0
+     */
+    boolean find() {
+        int i = text.indexOf(EVAL, from);
+        while (i != -1) {
+            if (matchAt(i)) {
+                from = end;
+                return true;
+            }
+            i = text.indexOf(EVAL, i + 1);
+        }
+        from = text.length();
+        start = -1;
+        return false;
+    }
+
+    /**
+     * Tries to match a statement starting at {@code i}, where there is
+     * {@code $eval}
+     */
+    private boolean matchAt(int i) {
+        int n = text.length();
+        int j = i + EVAL.length();
+        boolean now = text.startsWith("Now", j);
+        if (now) {
+            j += 3;
+        }
+        if (j >= n || text.charAt(j) != '{') {
+            return false;
+        }
+        j = skipWhitespace(j + 1);
+
+        int nameStart = j;
+        while (j < n && isNameChar(text.charAt(j))) {
+            j++;
+        }
+        if (j == nameStart) {
+            return false;
+        }
+
+        int stmtEnd;
+        int nameEnd;
+        if (j < n && text.charAt(j) == '(') {
+            int paren = findClose(j + 1);
+            if (paren == n || text.charAt(paren) != ')') {
+                return false;
+            }
+            nameEnd = paren + 1;
+            stmtEnd = closeEnd;
+        } else {
+            nameEnd = j;
+            stmtEnd = closeBrace(j);
+        }
+        if (stmtEnd == -1) {
+            return false;
+        }
+
+        start = i;
+        end = stmtEnd;
+        exprStart = nameStart;
+        exprEnd = nameEnd;
+        evalNow = now;
+        return true;
+    }
+
+    /**
+     * Returns the position of the first ')' or line terminator at or after
+     * {@code pos}. Searches are remembered, so that many statements sharing
+     * the same parenthesis don't scan the text again.
+     */
+    private int findClose(int pos) {
+        if (closeSearchFrom != -1 && pos >= closeSearchFrom && pos <= close) {
+            return close;
+        }
+        int n = text.length();
+        int k = pos;
+        while (k < n) {
+            char c = text.charAt(k);
+            if (c == ')' || isLineTerminator(c)) {
+                break;
+            }
+            k++;
+        }
+        closeSearchFrom = pos;
+        close = k;
+        closeEnd = k < n && text.charAt(k) == ')' ? closeBrace(k + 1) : -1;
+        return k;
+    }
+
+    /**
+     * Returns the position after '}' if only whitespace precedes it starting
+     * from {@code pos}, otherwise -1
+     */
+    private int closeBrace(int pos) {
+        int k = skipWhitespace(pos);
+        if (k < text.length() && text.charAt(k) == '}') {
+            return k + 1;
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int pos) {
+        int n = text.length();
+        while (pos < n && isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Same as {@code [\w|\.]} in a regex
+     */
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '.'
+                || c == '|';
+    }
+
+    /**
+     * Same as {@code \s} in a regex
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /**
+     * Line terminators not matched by {@code .} in a regex
+     */
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * The expression of last statement found, i.e. {@code my.Class.method()}
+     *
+     * @since 0.8.0
+     */
+    String expr() {
+        checkFound();
+        return text.substring(exprStart, exprEnd);
+    }
+
+    /**
+     * True if last statement found is an $evalNow
+     *
+     * @since 0.8.0
+     */
+    boolean isEvalNow() {
+        checkFound();
+        return evalNow;
+    }
+
+    /**
+     * Start of last statement found
+     *
+     * @since 0.8.0
+     */
+    int start() {
+        checkFound();
+        return start;
+    }
+
+    /**
+     * End (exclusive) of last statement found
+     *
+     * @since 0.8.0
+     */
+    int end() {
+        checkFound();
+        return end;
+    }
+
+    private void checkFound() {
+        if (start == -1) {
+            throw new IllegalStateException("No statement found!");
+        }
+    }
+
+    /**
+     * Appends text between {@code from} (inclusive) and {@code to} (exclusive)
+     * to {@code sb}, turning escaped statements like {@code $'eval{} } into
+     * {@code $eval{} }
+     *
+     * @since 0.8.0
+     */
+    void appendText(StringBuilder sb, int from, int to) {
+        int last = from;
+        int i = findEscape(from);
+        while (i < to) {
+            int j = i + ESCAPED_EVAL.length();
+            if (text.startsWith("{", j) || text.startsWith("Now{", j)) {
+                // drops the quote
+                sb.append(text, last, i + 1);
+                last = i + 2;
+            }
+            i = findEscape(i + 1);
+        }
+        sb.append(text, last, to);
+    }
+
+    /**
+     * Returns the position of the first {@code $'eval} at or after
+     * {@code pos}, or text length if none. Like {@link #findClose(int)} the
+     * search is remembered, so appending consecutive pieces of text doesn't
+     * scan the rest of the text each time.
+     */
+    private int findEscape(int pos) {
+        if (escapeSearchFrom != -1 && pos >= escapeSearchFrom && pos <= escape) {
+            return escape;
+        }
+        int i = text.indexOf(ESCAPED_EVAL, pos);
+        escapeSearchFrom = pos;
+        escape = i == -1 ? text.length() : i;
+        return escape;
+    }
+}
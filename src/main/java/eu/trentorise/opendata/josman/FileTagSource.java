@@ -0,0 +1,68 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.TypedResource;
+
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Reads tags from a UTF-8 text file, one tag name per line optionally followed
+ * by whitespace and the commit sha. Empty lines and lines starting with
+ * {@code #} are ignored. Mostly useful for tests.
+ * 
+ * @since 0.8.0
+ */
+public class FileTagSource implements TagSource {
+
+    private final File file;
+
+    /**
+     * @since 0.8.0
+     */
+    public FileTagSource(File file) {
+        checkNotNull(file);
+        this.file = file;
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Override
+    public ImmutableList<RepositoryTag> fetchTags() {
+        try {
+            ImmutableList.Builder<RepositoryTag> retb = ImmutableList.builder();
+            for (String line : FileUtils.readLines(file, "UTF-8")) {
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = trimmed.split("\\s+");
+
+                RepositoryTag tag = new RepositoryTag();
+                tag.setName(parts[0]);
+                if (parts.length > 1) {
+                    TypedResource commit = new TypedResource();
+                    commit.setType(TypedResource.TYPE_COMMIT);
+                    commit.setSha(parts[1]);
+                    tag.setCommit(commit);
+                }
+                retb.add(tag);
+            }
+            return retb.build();
+        } catch (Exception ex) {
+            throw new JosmanIoException("Couldn't read tags from file " + file.getAbsolutePath(), ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "file " + file.getAbsolutePath();
+    }
+}
@@ -0,0 +1,128 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Accumulates build inputs into a SHA-1 digest. Every item is length-prefixed
+ * so different sequences of inputs can't produce the same digest, i.e.
+ * {@code "ab","c"} and {@code "a","bc"}.
+ *
+ * Not thread safe.
+ *
+ * @since 0.8.0
+ */
+final class Fingerprint {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest digest;
+
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(8);
+
+    /**
+     * @since 0.8.0
+     */
+    Fingerprint() {
+        try {
+            this.digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new JosmanException("Couldn't find SHA-1 digest!", ex);
+        }
+    }
+
+    private void putLength(long length) {
+        lengthBuffer.clear();
+        lengthBuffer.putLong(length);
+        digest.update(lengthBuffer.array());
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    Fingerprint put(byte[] bytes) {
+        checkNotNull(bytes);
+        putLength(bytes.length);
+        digest.update(bytes);
+        return this;
+    }
+
+    /**
+     * Null strings are distinguished from empty ones.
+     * 
+     * @since 0.8.0
+     */
+    Fingerprint put(@Nullable String string) {
+        if (string == null) {
+            putLength(-1);
+            return this;
+        }
+        return put(string.getBytes(UTF8));
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    Fingerprint put(boolean b) {
+        digest.update((byte) (b ? 1 : 0));
+        return this;
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    Fingerprint put(Iterable<?> items) {
+        checkNotNull(items);
+        int count = 0;
+        for (Object item : items) {
+            put(String.valueOf(item));
+            count++;
+        }
+        putLength(count);
+        return this;
+    }
+
+    /**
+     * Puts map entries in key order, so the digest doesn't depend on the
+     * iteration order of the map.
+     * 
+     * @since 0.8.0
+     */
+    Fingerprint put(Map<String, String> map) {
+        checkNotNull(map);
+        for (Map.Entry<String, String> entry : new TreeMap<>(map).entrySet()) {
+            put(entry.getKey());
+            put(entry.getValue());
+        }
+        putLength(map.size());
+        return this;
+    }
+
+    /**
+     * Returns the digest as a lowercase hex string. Fingerprint can't be used
+     * anymore afterwards.
+     * 
+     * @since 0.8.0
+     */
+    String hex() {
+        byte[] bytes = digest.digest();
+        char[] ret = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            ret[2 * i] = HEX[(bytes[i] >> 4) & 0xF];
+            ret[2 * i + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(ret);
+    }
+}
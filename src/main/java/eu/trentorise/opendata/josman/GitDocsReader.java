@@ -0,0 +1,141 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AsyncObjectLoaderQueue;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanNotFoundException;
+
+/**
+ * Reads files at given tags from a git repository, sharing a single
+ * {@link RevWalk} and {@link ObjectReader} (and so their caches) among all
+ * the tags.
+ *
+ * Trees are walked once into a list of {@link Entry entries}, blobs are then
+ * loaded in the order preferred by the storage. JGit readers are not thread
+ * safe, so methods are synchronized: callers should only do light work while
+ * handling blobs.
+ *
+ * @since 0.8.0
+ */
+final class GitDocsReader implements Closeable {
+
+    /**
+     * A file found in a tree. Identity is the blob id, so entries can be
+     * directly queued for loading.
+     *
+     * @since 0.8.0
+     */
+    static final class Entry extends ObjectId {
+        final String path;
+        final FileMode mode;
+
+        Entry(String path, ObjectId blobId, FileMode mode) {
+            super(blobId);
+            this.path = checkNotNull(path);
+            this.mode = checkNotNull(mode);
+        }
+    }
+
+    /**
+     * Receives loaded blobs.
+     *
+     * @since 0.8.0
+     */
+    interface BlobHandler {
+        /**
+         * @param loader
+         *            only valid during the call
+         */
+        void handle(Entry entry, ObjectLoader loader) throws IOException;
+    }
+
+    private final Repository repo;
+
+    private final ObjectReader reader;
+
+    private final RevWalk revWalk;
+
+    /**
+     * @since 0.8.0
+     */
+    GitDocsReader(Repository repo) {
+        this.repo = checkNotNull(repo);
+        this.reader = repo.newObjectReader();
+        this.revWalk = new RevWalk(reader);
+    }
+
+    /**
+     * Walks once the tree of {@code rev} and returns the files found under
+     * {@code paths}, in tree order.
+     *
+     * @param paths
+     *            exact file or dir paths (i.e. 'docs' will work for
+     *            docs/a.txt but 'doc' won't work)
+     * @throws JosmanNotFoundException
+     *             if rev doesn't exist
+     *
+     * @since 0.8.0
+     */
+    synchronized List<Entry> list(String rev, String... paths) throws IOException {
+        ObjectId commitId = repo.resolve(rev);
+        if (commitId == null) {
+            throw new JosmanNotFoundException("Couldn't find revision " + rev + " in git repo!");
+        }
+        RevTree tree = revWalk.parseCommit(commitId)
+                              .getTree();
+
+        // releasing the walk would also release the shared reader
+        TreeWalk treeWalk = new TreeWalk(reader);
+        treeWalk.addTree(tree);
+        treeWalk.setRecursive(true);
+        treeWalk.setFilter(PathFilterGroup.createFromStrings(paths));
+
+        List<Entry> ret = new ArrayList<>();
+        while (treeWalk.next()) {
+            ret.add(new Entry(treeWalk.getPathString(), treeWalk.getObjectId(0), treeWalk.getFileMode(0)));
+        }
+        return ret;
+    }
+
+    /**
+     * Loads blobs of {@code entries}, in no particular order, and passes them
+     * to {@code handler}.
+     *
+     * @since 0.8.0
+     */
+    synchronized void load(List<Entry> entries, BlobHandler handler) throws IOException {
+        checkNotNull(handler);
+        AsyncObjectLoaderQueue<Entry> queue = reader.open(entries, true);
+        try {
+            while (queue.next()) {
+                handler.handle(queue.getCurrent(), queue.open());
+            }
+        } finally {
+            queue.release();
+        }
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Override
+    public synchronized void close() {
+        revWalk.release();
+        reader.release();
+    }
+}
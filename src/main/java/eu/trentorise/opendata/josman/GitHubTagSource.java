@@ -0,0 +1,337 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.Type;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.gson.reflect.TypeToken;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Fetches tags with the GitHub API. Without a token, beware of API limits of
+ * 60 requests per hour.
+ *
+ * If a cache directory is provided, tags are stored there and reused without
+ * any request for a while. After that they are refreshed with a conditional
+ * request per page, which doesn't count against API limits when the page
+ * didn't change. As tags are not listed in creation order, a change may land
+ * on any page, so all of them are checked.
+ * If GitHub can't be reached, the cached copy is used regardless of its age.
+ *
+ * @since 0.8.0
+ */
+public class GitHubTagSource implements TagSource {
+
+    private static final Logger LOG = Logger.getLogger(GitHubTagSource.class.getName());
+
+    /**
+     * @since 0.8.0
+     */
+    public static final String API_URL = "https://api.github.com";
+
+    private static final int TIMEOUT_MILLIS = 20000;
+
+    private static final Type TAG_LIST_TYPE = new TypeToken<List<RepositoryTag>>() {
+    }.getType();
+
+    /**
+     * A page of tags as stored on disk
+     */
+    private static final class CachedPage {
+        String url;
+        @Nullable
+        String etag;
+        @Nullable
+        String next;
+        List<RepositoryTag> tags;
+    }
+
+    /**
+     * What is stored on disk
+     */
+    private static final class CachedTags {
+        long fetched;
+        List<RepositoryTag> tags;
+        /**
+         * Null in caches written by older versions
+         */
+        @Nullable
+        List<CachedPage> pages;
+    }
+
+    private final String apiUrl;
+
+    private final String organization;
+
+    private final String repoName;
+
+    @Nullable
+    private final String token;
+
+    @Nullable
+    private final File cacheDir;
+
+    private final long ttlMillis;
+
+    /**
+     * Creates a source without cache.
+     *
+     * @param token
+     *            OAuth2 token, if null or empty requests are anonymous
+     *
+     * @since 0.8.0
+     */
+    public GitHubTagSource(String organization, String repoName, @Nullable String token) {
+        this(API_URL, organization, repoName, token, null, 0);
+    }
+
+    /**
+     * @param apiUrl
+     *            i.e. {@link #API_URL}
+     * @param token
+     *            OAuth2 token, if null or empty requests are anonymous
+     * @param cacheDir
+     *            directory holding cached tags of all repos, if null tags are
+     *            not cached.
+     * @param ttlMillis
+     *            for how long cached tags are used without asking GitHub
+     *
+     * @since 0.8.0
+     */
+    public GitHubTagSource(String apiUrl, String organization, String repoName, @Nullable String token,
+            @Nullable File cacheDir, long ttlMillis) {
+        checkNotEmpty(apiUrl, "Invalid api url!");
+        checkNotEmpty(organization, "Invalid organization!");
+        checkNotEmpty(repoName, "Invalid repo name!");
+        checkArgument(ttlMillis >= 0, "Ttl must be non negative, found instead %s", ttlMillis);
+        this.apiUrl = apiUrl.endsWith("/") ? apiUrl.substring(0, apiUrl.length() - 1) : apiUrl;
+        this.organization = organization;
+        this.repoName = repoName;
+        this.token = token == null || token.isEmpty() ? null : token;
+        this.cacheDir = cacheDir;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Override
+    public ImmutableList<RepositoryTag> fetchTags() {
+        CachedTags cached = readCache();
+        long now = System.currentTimeMillis();
+
+        if (cached != null && now - cached.fetched < ttlMillis) {
+            LOG.log(Level.INFO, "Using tags of {0}/{1} cached on {2}",
+                    new Object[] { organization, repoName, new Date(cached.fetched) });
+            return ImmutableList.copyOf(cached.tags);
+        }
+
+        CachedTags fresh;
+        try {
+            fresh = download(cached == null ? null : cached.pages);
+        } catch (IOException ex) {
+            if (cached == null) {
+                throw new JosmanIoException("Couldn't fetch tags of " + organization + "/" + repoName + " from "
+                        + apiUrl, ex);
+            }
+            LOG.log(Level.WARNING, "Couldn't fetch tags of {0}/{1}, using the ones cached on {2}. Error was: {3}",
+                    new Object[] { organization, repoName, new Date(cached.fetched), ex.toString() });
+            return ImmutableList.copyOf(cached.tags);
+        }
+
+        if (fresh == null) {
+            LOG.log(Level.INFO, "Tags of {0}/{1} didn't change since {2}",
+                    new Object[] { organization, repoName, new Date(cached.fetched) });
+            cached.fetched = now;
+            writeCache(cached);
+            return ImmutableList.copyOf(cached.tags);
+        }
+
+        fresh.fetched = now;
+        writeCache(fresh);
+        return ImmutableList.copyOf(fresh.tags);
+    }
+
+    /**
+     * Downloads all the pages of tags. Pages found in {@code previous} are
+     * requested conditionally with their own ETag, and reused if unchanged.
+     *
+     * @param previous
+     *            pages fetched by previous run, if any
+     * @return null if no page changed
+     */
+    @Nullable
+    private CachedTags download(@Nullable List<CachedPage> previous) throws IOException {
+        CachedTags ret = new CachedTags();
+        ret.tags = new ArrayList<>();
+        ret.pages = new ArrayList<>();
+
+        boolean changed = previous == null;
+        String url = apiUrl + "/repos/" + organization + "/" + repoName + "/tags?per_page=100";
+        while (url != null) {
+            int i = ret.pages.size();
+            CachedPage prev = previous != null && i < previous.size() && url.equals(previous.get(i).url)
+                    && previous.get(i).tags != null ? previous.get(i) : null;
+
+            LOG.log(Level.FINE, "Fetching {0}", url);
+            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setConnectTimeout(TIMEOUT_MILLIS);
+            conn.setReadTimeout(TIMEOUT_MILLIS);
+            conn.setRequestProperty("Accept", "application/vnd.github.v3+json");
+            conn.setRequestProperty("User-Agent", "josman-maven-plugin");
+            if (token != null) {
+                conn.setRequestProperty("Authorization", "token " + token);
+            }
+            if (prev != null && prev.etag != null) {
+                conn.setRequestProperty("If-None-Match", prev.etag);
+            }
+            CachedPage page;
+            try {
+                int code = conn.getResponseCode();
+                String link = conn.getHeaderField("Link");
+                if (prev != null && prev.etag != null && code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    page = prev;
+                    // a page may stay the same while new pages are added after it
+                    if (link != null) {
+                        page.next = nextPageUrl(link);
+                    }
+                } else if (code == HttpURLConnection.HTTP_OK) {
+                    page = new CachedPage();
+                    page.url = url;
+                    page.etag = conn.getHeaderField("ETag");
+                    page.next = nextPageUrl(link);
+                    try (Reader reader = new InputStreamReader(conn.getInputStream(), "UTF-8")) {
+                        List<RepositoryTag> tags = GsonUtils.getGson()
+                                                            .fromJson(reader, TAG_LIST_TYPE);
+                        page.tags = tags == null ? new ArrayList<RepositoryTag>() : tags;
+                    }
+                    changed = true;
+                } else {
+                    throw new IOException("Server replied " + code + " " + conn.getResponseMessage() + " for " + url);
+                }
+            } finally {
+                conn.disconnect();
+            }
+            ret.pages.add(page);
+            ret.tags.addAll(page.tags);
+            url = page.next;
+        }
+        if (previous != null && previous.size() != ret.pages.size()) {
+            changed = true;
+        }
+        return changed ? ret : null;
+    }
+
+    /**
+     * Returns the url of next page from a Link header like
+     * {@code <https://...?page=2>; rel="next", <...>; rel="last"}, or null if
+     * there is none.
+     */
+    @Nullable
+    static String nextPageUrl(@Nullable String linkHeader) {
+        if (linkHeader == null) {
+            return null;
+        }
+        for (String link : linkHeader.split(",")) {
+            String[] parts = link.split(";");
+            for (int i = 1; i < parts.length; i++) {
+                if (parts[i].trim()
+                            .replace(" ", "")
+                            .equals("rel=\"next\"")) {
+                    String url = parts[0].trim();
+                    if (url.startsWith("<") && url.endsWith(">")) {
+                        return url.substring(1, url.length() - 1);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private File cacheFile() {
+        return new File(new File(new File(new File(cacheDir, "github"), organization), repoName), "tags.json");
+    }
+
+    /**
+     * Returns null if there is no cache or it is unreadable.
+     */
+    @Nullable
+    private CachedTags readCache() {
+        if (cacheDir == null) {
+            return null;
+        }
+        File file = cacheFile();
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            CachedTags ret = GsonUtils.getGson()
+                                      .fromJson(FileUtils.readFileToString(file, "UTF-8"), CachedTags.class);
+            if (ret == null || ret.tags == null) {
+                throw new IllegalStateException("Missing tags");
+            }
+            return ret;
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Ignoring corrupted tags cache " + file.getAbsolutePath());
+            LOG.log(Level.FINE, "Error was: ", ex);
+            return null;
+        }
+    }
+
+    private void writeCache(CachedTags cached) {
+        if (cacheDir == null) {
+            return;
+        }
+        File file = cacheFile();
+        File tmp = null;
+        try {
+            File parent = file.getParentFile();
+            if (!parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Couldn't create directory " + parent.getAbsolutePath());
+            }
+            tmp = File.createTempFile("tags", ".tmp", parent);
+            FileUtils.write(tmp, GsonUtils.toJson(cached), "UTF-8");
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Couldn't write tags cache " + file.getAbsolutePath());
+            LOG.log(Level.FINE, "Error was: ", ex);
+        } finally {
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "GitHub repo " + organization + "/" + repoName;
+    }
+}
@@ -0,0 +1,81 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Map;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.eclipse.egit.github.core.TypedResource;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Reads tags from <code>refs/tags</code> of a local git repository, without
+ * any network access.
+ * 
+ * @since 0.8.0
+ */
+public class GitTagSource implements TagSource {
+
+    private final Repository repo;
+
+    /**
+     * @since 0.8.0
+     */
+    public GitTagSource(Repository repo) {
+        checkNotNull(repo);
+        this.repo = repo;
+    }
+
+    /**
+     * Returns true if the repository has at least one tag.
+     * 
+     * @since 0.8.0
+     */
+    public boolean hasTags() {
+        return !repo.getTags()
+                    .isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * Annotated tags are peeled, so the commit sha is always the one of the
+     * tagged commit.
+     * 
+     * @since 0.8.0
+     */
+    @Override
+    public ImmutableList<RepositoryTag> fetchTags() {
+        try {
+            ImmutableList.Builder<RepositoryTag> retb = ImmutableList.builder();
+            for (Map.Entry<String, Ref> entry : repo.getTags()
+                                                    .entrySet()) {
+                Ref ref = repo.peel(entry.getValue());
+                ObjectId commitId = ref.getPeeledObjectId() == null ? ref.getObjectId() : ref.getPeeledObjectId();
+
+                TypedResource commit = new TypedResource();
+                commit.setType(TypedResource.TYPE_COMMIT);
+                commit.setSha(commitId.name());
+
+                RepositoryTag tag = new RepositoryTag();
+                tag.setName(entry.getKey());
+                tag.setCommit(commit);
+                retb.add(tag);
+            }
+            return retb.build();
+        } catch (Exception ex) {
+            throw new JosmanIoException("Couldn't read tags from git repo at " + repo.getDirectory(), ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "git repo at " + repo.getDirectory();
+    }
+}
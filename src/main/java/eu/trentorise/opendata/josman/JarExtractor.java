@@ -0,0 +1,206 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Extracts a directory of a jar, i.e. a javadoc jar holding thousands of
+ * small files. Entries are split in chunks which may be extracted in
+ * parallel, each thread reusing its own large buffer. Files already having
+ * the size and CRC of their entry are left untouched, so re-extracting the
+ * same jar only writes what changed. Extracted files are added to an
+ * {@link OutputStore}.
+ *
+ * @since 0.8.0
+ */
+final class JarExtractor {
+
+    private static final Logger LOG = Logger.getLogger(JarExtractor.class.getName());
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private JarExtractor() {
+    }
+
+    /**
+     * Extracts the files starting with {@code dirPath} from {@code jarFile}
+     * to {@code destDir}
+     *
+     * @param batch
+     *            where chunks of entries are submitted
+     * @param chunks
+     *            number of chunks to split entries into, i.e. the number of
+     *            threads
+     * @param store
+     *            where extracted files are added
+     * @return the number of files written
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    static int extract(File jarFile, File destDir, String dirPath, PageBatch batch, int chunks,
+            OutputStore store) {
+        return extract(jarFile, destDir, dirPath, batch, chunks, store, null);
+    }
+
+    /**
+     * Like {@link #extract(File, File, String, PageBatch, int, OutputStore)},
+     * but files which {@code manifest} says were extracted by previous build
+     * from an entry with same name, size and CRC are kept without reading
+     * them.
+     *
+     * @param manifest
+     *            if null, existing files are checked by CRC
+     * @throws JosmanIoException
+     *
+     * @since 0.8.0
+     */
+    static int extract(final File jarFile, final File destDir, String dirPath, PageBatch batch, int chunks,
+            final OutputStore store, @Nullable final BuildManifest manifest) {
+        checkNotNull(jarFile);
+        checkNotNull(destDir);
+        checkNotNull(dirPath);
+        checkNotNull(batch);
+        checkNotNull(store);
+        checkArgument(chunks >= 1, "Chunks must be at least 1, found instead %s", chunks);
+
+        final String normalizedDirPath = dirPath.startsWith("/") ? dirPath.substring(1) : dirPath;
+
+        final AtomicInteger written = new AtomicInteger();
+        try (final JarFile jar = new JarFile(jarFile)) {
+            List<JarEntry> files = new ArrayList<>();
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                JarEntry entry = entries.nextElement();
+                if (!entry.getName()
+                          .startsWith(normalizedDirPath)) {
+                    continue;
+                }
+                File target = target(destDir, normalizedDirPath, entry);
+                // directories are created upfront, so workers don't race on them
+                File dir = entry.isDirectory() ? target : target.getParentFile();
+                if (!dir.mkdirs() && !dir.isDirectory()) {
+                    throw new IOException("Couldn't create directory " + dir.getAbsolutePath());
+                }
+                if (!entry.isDirectory()) {
+                    files.add(entry);
+                }
+            }
+
+            int chunkSize = (files.size() + chunks - 1) / chunks;
+            for (int i = 0; i < files.size(); i += chunkSize) {
+                final List<JarEntry> chunk = files.subList(i, Math.min(files.size(), i + chunkSize));
+                batch.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (JarEntry entry : chunk) {
+                            File target = target(destDir, normalizedDirPath, entry);
+                            String fingerprint = manifest == null ? null : fingerprint(entry);
+                            try {
+                                if (fingerprint != null && manifest.isUpToDate(target, fingerprint)) {
+                                    continue;
+                                }
+                                if (!isUpToDate(entry, target)) {
+                                    OutputStore.unlink(target);
+                                    copy(jar, entry, target);
+                                    written.incrementAndGet();
+                                }
+                                store.add(target);
+                                if (manifest != null) {
+                                    manifest.record(target, fingerprint == null ? "" : fingerprint);
+                                }
+                            } catch (IOException ex) {
+                                throw new JosmanIoException("Error while extracting " + entry.getName() + " from "
+                                        + jarFile.getAbsolutePath(), ex);
+                            }
+                        }
+                    }
+                });
+            }
+            // jar must stay open until all chunks are done
+            batch.await();
+            LOG.log(Level.FINE, "Written {0} of {1} files from {2}",
+                    new Object[] { written.get(), files.size(), jarFile.getAbsolutePath() });
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while extracting jar file! Jar source: " + jarFile.getAbsolutePath()
+                    + " destDir = " + destDir.getAbsolutePath(), ex);
+        }
+        return written.get();
+    }
+
+    private static File target(File destDir, String normalizedDirPath, JarEntry entry) {
+        return new File(destDir, entry.getName()
+                                      .substring(normalizedDirPath.length()));
+    }
+
+    /**
+     * Returns the fingerprint of {@code entry} as found in the jar directory,
+     * or null if its size or CRC are unknown.
+     */
+    @Nullable
+    private static String fingerprint(JarEntry entry) {
+        if (entry.getSize() < 0 || entry.getCrc() < 0) {
+            return null;
+        }
+        return new Fingerprint().put(entry.getName())
+                                .put(String.valueOf(entry.getSize()))
+                                .put(String.valueOf(entry.getCrc()))
+                                .hex();
+    }
+
+    /**
+     * Returns true if {@code target} has same size and CRC of {@code entry}.
+     * Entries with unknown size or CRC are never up to date.
+     */
+    private static boolean isUpToDate(JarEntry entry, File target) throws IOException {
+        if (entry.getSize() < 0 || entry.getCrc() < 0 || !target.isFile() || target.length() != entry.getSize()) {
+            return false;
+        }
+        byte[] buffer = BUFFERS.get();
+        CRC32 crc = new CRC32();
+        try (InputStream in = new FileInputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+            }
+        }
+        return crc.getValue() == entry.getCrc();
+    }
+
+    private static void copy(JarFile jar, JarEntry entry, File target) throws IOException {
+        byte[] buffer = BUFFERS.get();
+        try (InputStream in = jar.getInputStream(entry); OutputStream out = new FileOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import eu.trentorise.opendata.commons.SemVersion;
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Javadoc jars of released versions of a project, resolved at most once per
+ * build. Jars can be prefetched in the background on a small dedicated pool,
+ * so downloads overlap with each other and don't take threads meant for
+ * rendering.
+ *
+ * Thread safe.
+ *
+ * @since 0.8.0
+ */
+final class JavadocJars {
+
+    private final JavadocResolver resolver;
+
+    private final String groupId;
+
+    private final String artifactId;
+
+    private final ExecutorService executor;
+
+    private final ConcurrentMap<SemVersion, Future<File>> jars;
+
+    /**
+     * @param maxDownloads
+     *            maximum number of jars resolved in parallel
+     *
+     * @since 0.8.0
+     */
+    JavadocJars(JavadocResolver resolver, String groupId, String artifactId, int maxDownloads) {
+        checkNotNull(resolver);
+        checkNotEmpty(groupId, "Invalid groupId!");
+        checkNotEmpty(artifactId, "Invalid artifactId!");
+        checkArgument(maxDownloads >= 1, "Max downloads must be at least 1, found instead %s", maxDownloads);
+        this.resolver = resolver;
+        this.groupId = groupId;
+        this.artifactId = artifactId;
+        this.jars = new ConcurrentHashMap<>();
+
+        final ClassLoader classLoader = Thread.currentThread()
+                                              .getContextClassLoader();
+        this.executor = Executors.newFixedThreadPool(maxDownloads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread ret = new Thread(r, "josman-javadoc-" + count.incrementAndGet());
+                ret.setDaemon(true);
+                ret.setContextClassLoader(classLoader);
+                return ret;
+            }
+        });
+    }
+
+    private FutureTask<File> newTask(final SemVersion version) {
+        return new FutureTask<>(new Callable<File>() {
+            @Override
+            public File call() {
+                return resolver.resolve(groupId, artifactId, version);
+            }
+        });
+    }
+
+    /**
+     * Starts resolving jars of given versions in the background.
+     *
+     * @since 0.8.0
+     */
+    void prefetch(Iterable<SemVersion> versions) {
+        for (SemVersion version : versions) {
+            FutureTask<File> task = newTask(version);
+            if (jars.putIfAbsent(version, task) == null) {
+                executor.execute(task);
+            }
+        }
+    }
+
+    /**
+     * Returns the jar of given version, waiting for it to be resolved. If it
+     * was not prefetched it is resolved in the calling thread.
+     *
+     * @throws RuntimeException
+     *             the exception raised by the resolver, as is.
+     *
+     * @since 0.8.0
+     */
+    File get(SemVersion version) {
+        Future<File> future = jars.get(version);
+        if (future == null) {
+            FutureTask<File> task = newTask(version);
+            future = jars.putIfAbsent(version, task);
+            if (future == null) {
+                future = task;
+                task.run();
+            }
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new JosmanException("Error while resolving javadoc of version " + version, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new JosmanException("Interrupted while waiting for javadoc of version " + version, ex);
+        }
+    }
+
+    /**
+     * Stops pending downloads.
+     *
+     * @since 0.8.0
+     */
+    void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,49 @@
+package eu.trentorise.opendata.josman;
+
+import java.io.File;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.commons.SemVersion;
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+import eu.trentorise.opendata.josman.exceptions.JosmanNotFoundException;
+
+/**
+ * Finds javadoc jars of released versions. Implementations must be thread
+ * safe, as jars of different versions are resolved in parallel.
+ * 
+ * @since 0.8.0
+ */
+public interface JavadocResolver {
+
+    /**
+     * Returns a local file holding the javadoc jar of given artifact version.
+     * The file must not be modified nor deleted by the caller.
+     * 
+     * @throws JosmanNotFoundException
+     *             if the jar doesn't exist
+     * @throws JosmanIoException
+     *             on any other error
+     * 
+     * @since 0.8.0
+     */
+    File resolve(String groupId, String artifactId, SemVersion version);
+
+    /**
+     * Returns the content of file at {@code entryPath} inside the javadoc jar
+     * of given artifact version, or null if the jar doesn't have it.
+     * Implementations should avoid downloading the whole jar when possible.
+     * 
+     * @param entryPath
+     *            path inside the jar, i.e.
+     *            {@link JosmanProject#RELATIVE_EVAL_FILEPATH}
+     * @throws JosmanNotFoundException
+     *             if the jar doesn't exist
+     * @throws JosmanIoException
+     *             on any other error
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    byte[] fetchEntry(String groupId, String artifactId, SemVersion version, String entryPath);
+}
@@ -6,6 +6,8 @@ import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEm
 
 import java.io.File;
 
+import javax.annotation.Nullable;
+
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
@@ -20,6 +22,36 @@ import eu.trentorise.opendata.josman.exceptions.JosmanException;
  */
 public class JosmanConfig {
 
+    /**
+     * Tag source which reads local git tags if there are any, otherwise
+     * GitHub ones.
+     * 
+     * @since 0.8.0
+     */
+    public static final String TAG_SOURCE_AUTO = "auto";
+
+    /**
+     * Tag source which reads <code>refs/tags</code> of the local git repo.
+     * 
+     * @since 0.8.0
+     */
+    public static final String TAG_SOURCE_GIT = "git";
+
+    /**
+     * Tag source which fetches tags with the GitHub API.
+     * 
+     * @since 0.8.0
+     */
+    public static final String TAG_SOURCE_GITHUB = "github";
+
+    /**
+     * Prefix of tag sources reading tags from a file, i.e.
+     * {@code file:src/test/tags.txt}. See {@link FileTagSource}
+     * 
+     * @since 0.8.0
+     */
+    public static final String TAG_SOURCE_FILE_PREFIX = "file:";
+
     /**
      * If enables gens documentation for the current snapshot
      * 
@@ -70,6 +102,69 @@ public class JosmanConfig {
      */
     private ImmutableList<SemVersion> ignoredVersions;
 
+    /**
+     * Maximum number of pages to render in parallel
+     * 
+     * @since 0.8.0
+     */
+    private int threads;
+
+    /**
+     * If true only pages whose inputs changed since previous build are
+     * regenerated.
+     * 
+     * @since 0.8.0
+     */
+    private boolean incremental;
+
+    /**
+     * Directory for caching rendered pages of released versions. If null
+     * caching is disabled.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private File cacheDir;
+
+    /**
+     * Where release tags are discovered, see {@link #getTagSource()}
+     * 
+     * @since 0.8.0
+     */
+    private String tagSource;
+
+    /**
+     * @since 0.8.0
+     */
+    @Nullable
+    private String githubToken;
+
+    /**
+     * Minutes GitHub tags are reused from cache dir without asking GitHub
+     * 
+     * @since 0.8.0
+     */
+    private int tagsTtl;
+
+    /**
+     * @since 0.8.0
+     */
+    private LatestMode latestMode;
+
+    /**
+     * If true identical static outputs are hard linked to a single copy.
+     * 
+     * @since 0.8.0
+     */
+    private boolean dedupe;
+
+    /**
+     * Maximum seconds for evaluating an $evalNow expression, 0 means no limit.
+     * 
+     * @since 0.8.0
+     */
+    private int evalTimeout;
+
     /**
      * @since 0.8.0
      */
@@ -80,6 +175,15 @@ public class JosmanConfig {
         this.javadoc = false;
         this.releases = false;
         this.failOnError = false;        
+        this.threads = Runtime.getRuntime().availableProcessors();
+        this.incremental = false;
+        this.cacheDir = new File(System.getProperty("user.home"), ".josman" + File.separator + "cache");
+        this.tagSource = TAG_SOURCE_AUTO;
+        this.githubToken = null;
+        this.tagsTtl = 60;
+        this.latestMode = LatestMode.copy;
+        this.dedupe = true;
+        this.evalTimeout = 60;
     }
 
 
@@ -139,6 +243,105 @@ public class JosmanConfig {
         return ignoredVersions;
     }
 
+    /**
+     * Maximum number of pages to render in parallel. By default it's the
+     * number of available processors.
+     * 
+     * @since 0.8.0
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * If true, previously generated website is kept and only pages whose
+     * inputs changed are regenerated. False by default.
+     * 
+     * @since 0.8.0
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Directory where rendered pages of released versions are cached among
+     * builds. By default it's {@code ~/.josman/cache}. If null caching is
+     * disabled.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    public File getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Where release tags are discovered. One of {@link #TAG_SOURCE_AUTO}
+     * (default), {@link #TAG_SOURCE_GIT}, {@link #TAG_SOURCE_GITHUB} or
+     * {@link #TAG_SOURCE_FILE_PREFIX} followed by a file path.
+     * 
+     * @since 0.8.0
+     */
+    public String getTagSource() {
+        return tagSource;
+    }
+
+    /**
+     * OAuth2 token for GitHub API requests. If null requests are anonymous.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    public String getGithubToken() {
+        return githubToken;
+    }
+
+    /**
+     * Minutes tags fetched from GitHub are reused from {@link #getCacheDir()
+     * cache dir} without asking GitHub. After that they are refreshed with a
+     * conditional request. By default it's 60.
+     * 
+     * @since 0.8.0
+     */
+    public int getTagsTtl() {
+        return tagsTtl;
+    }
+
+    /**
+     * How the 'latest' docs directory is made. By default it's
+     * {@link LatestMode#copy}
+     * 
+     * @since 0.8.0
+     */
+    public LatestMode getLatestMode() {
+        return latestMode;
+    }
+
+    /**
+     * If true, static files (website template, images, javadoc) having the
+     * same content of an already written one are hard linked to it instead of
+     * being stored again. True by default.
+     * 
+     * @since 0.8.0
+     */
+    public boolean isDedupe() {
+        return dedupe;
+    }
+
+    /**
+     * Maximum seconds for evaluating an $evalNow expression, counted from
+     * when its evaluation starts. Waiting for a free evaluation thread is
+     * limited to the same time. Expressions taking longer are abandoned and
+     * reported as errors, and not evaluated again. If zero there is no
+     * limit and expressions are evaluated in the calling thread. By default
+     * it's 60.
+     * 
+     * @since 0.8.0
+     */
+    public int getEvalTimeout() {
+        return evalTimeout;
+    }
+
     /**
      * @since 0.8.0
      */
@@ -223,6 +426,129 @@ public class JosmanConfig {
             return this;
         }
 
+        /**
+         * Sets the maximum number of pages to render in parallel. 1 means
+         * pages are rendered one at a time in the calling thread.
+         * 
+         * @since 0.8.0
+         */
+        public Builder setThreads(int threads) {
+            checkBuilt();
+            checkArgument(threads >= 1, "Threads must be at least 1, found instead %s", threads);
+            config.threads = threads;
+            return this;
+        }
+
+        /**
+         * @since 0.8.0
+         */
+        public Builder setIncremental(boolean incremental) {
+            checkBuilt();
+            config.incremental = incremental;
+            return this;
+        }
+
+        /**
+         * Sets the directory for caching rendered pages of released versions,
+         * i.e. a directory shared among CI builds. If null or empty, caching
+         * is disabled.
+         * 
+         * @since 0.8.0
+         */
+        public Builder setCacheDir(@Nullable String cacheDirPath) {
+            checkBuilt();
+            if (cacheDirPath == null || cacheDirPath.trim()
+                                                    .isEmpty()) {
+                config.cacheDir = null;
+            } else {
+                config.cacheDir = new File(cacheDirPath.trim());
+            }
+            return this;
+        }
+
+        /**
+         * Sets where release tags are discovered, see
+         * {@link JosmanConfig#getTagSource()}
+         * 
+         * @throws IllegalArgumentException
+         *             if source is not recognized
+         * 
+         * @since 0.8.0
+         */
+        public Builder setTagSource(String tagSource) {
+            checkBuilt();
+            checkNotEmpty(tagSource, "Invalid tag source!");
+            String trimmed = tagSource.trim();
+            checkArgument(TAG_SOURCE_AUTO.equals(trimmed)
+                    || TAG_SOURCE_GIT.equals(trimmed)
+                    || TAG_SOURCE_GITHUB.equals(trimmed)
+                    || (trimmed.startsWith(TAG_SOURCE_FILE_PREFIX)
+                            && trimmed.length() > TAG_SOURCE_FILE_PREFIX.length()),
+                    "Invalid tag source, must be one of %s, %s, %s or %s<path>, found instead %s",
+                    TAG_SOURCE_AUTO, TAG_SOURCE_GIT, TAG_SOURCE_GITHUB, TAG_SOURCE_FILE_PREFIX, tagSource);
+            config.tagSource = trimmed;
+            return this;
+        }
+
+        /**
+         * Sets the OAuth2 token for GitHub API requests. If null or empty,
+         * requests are anonymous.
+         * 
+         * @since 0.8.0
+         */
+        public Builder setGithubToken(@Nullable String githubToken) {
+            checkBuilt();
+            if (githubToken == null || githubToken.trim()
+                                                  .isEmpty()) {
+                config.githubToken = null;
+            } else {
+                config.githubToken = githubToken.trim();
+            }
+            return this;
+        }
+
+        /**
+         * Sets minutes tags fetched from GitHub are reused without asking
+         * GitHub, see {@link JosmanConfig#getTagsTtl()}
+         * 
+         * @since 0.8.0
+         */
+        public Builder setTagsTtl(int minutes) {
+            checkBuilt();
+            checkArgument(minutes >= 0, "Tags ttl must be non negative, found instead %s", minutes);
+            config.tagsTtl = minutes;
+            return this;
+        }
+
+        /**
+         * @since 0.8.0
+         */
+        public Builder setLatestMode(LatestMode latestMode) {
+            checkBuilt();
+            checkNotNull(latestMode);
+            config.latestMode = latestMode;
+            return this;
+        }
+
+        /**
+         * @since 0.8.0
+         */
+        public Builder setDedupe(boolean dedupe) {
+            checkBuilt();
+            config.dedupe = dedupe;
+            return this;
+        }
+
+        /**
+         * @since 0.8.0
+         */
+        public Builder setEvalTimeout(int evalTimeout) {
+            checkBuilt();
+            checkArgument(evalTimeout >= 0, "Eval timeout must be non negative, found instead %s", evalTimeout);
+            config.evalTimeout = evalTimeout;
+            return this;
+        }
+
         /**
          * @since 0.8.0
          */
@@ -330,6 +656,15 @@ public class JosmanConfig {
                 + "\n    releases        = " + releases 
                 + "\n    javadoc         = " + javadoc 
                 + "\n    failOnErrors    = " + failOnError 
+                + "\n    threads         = " + threads 
+                + "\n    incremental     = " + incremental 
+                + "\n    cacheDir        = " + (cacheDir == null ? "disabled" : cacheDir.getAbsolutePath()) 
+                + "\n    tagSource       = " + tagSource 
+                + "\n    githubToken     = " + (githubToken == null ? "not set" : "set") 
+                + "\n    tagsTtl         = " + tagsTtl + " min"
+                + "\n    latest          = " + latestMode
+                + "\n    dedupe          = " + dedupe
+                + "\n    evalTimeout     = " + evalTimeout + " s"
                  
                 + "\n    ignoredVersions = " + ignoredVersions 
                 + "\n";
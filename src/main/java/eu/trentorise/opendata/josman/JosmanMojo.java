@@ -25,8 +25,12 @@ import java.util.List;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.sonatype.aether.RepositorySystem;
+import org.sonatype.aether.RepositorySystemSession;
+import org.sonatype.aether.repository.RemoteRepository;
 
 
 /**
@@ -49,6 +53,26 @@ public abstract class JosmanMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     protected MavenProject project;
 
+    /**
+     * Used for resolving javadoc jars of released versions
+     * 
+     * @since 0.8.0
+     */
+    @Component
+    private RepositorySystem repoSystem;
+
+    /**
+     * @since 0.8.0
+     */
+    @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
+    private RepositorySystemSession repoSession;
+
+    /**
+     * @since 0.8.0
+     */
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true)
+    private List<RemoteRepository> remoteRepos;
+
     /**
      * These versions will be ignored by the site generator     
      */
@@ -93,6 +117,74 @@ public abstract class JosmanMojo extends AbstractMojo {
      */
     @Parameter(property = "josman.failOnError")
     private String failOnError;    
+
+    /**
+     * Maximum number of pages to render in parallel. By default it's the number of available processors. 
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.threads")
+    private String threads;
+
+    /**
+     * If true keeps the previously generated website and only regenerates pages whose inputs changed. False by default.
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.incremental")
+    private String incremental;
+
+    /**
+     * Directory where rendered pages of released versions are cached among builds. By default it's 
+     * {@code ~/.josman/cache}, set it to 'none' to disable caching.
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.cacheDir")
+    private String cacheDir;
+
+    /**
+     * Where to discover release tags: 'git' reads tags of the local repo,
+     * 'github' uses GitHub API, 'file:path' reads tag names from a file. By
+     * default ('auto') local tags are used if there are any.
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.tagSource")
+    private String tagSource;
+
+    /**
+     * Minutes tags fetched from GitHub are reused from cache dir without asking GitHub. By default it's 60.
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.tagsTtl")
+    private String tagsTtl;
+
+    /**
+     * How the 'latest' docs directory is made: 'copy' (default), 'symlink', 'hardlink' or 'redirect'. 
+     * See {@link LatestMode}
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.latest")
+    private String latest;
+
+    /**
+     * If true static files identical to already written ones are hard linked to them. True by default.
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.dedupe")
+    private String dedupe;
+
+    /**
+     * Maximum seconds for evaluating an $evalNow expression, 0 means no limit. By default it's 60.
+     * 
+     * @since 0.8.0
+     */
+    @Parameter(property = "josman.evalTimeout")
+    private String evalTimeout;
     
     
     /**
@@ -250,6 +342,71 @@ public abstract class JosmanMojo extends AbstractMojo {
         } catch (Exception ex) {
             fatalError("Couldn't parse 'josman.failOnError' parameter, found string: " + failOnError, ex);
         }       
+
+        try {
+            if (threads != null){
+                configb.setThreads(Integer.parseInt(threads.trim()));
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.threads' parameter, found string: " + threads, ex);
+        }       
+
+        try {
+            if (incremental != null){
+                configb.setIncremental(Boolean.parseBoolean(incremental));
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.incremental' parameter, found string: " + incremental, ex);
+        }       
+
+        if (cacheDir != null){
+            configb.setCacheDir("none".equals(cacheDir.trim()) ? null : cacheDir);
+        }
+
+        try {
+            if (tagSource != null){
+                configb.setTagSource(tagSource);
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.tagSource' parameter, found string: " + tagSource, ex);
+        }       
+
+        try {
+            if (tagsTtl != null){
+                configb.setTagsTtl(Integer.parseInt(tagsTtl.trim()));
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.tagsTtl' parameter, found string: " + tagsTtl, ex);
+        }       
+
+        try {
+            if (latest != null){
+                configb.setLatestMode(LatestMode.valueOf(latest.trim()));
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.latest' parameter, found string: '" + latest + "'\n"
+                       +"\n Possible options are: \n"
+                       + Arrays.toString(LatestMode.values()).replace("[", "").replace("]","")
+                       + "\n\n", ex);
+        }       
+
+        try {
+            if (dedupe != null){
+                configb.setDedupe(Boolean.parseBoolean(dedupe));
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.dedupe' parameter, found string: " + dedupe, ex);
+        }       
+
+        try {
+            if (evalTimeout != null){
+                configb.setEvalTimeout(Integer.parseInt(evalTimeout.trim()));
+            } 
+        } catch (Exception ex) {
+            fatalError("Couldn't parse 'josman.evalTimeout' parameter, found string: " + evalTimeout, ex);
+        }       
+
+        configb.setGithubToken(getOauth2Token());
                        
         
         
@@ -271,9 +428,17 @@ public abstract class JosmanMojo extends AbstractMojo {
         
         info("\n\n" + cfg.toString());        
         
+        JavadocResolver javadocResolver;
+        if (repoSystem != null && repoSession != null && remoteRepos != null) {
+            javadocResolver = new AetherJavadocResolver(repoSystem, repoSession, remoteRepos);
+        } else {
+            javadocResolver = new CentralJavadocResolver(cfg.getCacheDir());
+        }
+
         return new JosmanProject(
                 getProject(),
-                cfg);
+                cfg,
+                javadocResolver);
 
     }
     
@@ -17,8 +17,10 @@ import java.io.FileInputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -34,33 +36,38 @@ import org.apache.commons.io.FileUtils;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.model.Scm;
-import org.apache.maven.model.io.xpp3.MavenXpp3Reader;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
 import org.eclipse.egit.github.core.RepositoryTag;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
-import java.util.SortedMap;
-import java.util.regex.Matcher;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import org.apache.commons.io.IOUtils;
-import org.eclipse.jgit.lib.FileMode;
-import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.DepthWalk;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import org.eclipse.jgit.treewalk.filter.PathFilter;
 
 import com.google.common.collect.ImmutableList;
 import com.vladsch.flexmark.html.HtmlRenderer;
@@ -80,7 +87,38 @@ import com.vladsch.flexmark.util.options.DataHolder;
 public class JosmanProject {
 
     private static final Logger LOG = Logger.getLogger(JosmanProject.class.getName());
-    private static final int DEPTH = 8000;
+
+    /**
+     * Maximum number of javadoc jars downloaded in parallel
+     * 
+     * @since 0.8.0
+     */
+    private static final int MAX_JAVADOC_DOWNLOADS = 4;
+
+    /**
+     * Html in md pages which may need to be processed after rendering.
+     * 
+     * @since 0.8.0
+     */
+    private static final Pattern VERBATIM_HTML_PATTERN = Pattern.compile("<a[\\s>]|<img[\\s>/]|josman-to-strip",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Size in bytes of the buffer for writing pages to disk
+     * 
+     * @since 0.8.0
+     */
+    private static final int PAGE_WRITE_BUFFER = 64 * 1024;
+
+    /**
+     * Version of the rendered output stored in the render cache. The cache is
+     * shared among builds and plugin versions, and snapshot builds all have
+     * the same implementation version, so bump this whenever changes to
+     * rendering, skeleton or link rewriting alter the html of a page.
+     * 
+     * @since 0.8.0
+     */
+    static final int RENDER_CACHE_FORMAT = 1;
 
     /**
      * Relative filepath of the eval map inside javadoc directory
@@ -109,6 +147,14 @@ public class JosmanProject {
      */
     public final static String TARGET_EVAL_FILEPATH = "target/apidocs/" + RELATIVE_EVAL_FILEPATH;
 
+    /**
+     * Fingerprints of test classpath and expressions of last eval run. Not
+     * put in target/apidocs, so it doesn't end up in javadoc jar.
+     * 
+     * @since 0.8.0
+     */
+    private final static String TARGET_EVAL_FINGERPRINT_FILEPATH = "target/josman-eval.fingerprint";
+
     /**
      * Folder in source code where user documentation is held.
      */
@@ -120,10 +166,51 @@ public class JosmanProject {
     static final String JOSMAN_PROGRAM_LOGO_LINK = "#josman-program-logo-link";
     static final String JOSMAN_ORG_LOGO_LINK = "#josman-org-logo-link";
 
+    private static final String TASK_TEMPLATE = "website template";
+    private static final String TASK_SNAPSHOT_INDEX = "snapshot index";
+    private static final String TASK_SNAPSHOT_DOCS = "snapshot docs";
+    private static final String TASK_RELEASE_INDEX = "release index";
+
     private MavenProject mvnPrj;
 
     private Repository repo;
 
+    /**
+     * Shared by all release tasks during site generation
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private GitDocsReader gitDocs;
+
+    /**
+     * @since 0.8.0
+     */
+    private JavadocResolver javadocResolver;
+
+    /**
+     * Javadoc jars of released versions, prefetched during site generation
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private JavadocJars javadocJars;
+
+    /**
+     * Where static outputs are written, deduplicating them during site
+     * generation if {@link JosmanConfig#isDedupe()}
+     * 
+     * @since 0.8.0
+     */
+    private OutputStore outputStore;
+
+    /**
+     * Evaluates $evalNow expressions with a timeout
+     * 
+     * @since 0.8.0
+     */
+    private final ExprEvaluator exprEvaluator;
+
     /**
      * Null means tags were not fetched. Notice we may also have fetched tags
      * and discovered there where none, so there might also be an empty array.
@@ -131,11 +218,100 @@ public class JosmanProject {
     @Nullable
     private ImmutableList<RepositoryTag> repoTags;
 
+    /**
+     * Release tags to process, built once tags are fetched.
+     * 
+     * @since 0.8.0
+     */
+    private VersionIndex versionIndex;
+
+    /**
+     * Flexmark parsers and renderers are immutable once built, so they are
+     * shared among page rendering threads.
+     */
     private Parser markdownParser;
 
-    private HtmlRenderer markdownRenderer;
+    /**
+     * @since 0.8.0
+     */
+    private ConcurrentMap<String, HtmlRenderer> markdownRenderers;
+
+    /**
+     * Sidebars by page relpaths
+     * 
+     * @since 0.8.0
+     */
+    private ConcurrentMap<List<String>, Sidebar> sidebars;
+
+    /**
+     * @since 0.8.0
+     */
+    private PageLinter linter;
+
+    /**
+     * Class loader with test classpath, for evaluating expressions.
+     * 
+     * @since 0.8.0
+     */
+    private ClassLoader evalClassLoader;
+
+    /**
+     * Pool for rendering pages, only exists during site generation. If null
+     * pages are rendered in the calling thread.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private ExecutorService pagePool;
+
+    /**
+     * Fingerprints of generated outputs, only exists during incremental site
+     * generation.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private BuildManifest manifest;
+
+    /**
+     * Cache of rendered pages of released versions. If null caching is
+     * disabled.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private RenderCache renderCache;
     
     private JosmanConfig cfg;
+
+    /**
+     * Version independent variables
+     * 
+     * @since 0.8.0
+     */
+    private VarExpander projectVars;
+
+    /**
+     * @since 0.8.0
+     */
+    private ConcurrentMap<String, VarExpander> varExpanders;
+
+    /**
+     * Skeleton for pages at website root. Lazily compiled.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private SkeletonTemplate rootSkeleton;
+
+    /**
+     * Skeleton for pages inside version directories. Lazily compiled.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private SkeletonTemplate nestedSkeleton;
+
     
     /**
      * @throws JosmanIoException
@@ -205,6 +381,8 @@ public class JosmanProject {
     );
         
     /**
+     * Creates a project which fetches javadoc of released versions from Maven
+     * Central.
      *
      * @throws JosmanException
      * 
@@ -213,6 +391,20 @@ public class JosmanProject {
     public JosmanProject(
             MavenProject mvnPrj,
             JosmanConfig josmanConfig) {
+        this(mvnPrj, josmanConfig, new CentralJavadocResolver(josmanConfig.getCacheDir()));
+    }
+
+    /**
+     * @param javadocResolver
+     *            finds javadoc jars of released versions
+     * @throws JosmanException
+     * 
+     * @since 0.8.0
+     */
+    public JosmanProject(
+            MavenProject mvnPrj,
+            JosmanConfig josmanConfig,
+            JavadocResolver javadocResolver) {
 
         checkNotNull(mvnPrj, "Invalid Maven project!");
         checkNotEmpty(mvnPrj.getUrl(), "Invalid url!");
@@ -226,13 +418,30 @@ public class JosmanProject {
         checkNotEmpty(mvnPrj.getVersion(), "Invalid version!");
 
         checkNotNull(josmanConfig, "Invalid JosmanConfig !");
+        checkNotNull(javadocResolver, "Invalid javadoc resolver!");
                 
         this.mvnPrj = mvnPrj;
         this.cfg = josmanConfig;             
+        this.javadocResolver = javadocResolver;
+        this.outputStore = new OutputStore(false);
+        this.exprEvaluator = new ExprEvaluator(TimeUnit.SECONDS.toMillis(josmanConfig.getEvalTimeout()),
+                josmanConfig.getThreads());
         
         
         this.markdownParser = Parser.builder(MARKDOWN_OPTIONS).build();        
-        this.markdownRenderer = HtmlRenderer.builder(MARKDOWN_OPTIONS).build();
+        this.markdownRenderers = new ConcurrentHashMap<>();
+        this.sidebars = new ConcurrentHashMap<>();
+        this.versionIndex = VersionIndex.of();
+        this.linter = new PageLinter(josmanConfig.isReleases());
+
+        this.projectVars = makeProjectVars(mvnPrj);
+        this.varExpanders = new ConcurrentHashMap<>();
+
+        if (josmanConfig.getCacheDir() == null) {
+            this.renderCache = null;
+        } else {
+            this.renderCache = new RenderCache(josmanConfig.getCacheDir());
+        }
 
         addClasspaths();
     }
@@ -265,14 +474,13 @@ public class JosmanProject {
                 }
             }
 
-            ClassLoader contextClassLoader = URLClassLoader.newInstance(
+            // pages are rendered in other threads, so ExprEvaluator sets it
+            // as context class loader only while evaluating
+            evalClassLoader = URLClassLoader.newInstance(
                     urls.toArray(new URL[0]),
                     Thread.currentThread()
                           .getContextClassLoader());
 
-            Thread.currentThread()
-                  .setContextClassLoader(contextClassLoader);
-
         } catch (DependencyResolutionRequiredException ex) {
             throw new JosmanException(ex);
         }
@@ -372,6 +580,26 @@ public class JosmanProject {
             final SemVersion version,
             List<String> relPaths,
             Map<String, String> evals) {
+        return copyStream(sourceStream, relPath, version, relPaths, evals, null);
+    }
+
+    /**
+     * Like {@link #copyStream(InputStream, String, SemVersion, List, Map)}
+     * 
+     * @param renderKey
+     *            if not null, md pages are looked up in the render cache with
+     *            this key. Must fingerprint all the inputs of the rendering but
+     *            the tag set.
+     * 
+     * @since 0.8.0
+     */
+    File copyStream(
+            InputStream sourceStream,
+            String relPath,
+            final SemVersion version,
+            List<String> relPaths,
+            Map<String, String> evals,
+            @Nullable String renderKey) {
 
         checkNotNull(sourceStream, "Invalid source stream!");
         checkNotEmpty(relPath, "Invalid relative path!");
@@ -380,7 +608,7 @@ public class JosmanProject {
 
         File targetFile = Josmans.targetFile(cfg.getPagesDir(), relPath, version);
 
-        if (targetFile.exists()) {
+        if (manifest == null && targetFile.exists()) {
             throw new JosmanIoException("Target file already exists! "
                     + targetFile.getAbsolutePath());
         }
@@ -388,17 +616,15 @@ public class JosmanProject {
         if (relPath.endsWith(".md")) {
 
             LOG.log(Level.INFO, "Creating file {0}", targetFile.getAbsolutePath());
-            if (targetFile.exists()) {
-                throw new JosmanIoException("Target file already exists! Target is " + targetFile.getAbsolutePath());
-            }
-            copyMdAsHtml(sourceStream, relPath, version, relPaths, evals);
+            copyMdAsHtml(sourceStream, relPath, version, relPaths, evals, renderKey);
+        } else if (manifest != null) {
+            copyStreamIfChanged(sourceStream, relPath, version, targetFile);
         } else {
 
             LOG.log(Level.INFO, "Copying file into {0}", targetFile.getAbsolutePath());
 
             try {
-                FileUtils.copyInputStreamToFile(sourceStream, targetFile);
-                sourceStream.close();
+                outputStore.copy(sourceStream, targetFile);
                 LOG.info("Done copying file.");
             } catch (Exception ex) {
                 throw new JosmanIoException("Error while copying stream to file!", ex);
@@ -406,8 +632,100 @@ public class JosmanProject {
         }
         return targetFile;
     }
-    
-    
+
+    /**
+     * Copies a non-md stream to {@code targetFile} only if its content changed
+     * since previous build.
+     * 
+     * @throws JosmanIoException
+     * 
+     * @since 0.8.0
+     */
+    private void copyStreamIfChanged(InputStream sourceStream, String relPath, SemVersion version, File targetFile) {
+        try {
+            byte[] bytes = IOUtils.toByteArray(sourceStream);
+            sourceStream.close();
+            String fingerprint = new Fingerprint().put(manifest.getSiteFingerprint())
+                                                  .put(version.toString())
+                                                  .put(relPath)
+                                                  .put(bytes)
+                                                  .hex();
+            if (manifest.isUpToDate(targetFile, fingerprint)) {
+                LOG.log(Level.FINE, "Skipping unchanged file {0}", targetFile.getAbsolutePath());
+            } else {
+                LOG.log(Level.INFO, "Copying file into {0}", targetFile.getAbsolutePath());
+                outputStore.write(bytes, targetFile);
+                manifest.record(targetFile, fingerprint);
+            }
+        } catch (IOException ex) {
+            throw new JosmanIoException("Error while copying stream to file!", ex);
+        }
+    }
+
+    /**
+     * Returns the fingerprint of all the inputs of an md page, or null if the
+     * page must be always regenerated because it has $evalNow expressions.
+     * 
+     * @param expandedMd
+     *            md source with variables already expanded
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    private String pageFingerprint(
+            String expandedMd,
+            String relPath,
+            SemVersion version,
+            List<String> relpaths,
+            Map<String, String> evals) {
+
+        Map<String, String> usedEvals = Josmans.usedEvals(expandedMd, evals);
+        if (usedEvals == null) {
+            return null;
+        }
+        return new Fingerprint().put(manifest.getSiteFingerprint())
+                                .put(version.toString())
+                                .put(relPath)
+                                .put(relpaths)
+                                .put(expandedMd)
+                                .put(usedEvals)
+                                .hex();
+    }
+
+    /**
+     * Returns the fingerprint of inputs shared by all pages: templates, tags,
+     * configuration (including how latest docs and duplicate files are made)
+     * and project variables. If any of these changes, the whole
+     * site is regenerated.
+     * 
+     * @since 0.8.0
+     */
+    private String siteFingerprint() {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.put(JosmanProject.class.getPackage()
+                                           .getImplementationVersion());
+        skeletonTemplate(true).addTo(fingerprint);
+        skeletonTemplate(false).addTo(fingerprint);
+        projectVars.addTo(fingerprint);
+        fingerprint.put(mvnPrj.getArtifactId())
+                   .put(mvnPrj.getVersion())
+                   .put(cfg.isSnapshot())
+                   .put(cfg.isReleases())
+                   .put(cfg.isJavadoc())
+                   .put(cfg.isFailOnError())
+                   .put(cfg.getIgnoredVersions())
+                   .put(cfg.getLatestMode()
+                           .name())
+                   .put(cfg.isDedupe());
+        List<String> tagNames = new ArrayList<>();
+        if (repoTags != null) {
+            for (RepositoryTag tag : repoTags) {
+                tagNames.add(tag.getName());
+            }
+        }
+        fingerprint.put(tagNames);
+        return fingerprint.hex();
+    }
      
 
     /**
@@ -432,6 +750,25 @@ public class JosmanProject {
             final SemVersion version,
             List<String> relpaths,
             Map<String, String> evals) {
+        copyMdAsHtml(sourceMdStream, relPath, version, relpaths, evals, null);
+    }
+
+    /**
+     * Like {@link #copyMdAsHtml(InputStream, String, SemVersion, List, Map)}
+     * 
+     * @param renderKey
+     *            if not null, content and sidebar are looked up in the render
+     *            cache with this key, and stored there if missing.
+     * 
+     * @since 0.8.0
+     */
+    void copyMdAsHtml(
+            InputStream sourceMdStream,
+            String relPath,
+            final SemVersion version,
+            List<String> relpaths,
+            Map<String, String> evals,
+            @Nullable String renderKey) {
 
         checkNotNull(version);
         checkNotEmpty(relPath, "Invalid relative path!");
@@ -442,7 +779,7 @@ public class JosmanProject {
 
         File targetFile = Josmans.targetFile(cfg.getPagesDir(), relPath, version);
 
-        if (targetFile.exists()) {
+        if (manifest == null && targetFile.exists()) {
             throw new JosmanIoException("Trying to write md file to target that already exists!! Target is "
                     + targetFile.getAbsolutePath());
         }
@@ -482,106 +819,189 @@ public class JosmanProject {
         
         
         
-        String filteredSourceMdString = sourceMdString
-                                                        // '#' for legacy compat
-                                                      .replaceAll("#\\{version}", version.toString())
-                                                      .replaceAll("#\\{majorMinorVersion}", Josmans.majorMinor(version))
-                                                      .replaceAll("#\\{repoRelease}",
-                                                              Josmans.repoRelease(Josmans.organization(mvnPrj.getUrl()),
-                                                                      mvnPrj.getArtifactId(), version))
-                                                      .replaceAll("#'\\{version}", "#{version}")
-                                                      .replaceAll("#'\\{majorMinorVersion}", "#{majorMinorVersion}")
-                                                      .replaceAll("#'\\{repoRelease}", "#{repoRelease}")                                                       
-                                                      
-                                                      .replaceAll("jedoc", "josman")                                                                                                          
-                                                       
-                                                       .replaceAll("\\$\\{josman.majorMinorVersion}", Josmans.majorMinor(version))
-                                                       .replaceAll("\\$\\{josman.repoRelease}",
-                                                                Josmans.repoRelease(Josmans.organization(mvnPrj.getUrl()),
-                                                                        mvnPrj.getArtifactId(), version))
-                                                       .replaceAll("\\$'\\{josman.majorMinorVersion}", "\\${josman.majorMinorVersion}")
-                                                       .replaceAll("\\$'\\{josman.repoRelease}", "\\${josman.repoRelease}");                                                       
-        // injecting maven pro
-        Properties props = mvnPrj.getProperties();
+        String filteredSourceMdString = varExpander(version).expand(sourceMdString);
 
-        if (props != null){
-            
-            for (Object obj : props.keySet()){
-                String key = (String) obj;
-                String prop = props.getProperty(key);
-                
-                filteredSourceMdString = replaceProperty(filteredSourceMdString, key, prop);                
-            }            
-        }
-                       
-        Scm scm;
-        if (mvnPrj.getScm() == null){
-            scm = new Scm();
-            scm.setConnection("");
-            scm.setDeveloperConnection("");
-            scm.setTag("");
-            scm.setUrl("");
-        } else {
-            scm = mvnPrj.getScm();
+        String fingerprint = null;
+        if (manifest != null) {
+            fingerprint = pageFingerprint(filteredSourceMdString, relPath, version, relpaths, evals);
+            if (fingerprint != null && manifest.isUpToDate(targetFile, fingerprint)) {
+                LOG.log(Level.FINE, "Skipping unchanged page {0}", targetFile.getAbsolutePath());
+                return;
+            }
         }
-        filteredSourceMdString = replaceProperties(                
-                filteredSourceMdString, "project.artifactId", mvnPrj.getArtifactId(),
-                "project.groupId", mvnPrj.getGroupId(),
-                "project.description", mvnPrj.getDescription(),
-                "project.name", mvnPrj.getName(),
-                "project.version", mvnPrj.getVersion(),
-                "project.url", mvnPrj.getUrl(),
-                "project.basedir", mvnPrj.getBasedir() == null ? "" : mvnPrj.getBasedir().getAbsolutePath(),
-                "project.scm.connection", scm.getConnection(),
-                "project.scm.developerConnection", scm.getDeveloperConnection(),
-                "project.scm.tag", scm.getTag(),
-                "project.scm.url", scm.getUrl(),
-                "pom.artifactId", mvnPrj.getArtifactId(),                
-                "pom.groupId", mvnPrj.getGroupId(),
-                "pom.description", mvnPrj.getDescription(),
-                "pom.name", mvnPrj.getName(),
-                "pom.version", mvnPrj.getVersion()); 
         
-        filteredSourceMdString = Josmans.expandExprs(filteredSourceMdString,
-                    evals,
-                    relPath,
-                    Thread.currentThread()
-                          .getContextClassLoader(),
-                           !cfg.isFailOnError());
+        linter.check(relPath, sourceMdString, varExpander(version), evals, cfg.isFailOnError());
+
+        boolean root = Josmans.isRootpath(relPath);
+
+        RenderCache.Entry rendered = null;
+        if (renderKey != null && renderCache != null) {
+            rendered = renderCache.get(renderKey);
+            if (rendered != null) {
+                LOG.log(Level.FINE, "Found {0} in render cache", relPath);
+            }
+        }
+
+        if (rendered == null) {
+            // $evalNow results may change at each call
+            boolean cacheable = Josmans.usedEvals(filteredSourceMdString, evals) != null;
+
+            filteredSourceMdString = Josmans.expandExprs(filteredSourceMdString,
+                        evals,
+                        relPath,
+                        evalClassLoader,
+                        !cfg.isFailOnError(),
+                        exprEvaluator);
+
+            com.vladsch.flexmark.ast.Node markdownNode = markdownParser.parse(filteredSourceMdString);
+
+            // links and images are rewritten during rendering
+            String contentFromMdHtml = markdownRenderer(version, prependedPath).render(markdownNode);
+
+            String contentHtml;
+            if (VERBATIM_HTML_PATTERN.matcher(filteredSourceMdString)
+                                     .find()) {
+                // verbatim html is not seen by the renderer, we need the DOM.
+                // Rewriting already rewritten links leaves them unchanged
+                Jerry contentFromMd = Jerry.jerry(contentFromMdHtml);
+
+                LinkRewriter rewriter = linkRewriter(version, prependedPath);
+                fixLinks(rewriter, contentFromMd);
+                fixImagePaths(rewriter, contentFromMd);
+
+                contentFromMd.$(".josman-to-strip")
+                             .remove();
+                contentHtml = contentFromMd.html();
+            } else {
+                contentHtml = contentFromMdHtml;
+            }
+
+            String sidebarHtml = null;
+            if (!root) {
+                sidebarHtml = sidebar(relpaths).render(relPath, LinkRewriter.headingLinks(markdownNode));
+            }
+            rendered = new RenderCache.Entry(contentHtml, sidebarHtml);
+
+            if (renderKey != null && renderCache != null && cacheable) {
+                renderCache.put(renderKey, rendered);
+            }
+        }
+
+        // depends on the tag set, so it's never cached
+        EnumMap<SkeletonTemplate.Slot, String> slots = new EnumMap<>(SkeletonTemplate.Slot.class);
+        slots.put(SkeletonTemplate.Slot.CONTENT, rendered.content);
+        if (rendered.sidebar != null) {
+            slots.put(SkeletonTemplate.Slot.SIDEBAR, rendered.sidebar);
+        }
+        slots.put(SkeletonTemplate.Slot.VERSION_TABS, versionTabs(prependedPath, version, root));
+
+        if (!targetFile.getParentFile()
+                       .exists()) {
+            // another page thread might have just created it 
+            if (!targetFile.getParentFile()
+                           .mkdirs() 
+                    && !targetFile.getParentFile()
+                                  .isDirectory()) {
+                throw new JosmanIoException(
+                        "Couldn't create target directories to host processed md file " + targetFile.getAbsolutePath());
+            }
+        }
+
+        // page is streamed to disk, never held whole in memory
+        try (Writer out = newPageWriter(targetFile)) {
+            skeletonTemplate(root).writeTo(out, slots);
+        } catch (Exception ex) {
+            throw new JosmanIoException("Couldn't write into " + targetFile.getAbsolutePath() + "!", ex);
+        }
+
+        if (manifest != null) {
+            // pages with $evalNow never match
+            manifest.record(targetFile, fingerprint == null ? "" : fingerprint);
+        }
+
+    }
+
+    /**
+     * Returns a buffered UTF-8 writer truncating {@code file}. Unencodable
+     * chars are replaced, as {@link String#getBytes(String)} does.
+     * 
+     * @since 0.8.0
+     */
+    private static Writer newPageWriter(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        CharsetEncoder encoder = Charset.forName("UTF-8")
+                                        .newEncoder()
+                                        .onMalformedInput(CodingErrorAction.REPLACE)
+                                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        // closing the writer closes the channel
+        return Channels.newWriter(channel, encoder, PAGE_WRITE_BUFFER);
+    }
+
+    /**
+     * Returns the compiled skeleton for root pages (i.e. index.html) or for
+     * pages inside version directories. Skeletons are compiled only once.
+     * 
+     * @since 0.8.0
+     */
+    private SkeletonTemplate skeletonTemplate(boolean root) {
+        synchronized (this) {
+            if (root) {
+                if (rootSkeleton == null) {
+                    rootSkeleton = compileSkeleton(true);
+                }
+                return rootSkeleton;
+            } else {
+                if (nestedSkeleton == null) {
+                    nestedSkeleton = compileSkeleton(false);
+                }
+                return nestedSkeleton;
+            }
+        }
+    }
+
+    /**
+     * Fills in the skeleton all the parts which are the same for every page
+     * and puts slot markers in place of the rest.
+     * 
+     * @param root
+     *            if true skeleton is for root pages, otherwise for pages
+     *            inside version directories.
+     * 
+     * @throws JosmanIoException
+     * 
+     * @since 0.8.0
+     */
+    private SkeletonTemplate compileSkeleton(boolean root) {
 
         String skeletonString;
         try {
             StringWriter writer = new StringWriter();
             InputStream stream = Josmans.findResourceStream("/skeleton.html");
             IOUtils.copy(stream, writer, "UTF-8");
+            stream.close();
             skeletonString = writer.toString();
         } catch (Exception ex) {
             throw new JosmanIoException("Couldn't read skeleton file!", ex);
         }
 
+        String prependedPath;
         String skeletonStringFixedPaths;
-        if (Josmans.isRootpath(relPath)) {
+        if (root) {
+            prependedPath = "";
             skeletonStringFixedPaths = skeletonString;
         } else {
+            prependedPath = "../";
             // fix paths
-            skeletonStringFixedPaths = skeletonString.replaceAll("src=\"js/", "src=\"../js/")
-                                                     .replaceAll("src=\"img/", "src=\"../img/")
-                                                     .replaceAll("href=\"css/", "href=\"../css/");
+            skeletonStringFixedPaths = skeletonString.replace("src=\"js/", "src=\"../js/")
+                                                     .replace("src=\"img/", "src=\"../img/")
+                                                     .replace("href=\"css/", "href=\"../css/");
 
         }
 
         Jerry skeleton = Jerry.jerry(skeletonStringFixedPaths);
         skeleton.$("title")
                 .text(mvnPrj.getName());
-        
-        com.vladsch.flexmark.ast.Node markdownNode = markdownParser.parse(filteredSourceMdString);
-
-        String contentFromMdHtml = markdownRenderer.render(markdownNode);
-        Jerry contentFromMd = Jerry.jerry(contentFromMdHtml);
-
-        fixLinks(version, prependedPath, contentFromMd);
-
-        fixImagePaths(version, prependedPath, contentFromMd);
 
         if (JosmanMode.release.equals(cfg.getMode())){
             skeleton.$("#josman-dev-warning")
@@ -589,7 +1009,7 @@ public class JosmanProject {
         }        
         
         skeleton.$("#josman-internal-content")
-                .html(contentFromMd.html());
+                .text(SkeletonTemplate.marker(SkeletonTemplate.Slot.CONTENT));
 
         skeleton.$("#josman-repo-link")
                 .html(mvnPrj.getName())
@@ -632,7 +1052,7 @@ public class JosmanProject {
 
         skeleton.$("#josman-home")
                 .attr("href", prependedPath + "index.html");
-        if (Josmans.isRootpath(relPath)) {
+        if (root) {
             skeleton.$("#josman-home")
                     .addClass("josman-tag-selected");
         }
@@ -641,98 +1061,73 @@ public class JosmanProject {
         skeleton.$(".josman-version-tab-header")
                 .remove();
 
-        List<RepositoryTag> tags = repoTagsDescendant();
+        skeleton.$("#josman-usage")
+                .append(SkeletonTemplate.marker(SkeletonTemplate.Slot.VERSION_TABS));
 
-        if (Josmans.isRootpath(relPath)) {
+        if (root) {
             skeleton.$("#josman-internal-sidebar")
                     .text("");
             skeleton.$("#josman-sidebar-managed-block")
                     .css("display", "none");
         } else {
-            Jerry sidebar = makeSidebar(contentFromMdHtml, relPath, relpaths);
             skeleton.$("#josman-internal-sidebar")
-                    .html(sidebar.htmlAll(true));
+                    .text(SkeletonTemplate.marker(SkeletonTemplate.Slot.SIDEBAR));
         }
 
         skeleton.$(".josman-to-strip")
                 .remove();
 
-        
-        SemVersion snapVer = snapshotVersion();
-        
-                  
-                                                                      
-        if (cfg.isSnapshot()) {
-            addVersionHeaderTag(skeleton, prependedPath, snapVer,
-                                !Josmans.isRootpath(relPath)
-                                && version.equals(snapVer));
-        }            
-         
-        if (cfg.isReleases()) {
-            
-            for (RepositoryTag tag : remainingTags()) {
-                SemVersion ver = Josmans.version(mvnPrj.getArtifactId(), tag.getName());
-                addVersionHeaderTag(
-                        skeleton,
-                        prependedPath,
-                        ver,
-                        !Josmans.isRootpath(relPath) 
-                        && ver.equals(version));
-            }
-
-            Pattern p = Pattern.compile("todo", Pattern.CASE_INSENSITIVE);
-            Matcher matcher = p.matcher(skeleton.html());
-            if (matcher.find()) {
-                // throw new JosmanIoException("Found '" + matcher.group() + "'
-                // string in stream for " + targetFile.getAbsolutePath() + " (at
-                // position " + matcher.start() + ")");
-                LOG.warning("Found '" + matcher.group() + "' string in stream for " + targetFile.getAbsolutePath());
-            }
-        }
+        return SkeletonTemplate.of(skeleton.html());
+    }
+    
+    /**
+     * Returns the link rewriter for pages of {@code version} having given
+     * {@code prependedPath}
+     * 
+     * @since 0.8.0
+     */
+    private LinkRewriter linkRewriter(SemVersion version, String prependedPath) {
+        return new LinkRewriter(version, prependedPath, Josmans.organization(mvnPrj.getUrl()), mvnPrj.getArtifactId(),
+                cfg.isFailOnError());
+    }
 
-        if (!targetFile.getParentFile()
-                       .exists()) {
-            if (!targetFile.getParentFile()
-                           .mkdirs()) {
-                throw new JosmanIoException(
-                        "Couldn't create target directories to host processed md file " + targetFile.getAbsolutePath());
+    /**
+     * Returns a renderer which rewrites links and images while rendering.
+     * Renderers are thread safe and cached per version and prepended path.
+     * 
+     * @since 0.8.0
+     */
+    private HtmlRenderer markdownRenderer(SemVersion version, String prependedPath) {
+        String key = version + "|" + prependedPath;
+        HtmlRenderer ret = markdownRenderers.get(key);
+        if (ret == null) {
+            ret = HtmlRenderer.builder(MARKDOWN_OPTIONS)
+                              .attributeProviderFactory(linkRewriter(version, prependedPath).factory())
+                              .build();
+            HtmlRenderer prev = markdownRenderers.putIfAbsent(key, ret);
+            if (prev != null) {
+                ret = prev;
             }
         }
-
-        try {
-
-            FileUtils.write(targetFile, skeleton.html(), "UTF-8");
-        } catch (Exception ex) {
-            throw new JosmanIoException("Couldn't write into " + targetFile.getAbsolutePath() + "!", ex);
-        }
-
+        return ret;
     }
-    
+
     /**
+     * Rewrites image paths in html written verbatim in md pages, which is not
+     * seen by the renderer.
+     * 
      * @since 0.8.0
      */
-    private void fixImagePaths(final SemVersion version, final  String prependedPath, Jerry contentFromMd) {
+    private void fixImagePaths(final LinkRewriter rewriter, Jerry contentFromMd) {
         
         contentFromMd.$("img")
         .each(new JerryFunction() {
 
             @Override
             public boolean onNode(Jerry arg0, int arg1) {
-                String src = null;
-                try {
-                    src = arg0.attr("src");
-                    if (src.startsWith(DOCS_FOLDER + "/")) {
-                        arg0.attr("src", Josmans.majorMinor(version) + src.substring(DOCS_FOLDER.length()));
-                        return true;
-                    }
-                } catch (Exception ex){
-                    String msg = "Invalid image with src:" + src +"\n prependedPath="+prependedPath + "\nversion=" + version;
-                    if (cfg.isFailOnError()){
-                        throw new JosmanException(msg, ex);    
-                    } else {
-                        LOG.warning(msg + "\n Reason:" + ex.getMessage());                        
-                        return true;
-                    }
+                String src = arg0.attr("src");
+                if (src != null) {
+                    arg0.attr("src", rewriter.fixImageSrc(src));
                 }
                 return true;
             }
@@ -741,172 +1136,142 @@ public class JosmanProject {
     }
 
     /**
+     * Rewrites links in html written verbatim in md pages, which is not seen
+     * by the renderer.
+     * 
      * @since 0.8.0
      */
-    private void fixLinks(final SemVersion version, final String prependedPath, Jerry contentFromMd) {
+    private void fixLinks(final LinkRewriter rewriter, Jerry contentFromMd) {
         contentFromMd.$("a")
         .each(new JerryFunction() {
 
             @Override
             public boolean onNode(Jerry arg0, int arg1) {                               
-                
                 String href = arg0.attr("href");
-                                               
-                URI uri;
-                
-                try {
-                    String slashPath = href.replace("\\", "/");
-                    uri = new URI(slashPath);
-                } catch (Exception ex) {
-                    
-                    String msg = "Invalid path :" + href +"\n prependedPath="+prependedPath + "\nversion=" + version;
-                    if (cfg.isFailOnError()){
-                        throw new JosmanException(msg, ex);    
-                    } else {
-                        LOG.warning(msg + "\n Reason:" + ex.getMessage());                        
-                        return true;
-                    }
-                    
+                if (href != null) {
+                    arg0.attr("href", rewriter.fixLink(href));
                 }
-
-                LOG.fine("uri = " + uri);
-                LOG.fine("uri.getScheme = " + uri.getScheme());
-                LOG.fine("uri.getAuthority = " + uri.getAuthority());
-                LOG.fine("uri.getQuery = " + uri.getQuery());
-                LOG.fine("uri.getHost = " + uri.getHost());
-                LOG.fine("uri.getFragment = " + uri.getFragment());
-                
-                
-                if (href.startsWith(prependedPath + "src")) {
-                    arg0.attr("href",
-                            href.replace(prependedPath + "src",
-                                    Josmans.repoRelease(Josmans.organization(mvnPrj.getUrl()),
-                                            mvnPrj.getArtifactId(), version) + "/src"));
-                    return true;
-                }
-                
-                if (TodUtils.removeTrailingSlash(href)
-                            .equals(DOCS_FOLDER)) {                    
-                    arg0.attr("href", Josmans.majorMinor(version) + "/index.html");
-                    return true;
-                }
-    
-                if (href.startsWith(DOCS_FOLDER + "/")) {
-                    href = Josmans.majorMinor(version) + href.substring(DOCS_FOLDER.length());
-                    arg0.attr("href", href);
-                    // note we don't return now, we might have an .md to process
-                }                
-                
-                if (uri.getPath() != null && TodUtils.removeTrailingSlash(uri.getPath()).endsWith(".md")) {
-                    arg0.attr("href", Josmans.htmlizePath(href));
-                    return true;
-                }
-
-                if (href.startsWith(prependedPath + "../../wiki")) {
-                    arg0.attr("href", href.replace(prependedPath + "../../wiki", Josmans.repoWiki(
-                            Josmans.organization(mvnPrj.getUrl()), mvnPrj.getArtifactId())));
-                    return true;
-                }
-
-                if (href.startsWith(prependedPath + "../../issues")) {
-                    arg0.attr("href", href.replace(prependedPath + "../../issues", Josmans.repoIssues(
-                            Josmans.organization(mvnPrj.getUrl()), mvnPrj.getArtifactId())));
-                    return true;
-                }
-
-                if (href.startsWith(prependedPath + "../../milestones")) {
-                    arg0.attr("href",
-                            href.replace(prependedPath + "../../milestones", Josmans.repoMilestones(
-                                    Josmans.organization(mvnPrj.getUrl()), mvnPrj.getArtifactId())));
-                    return true;
-                }
-
-            
-
                 return true;
             }
         });
     }
 
     /**
-     * Release tags - may not have the first one if in snapshot mode and 
-     * snapshot version overrides first tag of released ones. 
+     * Returns the expander for variables of pages at given version
      * 
      * @since 0.8.0
      */
-    private ImmutableList<RepositoryTag> remainingTags() {
-
-        ImmutableList<RepositoryTag> ret;
-        ImmutableList<RepositoryTag> tags = repoTagsDescendant();               
-        
-        if (cfg.isSnapshot() 
-            && snapshotReplacesFirstTag()){
-            
-            if (tags.size() > 1){
-                ret = ImmutableList.copyOf(tags.subList(1, tags.size()));
-            } else {
-                ret=  ImmutableList.of();
+    private VarExpander varExpander(SemVersion version) {
+        VarExpander ret = varExpanders.get(version.toString());
+        if (ret == null) {
+            String repoRelease = Josmans.repoRelease(Josmans.organization(mvnPrj.getUrl()),
+                    mvnPrj.getArtifactId(), version);
+
+            Map<String, String> vars = new HashMap<>();
+            vars.put("josman.majorMinorVersion", Josmans.majorMinor(version));
+            vars.put("josman.repoRelease", repoRelease);
+
+            // '#' for legacy compat
+            Map<String, String> legacyVars = new HashMap<>();
+            legacyVars.put("version", version.toString());
+            legacyVars.put("majorMinorVersion", Josmans.majorMinor(version));
+            legacyVars.put("repoRelease", repoRelease);
+
+            VarExpander newExpander = projectVars.with(vars, legacyVars);
+            ret = varExpanders.putIfAbsent(version.toString(), newExpander);
+            if (ret == null) {
+                ret = newExpander;
             }
-        } else {
-            ret =  tags;
         }
-                
         return ret;
     }
 
-    /**
-     * @since 0.8.0
-     */
-    private ImmutableList<RepositoryTag> repoTagsDescendant() {
-        ArrayList<RepositoryTag> ret = new ArrayList<RepositoryTag>(
-                Josmans.versionTagsToProcess(mvnPrj.getArtifactId(), repoTags, cfg.getIgnoredVersions())
-                       .values());
-        Collections.reverse(ret);
-        return ImmutableList.copyOf(ret);
+    /**
+     * Builds the version independent variables, taken from the Maven project
+     * 
+     * @since 0.8.0
+     */
+    private static VarExpander makeProjectVars(MavenProject mvnPrj) {
+
+        Scm scm;
+        if (mvnPrj.getScm() == null){
+            scm = new Scm();
+            scm.setConnection("");
+            scm.setDeveloperConnection("");
+            scm.setTag("");
+            scm.setUrl("");
+        } else {
+            scm = mvnPrj.getScm();
+        }
+
+        Map<String, String> vars = new HashMap<>();
+        vars.put("project.artifactId", mvnPrj.getArtifactId());
+        vars.put("project.groupId", mvnPrj.getGroupId());
+        vars.put("project.description", mvnPrj.getDescription());
+        vars.put("project.name", mvnPrj.getName());
+        vars.put("project.version", mvnPrj.getVersion());
+        vars.put("project.url", mvnPrj.getUrl());
+        vars.put("project.basedir", mvnPrj.getBasedir() == null ? "" : mvnPrj.getBasedir().getAbsolutePath());
+        vars.put("project.scm.connection", scm.getConnection());
+        vars.put("project.scm.developerConnection", scm.getDeveloperConnection());
+        vars.put("project.scm.tag", scm.getTag());
+        vars.put("project.scm.url", scm.getUrl());
+        vars.put("pom.artifactId", mvnPrj.getArtifactId());
+        vars.put("pom.groupId", mvnPrj.getGroupId());
+        vars.put("pom.description", mvnPrj.getDescription());
+        vars.put("pom.name", mvnPrj.getName());
+        vars.put("pom.version", mvnPrj.getVersion());
+
+        // maven properties take precedence over project fields
+        Properties props = mvnPrj.getProperties();
+        if (props != null){
+            for (String key : props.stringPropertyNames()){
+                vars.put(key, props.getProperty(key));
+            }
+        }
+
+        return new VarExpander(vars, Collections.<String, String> emptyMap());
     }
 
     /**
-     * Replaces key / value properties in {@code text}
+     * Returns the links to versions to put in the page header.
      * 
+     * @param version
+     *            the version of the page
+     * @param root
+     *            true if page is a root page, i.e. index.html
+     *            
      * @since 0.8.0
      */
-    // todo not efficient
-    private String replaceProperties(String text, String... props) {
-        
-        String ret = text;       
-        
-        checkArgument(props.length % 2 == 0, 
-                "Props must be an even sequence of key/value pairs!"
-                + " Found instead " + props.length + " elements: " + props);
-        
-        for (int i = 0; i < props.length; i += 2){
-            String key = props[i];
-            String prop = props[i+1];
-            ret = replaceProperty(ret, key, prop);
+    private String versionTabs(String prependedPath, SemVersion version, boolean root) {
+        StringBuilder sb = new StringBuilder();
+
+        if (cfg.isSnapshot()) {
+            SemVersion snapVer = snapshotVersion();
+            appendVersionTab(sb, prependedPath, snapVer, !root && version.equals(snapVer));
         }
-        return ret;
-    }
 
-    /**
-     * @since 0.8.0
-     */
-    private String replaceProperty(String text, String key, String prop) {        
-        return text
-                .replaceAll("\\$\\{" + key + "}", prop)
-                .replaceAll("\\$'\\{" + key + "}", "\\${" + key + "}");                
-        
-    }    
+        if (cfg.isReleases()) {
+            for (VersionIndex.Release release : versionIndex.remaining()) {
+                appendVersionTab(sb, prependedPath, release.version, !root && release.version.equals(version));
+            }
+        }
+        return sb.toString();
+    }
 
-    private static void addVersionHeaderTag(Jerry skeleton, String prependedPath, SemVersion version,
+    private static void appendVersionTab(StringBuilder sb, String prependedPath, SemVersion version,
             boolean selected) {
         String verShortName = Josmans.majorMinor(version);
-        String classSelected = selected ? "josman-tag-selected" : "";
-        skeleton.$("#josman-usage")
-                .append(
-                        "<a class='josman-version-tab-header " + classSelected + "' href='"
-                                + prependedPath
-                                + verShortName
-                                + "/index.html'>" + verShortName + "</a>");
+        sb.append("<a class=\"josman-version-tab-header");
+        if (selected) {
+            sb.append(" josman-tag-selected");
+        }
+        sb.append("\" href=\"")
+          .append(prependedPath)
+          .append(verShortName)
+          .append("/index.html\">")
+          .append(verShortName)
+          .append("</a>");
     }
 
     private void buildIndex(SemVersion latestVersion, Map<String, String> evals) {
@@ -976,7 +1341,9 @@ public class JosmanProject {
         
         File targetVersionDir = targetVersionDir(version);
 
-        deleteOutputVersionDir(targetVersionDir, version.getMajor(), version.getMinor());
+        if (manifest == null) {
+            deleteOutputVersionDir(targetVersionDir, version.getMajor(), version.getMinor());
+        }
                
         
         List<String> mdRelPaths = new ArrayList<String>();               
@@ -1005,26 +1372,52 @@ public class JosmanProject {
         if (cfg.isJavadoc()){
             copyJavadoc(version);    
         }
+
+        if (manifest != null) {
+            manifest.deleteStale(targetVersionDir);
+        }
     }
 
     /**
-     * @param path
-     *            the exact path. Careful: must be *exact* dir name (i.e.
-     *            'docs' will work for docs/a.txt but 'doc' won't work)
-     * @throws JosmanIoException
-     *             on error
+     * Returns a new batch for rendering pages in the page pool
+     * 
+     * @since 0.8.0
      */
-    private TreeWalk makeGitDocsWalk(RevTree tree, String path) {
-        checkNotNull(tree);
-        try {
-            TreeWalk treeWalk = new TreeWalk(repo);
-            treeWalk.addTree(tree);
-            treeWalk.setRecursive(true);
+    PageBatch newPageBatch() {
+        return new PageBatch(pagePool);
+    }
 
-            treeWalk.setFilter(PathFilter.create(path));
-            return treeWalk;
-        } catch (Exception ex) {
-            throw new JosmanIoException(ex);
+    /**
+     * Creates the pool for rendering pages, if more than one thread is
+     * configured.
+     * 
+     * @since 0.8.0
+     */
+    private void startPagePool() {
+        if (cfg.getThreads() > 1) {
+            LOG.log(Level.FINE, "Rendering pages with {0} threads", cfg.getThreads());
+            pagePool = Executors.newFixedThreadPool(cfg.getThreads(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "josman-page-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        } else {
+            pagePool = null;
+        }
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    private void stopPagePool() {
+        if (pagePool != null) {
+            pagePool.shutdownNow();
+            pagePool = null;
         }
     }
 
@@ -1034,47 +1427,40 @@ public class JosmanProject {
      * 
      * @throws JosmanIoException
      */
-    private void processGitDocsDir(SemVersion version, Map<String, String> evals) {
+    private void processGitDocsDir(final SemVersion version, final Map<String, String> evals) {
         checkNotNull(version);
         checkNotNull(evals);
 
-        checkNotNull(repo);
+        checkNotNull(gitDocs);
 
         String releaseTag = Josmans.releaseTag(mvnPrj.getArtifactId(), version);
 
         try {
 
-            ObjectId lastCommitId = repo.resolve(releaseTag);
-
-            // a RevWalk allows to walk over commits based on some filtering
-            // that is defined
-            DepthWalk.RevWalk revWalk = new DepthWalk.RevWalk(repo, DEPTH);
-            RevCommit commit = revWalk.parseCommit(lastCommitId);
-            RevTree tree = commit.getTree();
-
-            TreeWalk relPathsWalk = makeGitDocsWalk(tree, DOCS_FOLDER);
-
-            List<String> relpaths = new ArrayList<String>();
-            while (relPathsWalk.next()) {
-                String pathString = relPathsWalk.getPathString();
-
-                if (pathString.endsWith(".md")) {
-                    FileMode fileMode = relPathsWalk.getFileMode(0);
-                    LOG.log(Level.FINE, "Collecting {0}:  mode: {1}, type: {2}", new Object[] { pathString,
-                            Josmans.gitFileModeToString(fileMode), fileMode.getObjectType() });
-                    relpaths.add(pathString);
+            // single walk, README is only used if there are no docs
+            List<GitDocsReader.Entry> docsEntries = new ArrayList<>();
+            List<GitDocsReader.Entry> readmeEntries = new ArrayList<>();
+            final List<String> relpaths = new ArrayList<String>();
+            for (GitDocsReader.Entry entry : gitDocs.list(releaseTag, DOCS_FOLDER, README_MD)) {
+                if (README_MD.equals(entry.path)) {
+                    readmeEntries.add(entry);
+                    continue;
+                }
+                docsEntries.add(entry);
+                if (entry.path.endsWith(".md")) {
+                    LOG.log(Level.FINE, "Collecting {0}:  mode: {1}, type: {2}", new Object[] { entry.path,
+                            Josmans.gitFileModeToString(entry.mode), entry.mode.getObjectType() });
+                    relpaths.add(entry.path);
                 }
             }
 
-            String path;
-            
-
+            List<GitDocsReader.Entry> entries;
             if (relpaths.isEmpty()) {
                 LOG.log(Level.WARNING, "COULDN''T FIND ANY FILE IN " + DOCS_FOLDER
                         + " for version {0}! TRYING TO USE README.md instead", version);
-                path = README_MD;
+                entries = readmeEntries;
             } else {
-                path = DOCS_FOLDER;
+                entries = docsEntries;
             }
 
             for (String requiredRelpath : Josmans.REQUIRED_DOCS){
@@ -1086,29 +1472,56 @@ public class JosmanProject {
             }
             
             
-            TreeWalk treeWalk = makeGitDocsWalk(tree, path);
-            while (treeWalk.next()) {
-
-                String pathString = treeWalk.getPathString();
-
-                FileMode fileMode = treeWalk.getFileMode(0);
-                LOG.log(Level.FINE, "{0}:  mode: {1}, type: {2}",
-                        new Object[] { pathString, Josmans.gitFileModeToString(fileMode), fileMode.getObjectType() });
-
-                ObjectId objectId = treeWalk.getObjectId(0);
-                ObjectLoader loader = repo.open(objectId);
-
-                InputStream stream = loader.openStream();
+            final String renderKeyPrefix = renderCache == null ? null : renderKeyPrefix(version, evals);
+
+            final PageBatch batch = newPageBatch();
+            gitDocs.load(entries, new GitDocsReader.BlobHandler() {
+                @Override
+                public void handle(GitDocsReader.Entry entry, ObjectLoader loader) throws IOException {
+                    LOG.log(Level.FINE, "{0}:  mode: {1}, type: {2}", new Object[] { entry.path,
+                            Josmans.gitFileModeToString(entry.mode), entry.mode.getObjectType() });
+
+                    final String relPath;
+                    final List<String> pageRelpaths;
+                    if (relpaths.isEmpty()) {
+                        relPath = DOCS_FOLDER + "/" + entry.path;
+                        pageRelpaths = ImmutableList.of(DOCS_FOLDER + "/" + README_MD);
+                    } else {
+                        relPath = entry.path;
+                        pageRelpaths = relpaths;
+                    }
+                    // blobs of a tag never change, so they identify the source
+                    final String renderKey = renderKeyPrefix == null ? null
+                            : new Fingerprint().put(renderKeyPrefix)
+                                               .put(entry.name())
+                                               .put(relPath)
+                                               .put(pageRelpaths)
+                                               .hex();
+
+                    if (loader.isLarge()) {
+                        // too big to be held in memory, streamed from git right away
+                        try (InputStream stream = loader.openStream()) {
+                            copyStream(stream, relPath, version, pageRelpaths, evals, renderKey);
+                        }
+                        return;
+                    }
 
-                if (relpaths.isEmpty()) {
-                    copyStream(stream,
-                            DOCS_FOLDER + "/" + pathString, version,
-                            ImmutableList.of(DOCS_FOLDER + "/" + path),
-                            evals);
-                } else {
-                    copyStream(stream, pathString, version, relpaths, evals);
+                    // only rendering goes to the pool, bytes must not be modified
+                    final byte[] bytes = loader.getCachedBytes();
+                    batch.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            copyStream(new ByteArrayInputStream(bytes), relPath, version, pageRelpaths, evals,
+                                    renderKey);
+                        }
+                    });
                 }
+            });
+            
+            batch.await();
 
+            if (manifest != null) {
+                manifest.deleteStale(targetVersionDir(version));
             }
 
         } catch (Exception ex) {
@@ -1118,7 +1531,35 @@ public class JosmanProject {
     }
 
     /**
-     * Copies target version to 'latest' directory, cleaning it before the copy
+     * Returns the part of render cache keys shared by all pages of a released
+     * version: everything affecting content and sidebar rendering but the page
+     * source and paths.
+     * 
+     * @since 0.8.0
+     */
+    private String renderKeyPrefix(SemVersion version, Map<String, String> evals) {
+        Fingerprint fingerprint = new Fingerprint();
+        fingerprint.put(String.valueOf(RENDER_CACHE_FORMAT))
+                   .put(JosmanProject.class.getPackage()
+                                           .getImplementationVersion())
+                   .put(mvnPrj.getGroupId())
+                   .put(mvnPrj.getArtifactId())
+                   .put(mvnPrj.getUrl())
+                   .put(version.toString())
+                   .put(cfg.isFailOnError());
+        if (evals instanceof EvalIndex) {
+            // decoding the whole index would defeat its lazy lookup
+            fingerprint.put(((EvalIndex) evals).csvFingerprint());
+        } else {
+            fingerprint.put(evals);
+        }
+        varExpander(version).addTo(fingerprint);
+        return fingerprint.hex();
+    }
+
+    /**
+     * Makes 'latest' directory out of target version, cleaning it before. How
+     * depends on {@link JosmanConfig#getLatestMode()}.
      *
      * @param version
      * 
@@ -1133,15 +1574,22 @@ public class JosmanProject {
                                 .endsWith("latest")) {
             throw new JosmanIoException("Trying to delete a latest docs dir which doesn't end with 'latest'!");
         }
+
+        if (manifest != null 
+                && targetLatestDocsDir.exists() 
+                && !manifest.isChanged(targetVersionDir(version))) {
+            LOG.info("Docs of version " + version + " didn't change, keeping latest docs directory.");
+            return;
+        }
         try {
             LOG.log(Level.INFO, "Deleting directory {0}  ...", targetLatestDocsDir.getAbsolutePath());
             FileUtils.deleteDirectory(targetLatestDocsDir);
             LOG.log(Level.INFO, "Done deleting directory.");
-            LOG.log(Level.INFO, "Copying files from directory {0} to {1}  ...",
-                    new Object[] { targetVersionDir(version).getAbsolutePath(),
+            LOG.log(Level.INFO, "Making {0} of directory {1} into {2}  ...",
+                    new Object[] { cfg.getLatestMode(), targetVersionDir(version).getAbsolutePath(),
                             targetLatestDocsDir.getAbsolutePath() });
-            FileUtils.copyDirectory(targetVersionDir(version), targetLatestDocsDir);
-            LOG.log(Level.INFO, "Done copying directory.");
+            LatestDocs.create(cfg.getLatestMode(), targetVersionDir(version), targetLatestDocsDir);
+            LOG.log(Level.INFO, "Done creating latest docs directory.");
         } catch (Throwable tr) {
             throw new JosmanIoException("Error while creating latest docs directory ", tr);
         }
@@ -1166,38 +1614,12 @@ public class JosmanProject {
         return SemVersion.of(mvnPrj.getVersion()).withPreReleaseVersion("");
     }
     
-    /**
-     * @since 0.8.0
-     */
-    private boolean snapshotReplacesFirstTag(){
-                
-        if (!cfg.isSnapshot()){        
-            return false;
-        }
-        
-        SemVersion snapVer = snapshotVersion();
-        List<RepositoryTag> tags = repoTagsDescendant();
-        if (tags.size() > 0) {
-            SemVersion ver = Josmans.version(mvnPrj.getArtifactId(), tags.get(0)
-                    .getName());
-            
-            return snapVer.getMajor() == ver.getMajor()
-                    && snapVer.getMinor() == ver.getMinor()
-                    && snapVer.getPatch() >= ver.getPatch();
-        } else {
-            return false;
-        }
-    }
-            
-    
     /**
      * @throws JosmanNotFoundException
      * @throws JosmanException
      */
     public void generateSite() {
 
-        MavenXpp3Reader reader = new MavenXpp3Reader();
-
         try {
             File repoFile = new File(cfg.getSourceRepoDir(), ".git");
 
@@ -1209,95 +1631,178 @@ public class JosmanProject {
             throw new JosmanException("Error while reading local git repo!", ex);
         }
 
-        LOG.log(Level.INFO, "Cleaning target: {0}  ....", cfg.getPagesDir().getAbsolutePath());
         if (!cfg.getPagesDir().getAbsolutePath()
                      .endsWith("site")) {
             throw new JosmanException("target directory does not end with 'site': " + cfg.getPagesDir().getAbsolutePath());
         }
-        try {
-            FileUtils.deleteDirectory(cfg.getPagesDir());
-            LOG.info("Done deleting directory");
-        } catch (IOException ex) {
-            throw new JosmanException("Error while deleting directory " + cfg.getPagesDir().getAbsolutePath(), ex);
-        }
-
-        generateReleases();
-        
-        generateSnapshot();
-                      
 
-        Josmans.copyDirFromResource(Josmans.class, "/website-template", cfg.getPagesDir());       
+        TaskGraph graph = new TaskGraph(cfg.getThreads());
 
-        File targetImgDir = new File(cfg.getPagesDir(), "img");
+        addReleaseTasks(graph);
 
-        try {
-            File programLogo = programLogo(sourceDocsDir(), mvnPrj.getArtifactId());
+        addSnapshotTasks(graph);
 
-            if (programLogo.exists()) {
-                LOG.log(Level.INFO, "Found program logo: {0}", programLogo.getAbsolutePath());
-                LOG.log(Level.INFO, "      copying it into dir {0}", targetImgDir.getAbsolutePath());
+        addStaticTasks(graph);
 
-                FileUtils.copyFile(programLogo, new File(targetImgDir, programLogoName(mvnPrj.getArtifactId())));
-            }
-        } catch (Exception ex){
-            if (cfg.isFailOnError()){
-                throw new JosmanException("Error while copying files!", ex);
-            } else {
-                LOG.severe("COULDN'T COPY THE PROGRAM LOGO!");
-                LOG.log(Level.FINE,"Exception was: ", ex);                
-            }                
+        // needs tags, so must come after adding release tasks
+        if (cfg.isIncremental()) {
+            manifest = BuildManifest.load(cfg.getPagesDir(), siteFingerprint());
+        } else {
+            manifest = null;
         }
 
-        
-        File orgLogo = orgLogo(sourceDocsDir(), mvnPrj.getArtifactId());
-
-        if (orgLogo.exists()) {
-            LOG.log(Level.INFO, "Found org logo: {0}", orgLogo.getAbsolutePath());
-            LOG.log(Level.INFO, "      copying it into dir {0}", targetImgDir.getAbsolutePath());
+        if (manifest == null || !manifest.isReusable()) {
+            LOG.log(Level.INFO, "Cleaning target: {0}  ....", cfg.getPagesDir().getAbsolutePath());
             try {
-                FileUtils.copyFile(orgLogo, new File(targetImgDir, Josmans.ORG_LOGO_NAME));
-            } catch (Exception ex){
-                if (cfg.isFailOnError()){
-                    throw new JosmanException("Error while copying organization logo!", ex);
-                } else {
-                    LOG.severe("COULDN'T COPY THE organization logo!");
-                    LOG.log(Level.FINE,"Exception was: ", ex);                
-                }                
+                FileUtils.deleteDirectory(cfg.getPagesDir());
+                LOG.info("Done deleting directory");
+            } catch (IOException ex) {
+                throw new JosmanException("Error while deleting directory " + cfg.getPagesDir().getAbsolutePath(), ex);
             }
+        } else {
+            LOG.log(Level.INFO, "Incremental build, keeping target: {0}", cfg.getPagesDir().getAbsolutePath());
+            manifest.invalidate();
         }
-        
+
+        gitDocs = new GitDocsReader(repo);
+        outputStore = new OutputStore(cfg.isDedupe());
+        startPagePool();
         try {
-            FileUtils.copyDirectory(new File(sourceDocsDir(), "img/"), targetImgDir);
-        } catch (Exception ex){
-            if (cfg.isFailOnError()){
-                throw new JosmanException("Error while copying images!", ex);
-            } else {                
-                LOG.severe("COULDN'T COPY docs/img DIRECTORY!");
-                LOG.log(Level.FINE,"Exception was: ", ex);
+            graph.run();
+            if (manifest != null) {
+                manifest.save();
             }
-        }
-        
-        try { // copy all other images
-            FileUtils.copyFile(new File(cfg.getSourceRepoDir(), "LICENSE.txt"), new File(cfg.getPagesDir(), "LICENSE.txt"));
-
-        } catch (Exception ex) {
-            if (cfg.isFailOnError()){
-                throw new JosmanException("Error while copying files!", ex);
-            } else {
-                LOG.severe("COULDN'T COPY THE LICENCE.txt FILE!");
-                LOG.log(Level.FINE,"Exception was: ", ex);                
+            if (outputStore.getLinked() > 0) {
+                LOG.log(Level.INFO, "Linked {0} duplicate files, saving {1}",
+                        new Object[] { outputStore.getLinked(),
+                                FileUtils.byteCountToDisplaySize(outputStore.getSavedBytes()) });
+            }
+        } finally {
+            stopPagePool();
+            gitDocs.close();
+            gitDocs = null;
+            if (javadocJars != null) {
+                javadocJars.close();
+                javadocJars = null;
             }
+            manifest = null;
+            outputStore = new OutputStore(false);
+            exprEvaluator.close();
         }
 
         LOG.log(Level.INFO, "\n\nYou can now browse the website at file://{0}/index.html\n\n", cfg.getPagesDir().getAbsolutePath());
     }
 
     /**
+     * Adds tasks for copying the website template, logos, images and license.
+     * 
+     * @since 0.8.0
+     */
+    private void addStaticTasks(TaskGraph graph) {
+
+        final File targetImgDir = new File(cfg.getPagesDir(), "img");
+
+        graph.add(TASK_TEMPLATE, new Runnable() {
+            @Override
+            public void run() {
+                Josmans.copyDirFromResource(Josmans.class, "/website-template", cfg.getPagesDir(), outputStore,
+                        manifest);
+            }
+        });
+
+        // logos and docs images may override template images
+        graph.add("program logo", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    File programLogo = programLogo(sourceDocsDir(), mvnPrj.getArtifactId());
+
+                    if (programLogo.exists()) {
+                        LOG.log(Level.INFO, "Found program logo: {0}", programLogo.getAbsolutePath());
+                        LOG.log(Level.INFO, "      copying it into dir {0}", targetImgDir.getAbsolutePath());
+
+                        outputStore.copyFileIfChanged(programLogo,
+                                new File(targetImgDir, programLogoName(mvnPrj.getArtifactId())), manifest);
+                    }
+                } catch (Exception ex){
+                    if (cfg.isFailOnError()){
+                        throw new JosmanException("Error while copying files!", ex);
+                    } else {
+                        LOG.severe("COULDN'T COPY THE PROGRAM LOGO!");
+                        LOG.log(Level.FINE,"Exception was: ", ex);                
+                    }                
+                }
+            }
+        }, TASK_TEMPLATE);
+
+        graph.add("organization logo", new Runnable() {
+            @Override
+            public void run() {
+                File orgLogo = orgLogo(sourceDocsDir(), mvnPrj.getArtifactId());
+
+                if (orgLogo.exists()) {
+                    LOG.log(Level.INFO, "Found org logo: {0}", orgLogo.getAbsolutePath());
+                    LOG.log(Level.INFO, "      copying it into dir {0}", targetImgDir.getAbsolutePath());
+                    try {
+                        outputStore.copyFileIfChanged(orgLogo, new File(targetImgDir, Josmans.ORG_LOGO_NAME),
+                                manifest);
+                    } catch (Exception ex){
+                        if (cfg.isFailOnError()){
+                            throw new JosmanException("Error while copying organization logo!", ex);
+                        } else {
+                            LOG.severe("COULDN'T COPY THE organization logo!");
+                            LOG.log(Level.FINE,"Exception was: ", ex);                
+                        }                
+                    }
+                }
+            }
+        }, TASK_TEMPLATE);
+
+        graph.add("docs images", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    outputStore.copyDirectoryIfChanged(new File(sourceDocsDir(), "img/"), targetImgDir, manifest);
+                } catch (Exception ex){
+                    if (cfg.isFailOnError()){
+                        throw new JosmanException("Error while copying images!", ex);
+                    } else {                
+                        LOG.severe("COULDN'T COPY docs/img DIRECTORY!");
+                        LOG.log(Level.FINE,"Exception was: ", ex);
+                    }
+                }
+            }
+        }, "program logo", "organization logo");
+
+        graph.add("license", new Runnable() {
+            @Override
+            public void run() {
+                try { 
+                    outputStore.copyFileIfChanged(new File(cfg.getSourceRepoDir(), "LICENSE.txt"),
+                            new File(cfg.getPagesDir(), "LICENSE.txt"), manifest);
+                } catch (Exception ex) {
+                    if (cfg.isFailOnError()){
+                        throw new JosmanException("Error while copying files!", ex);
+                    } else {
+                        LOG.severe("COULDN'T COPY THE LICENCE.txt FILE!");
+                        LOG.log(Level.FINE,"Exception was: ", ex);                
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds tasks for generating the snapshot docs, if needed. Must be called
+     * after {@link #addReleaseTasks(TaskGraph)}: a release with same major and
+     * minor of the snapshot writes into the same directory, so its tasks must
+     * be over before snapshot docs are processed, which overwrite them.
+     * 
      * @since 0.8.0
      */
-    private void generateSnapshot() {
+    private void addSnapshotTasks(TaskGraph graph) {
         if (cfg.isSnapshot()) {
-            SemVersion snapVer = snapshotVersion();
+            final SemVersion snapVer = snapshotVersion();
 
             LOG.log(Level.INFO, "Processing local version");
             File evalMap = new File(cfg.getSourceRepoDir(), "target/apidocs/" + RELATIVE_EVAL_FILEPATH);
@@ -1309,6 +1814,7 @@ public class JosmanProject {
                 LOG.info("Couldn't find evals map (to create it just run the tests): " + evalMap.getAbsolutePath());
                 curEvals = Collections.EMPTY_MAP;
             }           
+            final Map<String, String> evals = curEvals;
             
             for (String requiredRelpath : Josmans.REQUIRED_DOCS){
                 
@@ -1318,36 +1824,145 @@ public class JosmanProject {
                            
             }
 
-            
-            try {
-                buildIndex(snapVer, curEvals);
-                processDocsDir(snapVer, curEvals);
-            } catch (ExprNotFoundException ex) {
-                throw new ExprNotFoundException("SNAPSHOT VERSION IS MISSING EVALUATED EXPRESSION: "
-                        + ex.getExpr() + " FOUND IN FILE " + ex.getRelPath()+ "\n!!!!!!   MAYBE YOU FORGOT TO RUN   mvn josman:eval ? \n\n", ex.getExpr(), ex.getRelPath());
+            graph.add(TASK_SNAPSHOT_INDEX, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        buildIndex(snapVer, evals);
+                    } catch (ExprNotFoundException ex) {
+                        throw snapshotExprNotFound(ex);
+                    }
+                }
+            });
+
+            List<String> sameDirTasks = new ArrayList<>();
+            for (VersionIndex.Release release : versionIndex.remaining()) {
+                if (release.version.getMajor() == snapVer.getMajor()
+                        && release.version.getMinor() == snapVer.getMinor()) {
+                    for (String task : new String[] { taskJavadoc(release.version), taskDocs(release.version) }) {
+                        if (graph.contains(task)) {
+                            sameDirTasks.add(task);
+                        }
+                    }
+                }
             }
-            
-            createLatestDocsDirectory(snapVer);
 
+            graph.add(TASK_SNAPSHOT_DOCS, new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        processDocsDir(snapVer, evals);
+                    } catch (ExprNotFoundException ex) {
+                        throw snapshotExprNotFound(ex);
+                    }
+                }
+            }, sameDirTasks.toArray(new String[sameDirTasks.size()]));
+
+            graph.add("latest docs", new Runnable() {
+                @Override
+                public void run() {
+                    createLatestDocsDirectory(snapVer);
+                }
+            }, TASK_SNAPSHOT_DOCS);
+        }
+
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    private static ExprNotFoundException snapshotExprNotFound(ExprNotFoundException ex) {
+        return new ExprNotFoundException("SNAPSHOT VERSION IS MISSING EVALUATED EXPRESSION: "
+                + ex.getExpr() + " FOUND IN FILE " + ex.getRelPath()+ "\n!!!!!!   MAYBE YOU FORGOT TO RUN   mvn josman:eval ? \n\n", ex.getExpr(), ex.getRelPath());
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    private static ExprNotFoundException releaseExprNotFound(SemVersion version, ExprNotFoundException ex) {
+        return new ExprNotFoundException(
+                "RELEASED VERSION " + version + " IS MISSING EVALUATION OF EXPRESSION: " + ex.getExpr()
+                + " FOUND IN FILE: " + ex.getRelPath(),
+                ex.getExpr(),
+                ex.getRelPath(),
+                ex);
+    }
 
+    /**
+     * Loads the eval map from the javadoc of a released version. If javadoc
+     * is not copied, only the eval map is fetched from the remote jar. If not
+     * found returns an empty map.
+     * 
+     * @since 0.8.0
+     */
+    private Map<String, String> loadReleaseEvals(SemVersion version) {
+        File evalMapFile = new File(targetJavadocDir(version), RELATIVE_EVAL_FILEPATH);
+        if (evalMapFile.exists()) {
+            return Josmans.loadEvalMap(evalMapFile);
         }
+        if (!cfg.isJavadoc()) {
+            try {
+                byte[] bytes = javadocResolver.fetchEntry(mvnPrj.getGroupId(), mvnPrj.getArtifactId(), version,
+                        RELATIVE_EVAL_FILEPATH);
+                if (bytes != null) {
+                    return Josmans.loadEvalMap(new StringReader(new String(bytes, "UTF-8")));
+                }
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Couldn''t fetch eval map of version {0} from {1}: {2}",
+                        new Object[] { version, javadocResolver, ex.toString() });
+                LOG.log(Level.FINE, "Error was: ", ex);
+            }
+        }
+        LOG.info("Couldn't find eval map for version " + version 
+                + " (if docs don't contain $eval it's not necessary).");
+        return Collections.EMPTY_MAP;
+    }
 
+    /**
+     * Returns the configured source of release tags. Must be called after
+     * opening the repo.
+     * 
+     * @since 0.8.0
+     */
+    private TagSource tagSource() {
+        String spec = cfg.getTagSource();
+        if (spec.startsWith(JosmanConfig.TAG_SOURCE_FILE_PREFIX)) {
+            return new FileTagSource(new File(spec.substring(JosmanConfig.TAG_SOURCE_FILE_PREFIX.length())));
+        }
+        GitHubTagSource gitHub = new GitHubTagSource(GitHubTagSource.API_URL, Josmans.organization(mvnPrj.getUrl()),
+                mvnPrj.getArtifactId(), cfg.getGithubToken(), cfg.getCacheDir(),
+                TimeUnit.MINUTES.toMillis(cfg.getTagsTtl()));
+        if (JosmanConfig.TAG_SOURCE_GITHUB.equals(spec)) {
+            return gitHub;
+        }
+        GitTagSource git = new GitTagSource(repo);
+        if (JosmanConfig.TAG_SOURCE_GIT.equals(spec) || git.hasTags()) {
+            return git;
+        }
+        LOG.info("No tags found in local git repo, will look on GitHub");
+        return gitHub;
     }
 
     /**
+     * Fetches tags and adds tasks for generating docs of released versions, if
+     * needed. For each version, javadoc is copied before processing docs so
+     * the eval file is ready.
+     * 
      * @since 0.8.0
      */
-    private void generateReleases() {
+    private void addReleaseTasks(TaskGraph graph) {
         
         if (cfg.isReleases()) {
 
-            LOG.log(Level.INFO, "Fetching {0}/{1} tags.",
-                    new Object[] { Josmans.organization(mvnPrj.getUrl()), mvnPrj.getArtifactId() });
+            TagSource tagSource = tagSource();
+            LOG.log(Level.INFO, "Fetching tags from {0}", tagSource);
 
-            repoTags = Josmans.fetchTags(Josmans.organization(mvnPrj.getUrl()), mvnPrj.getArtifactId());
+            repoTags = tagSource.fetchTags();
+            versionIndex = VersionIndex.of(mvnPrj.getArtifactId(), repoTags, cfg.getIgnoredVersions(),
+                    cfg.isSnapshot() ? snapshotVersion() : null);
 
             if (cfg.isSnapshot()){
-                if (remainingTags().isEmpty()) {                    
+                if (versionIndex.remaining().isEmpty()) {                    
                     LOG.warning("No previous releases found.");
                     return;
                 }                
@@ -1357,159 +1972,108 @@ public class JosmanProject {
                 }                
             }
             
-            SemVersion latestPublishedVersion = Josmans.latestVersion(mvnPrj.getArtifactId(), remainingTags());
+            VersionIndex.Release latestRelease = versionIndex.latest();
+            if (latestRelease == null) {
+                throw new JosmanNotFoundException("Couldn't find any released version!");
+            }
+            final SemVersion latestPublishedVersion = latestRelease.version;
 
-            LOG.log(Level.INFO, "Processing published version");
-            
+            if (cfg.isJavadoc()) {
+                // downloads start right away, before tasks get to them
+                List<SemVersion> versions = new ArrayList<>();
+                for (VersionIndex.Release release : versionIndex.remaining()) {
+                    versions.add(release.version);
+                }
+                LOG.log(Level.INFO, "Resolving javadoc jars from {0}", javadocResolver);
+                javadocJars = new JavadocJars(javadocResolver, mvnPrj.getGroupId(), mvnPrj.getArtifactId(),
+                        Math.max(1, Math.min(MAX_JAVADOC_DOWNLOADS, versions.size())));
+                javadocJars.prefetch(versions);
+            }
 
-            SortedMap<String, RepositoryTag> filteredTags = Josmans.versionTagsToProcess(mvnPrj.getArtifactId(),
-                    remainingTags(), cfg.getIgnoredVersions());
+            for (VersionIndex.Release release : versionIndex.remaining()) {
+                final SemVersion version = release.version;
+                LOG.log(Level.INFO, "Will process release tag {0}", release.tag.getName());
 
-            for (RepositoryTag tag : filteredTags.values()) {
-                LOG.log(Level.INFO, "Processing release tag {0}", tag.getName());
-                SemVersion version = Josmans.version(mvnPrj.getArtifactId(), tag.getName());
                 if (cfg.isJavadoc()){
-                    copyJavadoc(version); // before processGit so we can have the
-                                          // eval file ready                                                     
+                    graph.add(taskJavadoc(version), new Runnable() {
+                        @Override
+                        public void run() {
+                            copyJavadoc(version);
+                        }
+                    });
                 } else {
                     LOG.info("Skipping Javadoc for version " + version);
                 }
-                
-                Map<String, String> evals;
-                File evalMapFile = new File(targetJavadocDir(version), RELATIVE_EVAL_FILEPATH);
-                if (evalMapFile.exists()) {
-                    evals = Josmans.loadEvalMap(evalMapFile);
+
+                Runnable docsTask = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            processGitDocsDir(version, loadReleaseEvals(version));
+                        } catch (ExprNotFoundException ex) {
+                            throw releaseExprNotFound(version, ex);
+                        }
+                    }
+                };
+
+                if (graph.contains(taskJavadoc(version))) {
+                    graph.add(taskDocs(version), docsTask, taskJavadoc(version));
                 } else {
-                    evals = Collections.EMPTY_MAP;
-                }
-                try {
-                    processGitDocsDir(version, evals);
-                } catch (ExprNotFoundException ex) {
-                    throw new ExprNotFoundException(
-                            "RELEASED VERSION " + version + " IS MISSING EVALUATION OF EXPRESSION: " + ex.getExpr()
-                            + " FOUND IN FILE: " + ex.getRelPath(),
-                            ex.getExpr(),
-                            ex.getRelPath(),
-                            ex);
+                    graph.add(taskDocs(version), docsTask);
                 }
             }
 
-
             if (!cfg.isSnapshot()){
-                File evalMap = new File(targetJavadocDir(latestPublishedVersion), RELATIVE_EVAL_FILEPATH);
-                Map<String, String> latestPublishedEvals;
-                if (evalMap.exists()) {
-                    latestPublishedEvals = Josmans.loadEvalMap(evalMap);
+                Runnable indexTask = new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            buildIndex(latestPublishedVersion, loadReleaseEvals(latestPublishedVersion));
+                        } catch (ExprNotFoundException ex) {
+                            throw releaseExprNotFound(latestPublishedVersion, ex);
+                        }
+                    }
+                };
+                if (graph.contains(taskJavadoc(latestPublishedVersion))) {
+                    graph.add(TASK_RELEASE_INDEX, indexTask, taskJavadoc(latestPublishedVersion));
                 } else {
-                    LOG.info("Couldn't find eval map (if docs don't contain $eval it's not necessary).");
-                    latestPublishedEvals = Collections.EMPTY_MAP;
+                    graph.add(TASK_RELEASE_INDEX, indexTask);
                 }
-                
-                try {
-                    buildIndex(latestPublishedVersion, latestPublishedEvals);
-                } catch (ExprNotFoundException ex) {
-                    throw new ExprNotFoundException("RELEASED VERSION " + latestPublishedVersion
-                            + " IS MISSING EVALUATION OF EXPRESSION: " + ex.getExpr()
-                            + " FOUND IN FILE " + ex.getRelPath(),
-                            ex.getExpr(),
-                            ex.getRelPath(),
-                            ex);
-                }                
             }
 
         }  
     }
 
     /**
-     * Returns a Jerry object repereenting the non-managed sidebar for a given
-     * version page
-     *
-     * @param contentFromMdHtml
-     *            the content of page we're making the sidebar for
-     * @param relpaths
-     *            a list of relpaths of pages related to the version we're
-     *            making the sidebar for
-     * @param currentRelPath
-     *            the relpath of the page we're making the sidebar
-     *            for
-     */
-    private Jerry makeSidebar(String contentFromMdHtml, String currentRelPath, List<String> relpaths) {
-        checkNotNull(contentFromMdHtml);
-        checkNotEmpty(currentRelPath, "Invalid current rel path!");
-        checkNotNull(relpaths, "Invalid list of relpaths!");
-
-        Jerry html = Jerry.jerry(contentFromMdHtml);
-
-        Jerry allLinksContainer = Jerry.jerry("<ul>")
-                                       .$("ul")
-                                       .addClass("josman-tree");
-
-        List<String> orderedRelpaths = Josmans.orderRelpaths(relpaths);
-
-        for (String relpath : orderedRelpaths) {
-            Jerry pageItemContainer = Jerry.jerry("<li>")
-                                           .$("li");
-
-            Jerry pageTitle = Jerry.jerry("<div>")
-                                   .$("div")
-                                   .addClass("josman-sidebar-page-title");
-
-            Jerry pageLinksContainer = Jerry.jerry("<ul>")
-                                            .$("ul")
-                                            .addClass("josman-tree");
-
-            if (relpath.equals(currentRelPath)) {
-                pageTitle.text(Josmans.targetName(relpath));
-                pageTitle.addClass("josman-sidebar-selected");
-
-                for (Jerry sourceHeaderLink : html.$("h3 a")) {
-                    // <a href="#header1">Header 1</a><br/>
-
-                    /*
-                     * <ul class="josman-tree">
-                     * <li>
-                     * <div class="josman-sidebar-page-title">Usage</div>
-                     * <ul class="josman-tree">
-                     * <li><a href="#header1">Maven</a>
-                     */
-                    Jerry linkContainer = Jerry.jerry("<div>")
-                                               .$("div");
-
-                    Jerry link = Jerry.jerry("<a>")
-                                      .$("a")
-                                      .attr("href", sourceHeaderLink.first()
-                                                                    .first()
-                                                                    .attr("href"))
-                                      .text(sourceHeaderLink.first()
-                                                            .text());
-                    linkContainer.append(link.htmlAll(true));
-
-                    pageLinksContainer.append(linkContainer.htmlAll(true));
-
-                    // ret += "<div> <a href='" +
-                    // sourceHeaderLink.first().first().attr("href") + "'>" +
-                    // sourceHeaderLink.first().text() + "</a></div> \n";
-                    /*
-                     * Jerry.jerry("<a>")
-                     * .attr("href","#" + sourceHeaderLink.attr("id"))
-                     * .text(sourceHeaderLink.text());
-                     */
-                }
-            } else {
-                pageTitle.append(Jerry.jerry("<a>")
-                                      .$("a")
-                                      .attr("href", Josmans.htmlizePath(relpath.substring(DOCS_FOLDER.length() + 1)))
-                                      .text(Josmans.targetName(relpath))
-                                      .htmlAll(true));
-            }
+     * @since 0.8.0
+     */
+    private static String taskJavadoc(SemVersion version) {
+        return "javadoc " + version;
+    }
 
-            pageItemContainer.append(pageTitle.htmlAll(true));
-            pageItemContainer.append(pageLinksContainer.htmlAll(true));
+    /**
+     * @since 0.8.0
+     */
+    private static String taskDocs(SemVersion version) {
+        return "docs " + version;
+    }
 
-            allLinksContainer.append(pageItemContainer.htmlAll(true));
+    /**
+     * Returns the sidebar listing given pages of a version. Sidebars are
+     * cached, as all pages of a version share the same relpaths.
+     * 
+     * @since 0.8.0
+     */
+    private Sidebar sidebar(List<String> relpaths) {
+        Sidebar ret = sidebars.get(relpaths);
+        if (ret == null) {
+            ret = new Sidebar(relpaths);
+            Sidebar prev = sidebars.putIfAbsent(ImmutableList.copyOf(relpaths), ret);
+            if (prev != null) {
+                ret = prev;
+            }
         }
-
-        return allLinksContainer;
+        return ret;
     }
 
     /**
@@ -1524,18 +2088,28 @@ public class JosmanProject {
             LOG.fine("javadoc flag off, skipping javadoc copy.");
         }
         
+        boolean snapshotJavadoc = cfg.isSnapshot() && version.equals(snapshotVersion());
+        
         File targetJavadoc = targetJavadocDir(version);
         if (targetJavadoc.exists() && (targetJavadoc.isFile() || targetJavadoc.length() > 0)) {
-            String s = "Target directory for Javadoc already exists!!! " + targetJavadoc.getAbsolutePath();
-            if (cfg.isFailOnError()){
-                throw new JosmanIoException(s);
+            if (manifest != null) {
+                if (!snapshotJavadoc) {
+                    // javadoc of released versions never changes
+                    LOG.fine("Javadoc for version " + version + " already exists, skipping it.");
+                    return;
+                }
             } else {
-                LOG.warning(s + "\nSkipping javadoc." );
-                return;
-            }            
+                String s = "Target directory for Javadoc already exists!!! " + targetJavadoc.getAbsolutePath();
+                if (cfg.isFailOnError()){
+                    throw new JosmanIoException(s);
+                } else {
+                    LOG.warning(s + "\nSkipping javadoc." );
+                    return;
+                }
+            }
         }
                 
-        if (cfg.isSnapshot() && version.equals(snapshotVersion()) ) {
+        if (snapshotJavadoc) {
                         
             File sourceJavadoc = sourceJavadocDir(version);
             if (sourceJavadoc.exists()) {
@@ -1543,7 +2117,7 @@ public class JosmanProject {
                 try {
                     LOG.log(Level.INFO, "Now copying Javadoc from {0} to {1} ...",
                             new Object[] { sourceJavadoc.getAbsolutePath(), targetJavadoc.getAbsolutePath() });
-                    FileUtils.copyDirectory(sourceJavadoc, targetJavadoc);
+                    outputStore.copyDirectoryIfChanged(sourceJavadoc, targetJavadoc, manifest);
                     LOG.info("Done copying javadoc.");
                 } catch (Exception ex) {
                     if (cfg.isFailOnError()){
@@ -1571,19 +2145,24 @@ public class JosmanProject {
         if (cfg.isReleases() && !version.equals(snapshotVersion())) {
             File jardocs;
             try {
-                jardocs = Josmans.fetchJavadoc(mvnPrj.getGroupId(), mvnPrj.getArtifactId(), version);
+                if (javadocJars != null) {
+                    jardocs = javadocJars.get(version);
+                } else {
+                    jardocs = javadocResolver.resolve(mvnPrj.getGroupId(), mvnPrj.getArtifactId(), version);
+                }
             } catch (Exception ex) {
                 String sep = File.separator;
                 String localJarPath = cfg.getSourceRepoDir().getAbsolutePath() + sep + "target" + sep + "checkout" + sep
                         + "target" + sep + Josmans.javadocJarName(mvnPrj.getArtifactId(), version);
                 LOG.log(Level.WARNING,
-                        "Can't fetch javadoc from Maven Central, trying to locate it at " + localJarPath);
+                        "Can't resolve javadoc from " + javadocResolver + ", trying to locate it at " + localJarPath);
                 LOG.log(Level.FINE, "Exception was", ex );
                 jardocs = new File(localJarPath);
             }
 
             try {
-                Josmans.copyDirFromJar(jardocs, targetJavadocDir(version), "");    
+                JarExtractor.extract(jardocs, targetJavadocDir(version), "", newPageBatch(), cfg.getThreads(),
+                        outputStore);
             } catch (Exception ex) {
                 String s = "Couldn't find any jar for javadoc at version " + version;
                 if (cfg.isFailOnError()){                        
@@ -1608,14 +2187,19 @@ public class JosmanProject {
 
     /**
      * Searches docs for $eval{EXPR} staments and evaluates them using test classpath. 
+     * Each distinct expression is evaluated once, on {@link JosmanConfig#getThreads()} threads.
      * Results are then put in CSV file {@value #TARGET_EVAL_FILEPATH}    
      * 
+     * If test classpath didn't change since previous run, results of previous run are reused and 
+     * only new expressions are evaluated.
+     * 
      * @since 0.8.0
      */
     public void evalDocs() {
 
-
-        final Map<String, String> evals = new HashMap<>();
+        // expr -> first file where it was found
+        final Map<String, String> exprs = new LinkedHashMap<>();
+        final AtomicInteger occurrences = new AtomicInteger();
 
         new DirectoryWalker() {
             /**
@@ -1641,17 +2225,33 @@ public class JosmanProject {
                 if (file.getAbsolutePath()
                         .endsWith(".md")) {
                     String text = FileUtils.readFileToString(file, "UTF-8");
-                    evals.putAll(Josmans.evalExprsInText(text, 
-                                                            file.getPath(),
-                                                            Thread.currentThread()
-                                                             .getContextClassLoader(),
-                                                             !cfg.isFailOnError()));
+                    occurrences.addAndGet(Josmans.collectExprs(text, file.getPath(), exprs));
                 }
             }
 
         }.process();
 
-        Josmans.saveEvalMap(evals, new File(cfg.getSourceRepoDir(), TARGET_EVAL_FILEPATH));
+        File evalMapFile = new File(cfg.getSourceRepoDir(), TARGET_EVAL_FILEPATH);
+        File fingerprintFile = new File(cfg.getSourceRepoDir(), TARGET_EVAL_FINGERPRINT_FILEPATH);
+
+        List<String> classpath;
+        try {
+            classpath = mvnPrj.getTestClasspathElements();
+        } catch (DependencyResolutionRequiredException ex) {
+            throw new JosmanException(ex);
+        }
+
+        LOG.log(Level.INFO, "Found {0} distinct expressions out of {1}",
+                new Object[] { exprs.size(), occurrences.get() });
+
+        startPagePool();
+        try {
+            Josmans.updateEvalMap(exprs, classpath, evalMapFile, fingerprintFile, evalClassLoader,
+                    !cfg.isFailOnError(), newPageBatch(), exprEvaluator);
+        } finally {
+            stopPagePool();
+            exprEvaluator.close();
+        }
 
     }
 
@@ -17,26 +17,27 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.net.MalformedURLException;
+import java.io.Writer;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 import java.util.TreeMap;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -48,7 +49,6 @@ import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.eclipse.egit.github.core.Repository;
 import org.eclipse.egit.github.core.RepositoryTag;
 import org.eclipse.egit.github.core.client.GitHubClient;
@@ -82,11 +82,6 @@ public final class Josmans {
      */
     private final static Pattern EXPR_PATTERN = Pattern.compile("[\\w|\\.]+(\\((.*)\\))?");
 
-    /**
-     * @since 0.8.0
-     */
-    private final static Pattern EVAL_PATTERN = Pattern.compile("\\$eval(Now)?\\{\\s*(" + EXPR_PATTERN.toString() + ")\\s*\\}");
-
     /**
      * @since 0.8.0
      */
@@ -141,6 +136,20 @@ public final class Josmans {
     // https://github.com/centic9/jgit-cookbook/blob/master/src/main/java/org/
     // dstadler/jgit/api/ReadFileFromCommit.java
     public static ImmutableList<RepositoryTag> fetchTags(String organization, String repoName) {
+        return fetchTags(organization, repoName, null);
+    }
+
+    /**
+     * Fetches all tags from a github repository.
+     * 
+     * @param token
+     *            OAuth2 token, if null or empty requests are anonymous and
+     *            limited to 60 per hour
+     * @throws JosmanIoException
+     * 
+     * @since 0.8.0
+     */
+    public static ImmutableList<RepositoryTag> fetchTags(String organization, String repoName, @Nullable String token) {
         Preconditions.checkNotEmpty(organization, "Invalid organization!");
         Preconditions.checkNotEmpty(repoName, "Invalid repo name!");
 
@@ -148,6 +157,9 @@ public final class Josmans {
 
         try {
             GitHubClient client = new GitHubClient();
+            if (token != null && !token.isEmpty()) {
+                client.setOAuth2Token(token);
+            }
             RepositoryService service = new RepositoryService(client);
             Repository repo = service.getRepository(organization, repoName);
             List<RepositoryTag> tags = service.getTags(repo);
@@ -253,30 +265,6 @@ public final class Josmans {
 
     }
 
-    /**
-     * Adds the candidate tag to the provided tags if no other tag has same
-     * major and minor or if its patch is greater.
-     */
-    @Nullable
-    private static void updateTags(String repoName, RepositoryTag candidateTag, List<RepositoryTag> tags) {
-
-        SemVersion candidateSemVarsion = version(repoName, candidateTag.getName());
-
-        for (int i = 0; i < tags.size(); i++) {
-            RepositoryTag tag = tags.get(i);
-            SemVersion semVersion = version(repoName, tag.getName());
-            if (candidateSemVarsion.getMajor() == semVersion.getMajor()
-                    && candidateSemVarsion.getMinor() == semVersion.getMinor()) {
-                if (candidateSemVarsion.getPatch() > semVersion.getPatch()) {
-                    tags.set(i, candidateTag);
-                }
-                return;
-            }
-        }
-        tags.add(candidateTag);
-    }
-    
-    
     /**
      * Returns a new list with given relpaths ordered by importance, the first
      * being the most important.
@@ -303,7 +291,9 @@ public final class Josmans {
 
     /**
      * Returns new sorted map of only version tags of the format repoName-x.y.z
-     * filtered tags, the latter having the highest version.
+     * filtered tags, the latter having the highest version. For each
+     * major.minor only the tag with highest patch is kept. Tags are sorted by
+     * semantic version, so i.e. josman-0.9.0 comes before josman-0.10.0
      *
      * @param repoName
      *            the github repository name i.e. josman
@@ -311,23 +301,34 @@ public final class Josmans {
      *            a list of tags from the repository
      * @return map of version as string and correspondig RepositoryTag
      */
-    public static SortedMap<String, RepositoryTag> versionTags(String repoName,
+    public static SortedMap<String, RepositoryTag> versionTags(final String repoName,
             @Nullable List<RepositoryTag> tags) {
 
         if (tags == null) {
             return new TreeMap<>();
         }
-        List<RepositoryTag> ret = new ArrayList();
-        for (RepositoryTag candidateTag : tags) {
-            if (candidateTag.getName()
-                            .startsWith(repoName + "-")) {
-                updateTags(repoName, candidateTag, ret);
-            }
+
+        final Map<String, SemVersion> versions = new HashMap<>();
+        List<VersionIndex.Release> releases = VersionIndex.latestPatches(repoName, tags);
+        for (VersionIndex.Release release : releases) {
+            versions.put(release.tag.getName(), release.version);
         }
 
-        TreeMap<String, RepositoryTag> map = new TreeMap<>();
-        for (RepositoryTag tag : ret) {
-            map.put(tag.getName(), tag);
+        // versions are parsed once, tags not in the map are ordered by name
+        TreeMap<String, RepositoryTag> map = new TreeMap<>(new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                SemVersion va = versions.get(a);
+                SemVersion vb = versions.get(b);
+                if (va == null || vb == null) {
+                    return a.compareTo(b);
+                }
+                int ret = VersionIndex.VERSION_ORDER.compare(va, vb);
+                return ret == 0 ? a.compareTo(b) : ret;
+            }
+        });
+        for (VersionIndex.Release release : releases) {
+            map.put(release.tag.getName(), release.tag);
         }
         return map;
     }
@@ -452,13 +453,21 @@ public final class Josmans {
         return "https://" + organization + ".github.io/" + repoName;
     }
 
+    /**
+     * Returns the highest version among release tags of the format
+     * repoName-x.y.z
+     * 
+     * @throws JosmanNotFoundException
+     *             if there is no release tag
+     */
     public static SemVersion latestVersion(String repoName, List<RepositoryTag> tags) {
         Preconditions.checkNotEmpty(tags, "Invalid repository tags!");
-        SortedMap<String, RepositoryTag> filteredTags = Josmans.versionTags(repoName, tags);
-        if (filteredTags.isEmpty()) {
+        VersionIndex.Release latest = VersionIndex.of(repoName, tags, ImmutableList.<SemVersion> of(), null)
+                                                  .latest();
+        if (latest == null) {
             throw new JosmanNotFoundException("Couldn't find any released version!");
         }
-        return Josmans.version(repoName, filteredTags.lastKey());
+        return latest.version;
     }
 
     /**
@@ -542,41 +551,14 @@ public final class Josmans {
     }
 
     /**
-     * Fetches Javadoc of released artifact and writes it into {@code destFile}
+     * Fetches Javadoc of released artifact from Maven Central into a temporary
+     * file. See also {@link CentralJavadocResolver}
      * 
      * @throws JosmanIoException
-     * @throws Josman
+     * @throws JosmanNotFoundException
      */
     public static File fetchJavadoc(String groupId, String artifactId, SemVersion version) {
-        checkNotEmpty(groupId, "Invalid groupId!");
-        checkNotEmpty(artifactId, "Invalid artifactId!");
-        checkNotNull(version);
-
-        File destFile;
-
-        try {
-            destFile = File.createTempFile(groupId + "-" + artifactId + "-javadoc", ".jar");
-            destFile.deleteOnExit();
-        } catch (IOException ex) {
-            throw new JosmanIoException("Couldn't create target javadoc file!", ex);
-        }
-
-        URL url;
-        try {
-            url = new URL("http://repo1.maven.org/maven2/" + groupId.replace(".", "/") + "/" + artifactId + "/"
-                    + version + "/" + javadocJarName(artifactId, version));
-        } catch (MalformedURLException ex) {
-            throw new JosmanException("Error while forming javadoc URL!", ex);
-        }
-        LOG.log(Level.INFO, "Fetching javadoc from {0} into {1} ...", new Object[] { url, destFile.getAbsolutePath() });
-        try {
-            FileUtils.copyURLToFile(url, destFile, CONNECTION_TIMEOUT, CONNECTION_TIMEOUT);
-            LOG.log(Level.INFO, "Done copying javadoc.");
-        } catch (IOException ex) {
-            throw new JosmanIoException("Error while fetch-and-write javadoc for " + groupId + "/" + artifactId + "-"
-                    + version + " into file " + destFile.getAbsoluteFile(), ex);
-        }
-        return destFile;
+        return new CentralJavadocResolver(null).resolve(groupId, artifactId, version);
     }
 
     /**
@@ -587,6 +569,23 @@ public final class Josmans {
      * @throws JosmanIoException
      */
     public static void copyDirFromResource(Class clazz, String dirPath, File destDir) {
+        copyDirFromResource(clazz, dirPath, destDir, new OutputStore(false), null);
+    }
+
+    /**
+     * Like {@link #copyDirFromResource(Class, String, File)}, adding copied
+     * files to {@code store}
+     * 
+     * @param manifest
+     *            if not null, files it says are up to date are not copied
+     * 
+     * @throws JosmanIoException
+     * 
+     * @since 0.8.0
+     */
+    static void copyDirFromResource(Class clazz, String dirPath, File destDir, OutputStore store,
+            @Nullable BuildManifest manifest) {
+        checkNotNull(store);
         String sep = File.separator;
         File sourceDir = new File("src" + sep + "main" + sep + "resources", dirPath);
 
@@ -594,7 +593,7 @@ public final class Josmans {
             LOG.log(Level.INFO, "Copying directory from {0} to {1}  ...",
                     new Object[] { sourceDir.getAbsolutePath(), destDir.getAbsolutePath() });
             try {
-                FileUtils.copyDirectory(sourceDir, destDir);
+                store.copyDirectoryIfChanged(sourceDir, destDir, manifest);
                 LOG.log(Level.INFO, "Done copying directory");
             } catch (IOException ex) {
                 throw new JosmanIoException("Couldn't copy the directory!", ex);
@@ -609,8 +608,9 @@ public final class Josmans {
                                                 .endsWith("target" + File.separator + "classes")) {
                 LOG.info("Seems like you have Josman sources, will take resources from there");
                 try {
-                    FileUtils.copyDirectory(new File(jarFile.getAbsolutePath() + "/../../src/main/resources", dirPath),
-                            destDir);
+                    store.copyDirectoryIfChanged(
+                            new File(jarFile.getAbsolutePath() + "/../../src/main/resources", dirPath), destDir,
+                            manifest);
                     LOG.log(Level.INFO, "Done copying directory");
                 } catch (IOException ex) {
                     throw new JosmanIoException("Couldn't copy the directory!", ex);
@@ -618,7 +618,7 @@ public final class Josmans {
             } else {
                 LOG.log(Level.INFO, "Extracting jar {0} to {1}",
                         new Object[] { jarFile.getAbsolutePath(), destDir.getAbsolutePath() });
-                copyDirFromJar(jarFile, destDir, dirPath);
+                JarExtractor.extract(jarFile, destDir, dirPath, new PageBatch(null), 1, store, manifest);
                 LOG.log(Level.INFO, "Done copying directory from JAR.");
             }
 
@@ -637,54 +637,7 @@ public final class Josmans {
      * @throws JosmanIoException
      */
     public static void copyDirFromJar(File jarFile, File destDir, String dirPath) {
-        checkNotNull(jarFile);
-        checkNotNull(destDir);
-        checkNotNull(dirPath);
-
-        String normalizedDirPath;
-        if (dirPath.startsWith("/")) {
-            normalizedDirPath = dirPath.substring(1);
-        } else {
-            normalizedDirPath = dirPath;
-        }
-
-        try {
-            JarFile jar = new JarFile(jarFile);
-            java.util.Enumeration enumEntries = jar.entries();
-            while (enumEntries.hasMoreElements()) {
-                JarEntry jarEntry = (JarEntry) enumEntries.nextElement();
-                if (jarEntry.getName()
-                            .startsWith(normalizedDirPath)) {
-                    File f = new File(
-                            destDir
-                                    + File.separator
-                                    + jarEntry
-                                              .getName()
-                                              .substring(normalizedDirPath.length()));
-
-                    if (jarEntry.isDirectory()) { // if its a directory, create
-                                                  // it
-                        f.mkdirs();
-                        continue;
-                    } else {
-                        f.getParentFile()
-                         .mkdirs();
-                    }
-
-                    InputStream is = jar.getInputStream(jarEntry); // get the
-                                                                   // input
-                                                                   // stream
-                    FileOutputStream fos = new FileOutputStream(f);
-                    IOUtils.copy(is, fos);
-                    fos.close();
-                    is.close();
-                }
-
-            }
-        } catch (Exception ex) {
-            throw new JosmanIoException("Error while extracting jar file! Jar source: " + jarFile.getAbsolutePath()
-                    + " destDir = " + destDir.getAbsolutePath(), ex);
-        }
+        JarExtractor.extract(jarFile, destDir, dirPath, new PageBatch(null), 1, new OutputStore(false));
     }
 
     /**
@@ -894,8 +847,56 @@ public final class Josmans {
         checkNotNull(text);
         checkNotNull(classLoader);
 
-        Level logLevel;
-        Level exceptionLevel;
+        Map<String, String> exprs = new LinkedHashMap<>();
+        collectExprs(text, relPath, exprs);
+        return evalExprs(exprs, classLoader, ignoreEvalErrors, new PageBatch(null), new ExprEvaluator(0, 1));
+    }
+
+    /**
+     * Adds to {@code exprs} the expressions (both eval and evalNow) found in
+     * text which are not there yet, mapped to {@code relPath}
+     * 
+     * @return the number of expressions found, including duplicates
+     * 
+     * @since 0.8.0
+     */
+    static int collectExprs(String text, String relPath, Map<String, String> exprs) {
+        ExprScanner scanner = new ExprScanner(text);
+        int ret = 0;
+        while (scanner.find()) {
+            String expr = scanner.expr();
+            if (!exprs.containsKey(expr)) {
+                exprs.put(expr, relPath);
+            }
+            ret++;
+        }
+        return ret;
+    }
+
+    /**
+     * Evals each expression once, submitting evaluations to {@code batch}
+     * 
+     * @param exprs
+     *            expression -> path of a file containing it, for reporting
+     *            errors
+     * @return a map expr -> result
+     * 
+     * @since 0.8.0
+     */
+    static Map<String, String> evalExprs(
+            Map<String, String> exprs,
+            final ClassLoader classLoader,
+            final boolean ignoreEvalErrors,
+            PageBatch batch,
+            final ExprEvaluator evaluator) {
+
+        checkNotNull(exprs);
+        checkNotNull(classLoader);
+        checkNotNull(batch);
+        checkNotNull(evaluator);
+
+        final Level logLevel;
+        final Level exceptionLevel;
         
         if (ignoreEvalErrors){
             logLevel = Level.WARNING;
@@ -905,42 +906,44 @@ public final class Josmans {
             exceptionLevel = Level.SEVERE;
         }
 
-        
-        Map<String, String> ret = new HashMap<>();
-
-        Matcher matcher = EVAL_PATTERN.matcher(text);
+        final Map<String, String> ret = new ConcurrentHashMap<>();
 
-        boolean evalError = false;
+        final AtomicBoolean evalError = new AtomicBoolean(false);
 
-        while (matcher.find()) {
-
-            String expr = matcher.group(2);
-
-            try {
-                String stringRes = evalNow(expr, relPath, classLoader);
-                ret.put(expr, stringRes);
-            } catch (Exception ex) {
-                String msg;
-                if (ignoreEvalErrors){
-                    msg = "Couldn't evaluate expression, ignoring it.";
+        for (final Map.Entry<String, String> entry : exprs.entrySet()) {
+            batch.submit(new Runnable() {
+                @Override
+                public void run() {
+                    String expr = entry.getKey();
+                    String relPath = entry.getValue();
                     try {
-                        checkExpr(expr);
-                        ret.put(expr, "${" + expr + "}");
-                    } catch (Exception e){
+                        String stringRes = evalExpr(expr, Collections.EMPTY_MAP, true, relPath, classLoader,
+                                evaluator);
+                        ret.put(expr, stringRes);
+                    } catch (Exception ex) {
+                        String msg;
+                        if (ignoreEvalErrors){
+                            msg = "Couldn't evaluate expression, ignoring it.";
+                            try {
+                                checkExpr(expr);
+                                ret.put(expr, "${" + expr + "}");
+                            } catch (Exception e){
+                            }
+                            
+                        } else {
+                            msg = "Error while evaluating expression!";
+                        }
+                        LOG.log(logLevel, msg + "\n"
+                                + reportExpr(expr, relPath));
+                        LOG.log(exceptionLevel, "Exception was: ", ex);
+                        evalError.set(true);
                     }
-                    
-                } else {
-                    msg = "Error while evaluating expression!";
                 }
-                LOG.log(logLevel, msg + "\n"
-                        + reportExpr(expr, relPath));
-                LOG.log(exceptionLevel, "Exception was: ", ex);
-                evalError = true;
-            }
-
+            });
         }
+        batch.await();
 
-        if (evalError) {
+        if (evalError.get()) {
             if (ignoreEvalErrors){
                 LOG.log(logLevel, "\nHad issues while evaluating expression(s)! See log for details.\n"); 
             } else {
@@ -948,6 +951,140 @@ public final class Josmans {
             }            
         }
 
+        return new HashMap<>(ret);
+    }
+
+    /**
+     * Evaluates {@code exprs} and writes the results to {@code evalMapFile}.
+     * If test classpath didn't change since the run which wrote
+     * {@code fingerprintFile}, previous results are reused and only new
+     * expressions and the ones which failed are evaluated. If expressions
+     * didn't change either, nothing is evaluated nor written.
+     *
+     * @param exprs
+     *            expression -> path of a file containing it, for reporting
+     *            errors
+     * @return the number of evaluated expressions
+     * @throws JosmanException
+     *
+     * @since 0.8.0
+     */
+    static int updateEvalMap(
+            Map<String, String> exprs,
+            List<String> classpath,
+            File evalMapFile,
+            File fingerprintFile,
+            ClassLoader classLoader,
+            boolean ignoreEvalErrors,
+            PageBatch batch,
+            ExprEvaluator evaluator) {
+
+        checkNotNull(exprs);
+        checkNotNull(classpath);
+        checkNotNull(evalMapFile);
+        checkNotNull(fingerprintFile);
+
+        EvalFingerprint fingerprint = EvalFingerprint.load(fingerprintFile)
+                                                     .putClasspath(classpath)
+                                                     .putExprs(exprs.keySet());
+
+        Map<String, String> evals = new HashMap<>();
+        if (fingerprint.isClasspathUnchanged() && evalMapFile.exists()) {
+            if (fingerprint.isExprsUnchanged()) {
+                LOG.info("Neither test classpath nor expressions changed, skipping evaluation.");
+                // stores stamps of jars touched without changes, so they are not hashed again
+                fingerprint.save(fingerprintFile);
+                return 0;
+            }
+            // not through the index, as it's going to be rewritten while mapped
+            Map<String, String> previousEvals = readEvalCsv(evalMapFile);
+            for (Map.Entry<String, String> entry : previousEvals.entrySet()) {
+                String expr = entry.getKey();
+                // failed evaluations are retried
+                if (exprs.containsKey(expr) && !("${" + expr + "}").equals(entry.getValue())) {
+                    evals.put(expr, entry.getValue());
+                }
+            }
+            LOG.log(Level.INFO, "Test classpath didn''t change, reusing {0} previous results", evals.size());
+        }
+
+        Map<String, String> toEval = new LinkedHashMap<>(exprs);
+        toEval.keySet()
+              .removeAll(evals.keySet());
+
+        LOG.log(Level.INFO, "Evaluating {0} distinct expressions out of {1}",
+                new Object[] { toEval.size(), exprs.size() });
+
+        evals.putAll(evalExprs(toEval, classLoader, ignoreEvalErrors, batch, evaluator));
+
+        saveEvalMap(evals, evalMapFile);
+        fingerprint.save(fingerprintFile);
+        return toEval.size();
+    }
+
+    /**
+     * Escapes characters which have special meaning in html text and
+     * double quoted attribute values.
+     * 
+     * @since 0.8.0
+     */
+    static String escapeHtml(String text) {
+        checkNotNull(text);
+        StringBuilder sb = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            String rep;
+            switch (c) {
+            case '&':
+                rep = "&amp;";
+                break;
+            case '<':
+                rep = "&lt;";
+                break;
+            case '>':
+                rep = "&gt;";
+                break;
+            case '"':
+                rep = "&quot;";
+                break;
+            default:
+                rep = null;
+            }
+            if (rep != null) {
+                if (sb == null) {
+                    sb = new StringBuilder(text.length() + 16);
+                    sb.append(text, 0, i);
+                }
+                sb.append(rep);
+            } else if (sb != null) {
+                sb.append(c);
+            }
+        }
+        return sb == null ? text : sb.toString();
+    }
+
+    /**
+     * Returns the entries of {@code evalMap} for the $eval expressions found in
+     * {@code text}, sorted by expression. Expressions not in the map are
+     * returned with a null value. If text contains any $evalNow expression
+     * returns null, as its result can't be known in advance.
+     * 
+     * @since 0.8.0
+     */
+    @Nullable
+    static Map<String, String> usedEvals(String text, Map<String, String> evalMap) {
+        checkNotNull(text);
+        checkNotNull(evalMap);
+
+        Map<String, String> ret = new TreeMap<>();
+        ExprScanner scanner = new ExprScanner(text);
+        while (scanner.find()) {
+            if (scanner.isEvalNow()) {
+                return null;
+            }
+            String expr = scanner.expr();
+            ret.put(expr, evalMap.get(expr));
+        }
         return ret;
     }
 
@@ -976,11 +1113,28 @@ public final class Josmans {
             Map<String, String> evalMap,
             String relPath,
             ClassLoader classLoader,
-            boolean ignoreEvalErrors) {               
+            boolean ignoreEvalErrors) {
+        return expandExprs(text, evalMap, relPath, classLoader, ignoreEvalErrors, new ExprEvaluator(0, 1));
+    }
+
+    /**
+     * Like {@link #expandExprs(String, Map, String, ClassLoader, boolean)},
+     * evaluating $evalNow expressions with {@code evaluator}
+     * 
+     * @since 0.8.0
+     */
+    static String expandExprs(
+            String text,
+            Map<String, String> evalMap,
+            String relPath,
+            ClassLoader classLoader,
+            boolean ignoreEvalErrors,
+            ExprEvaluator evaluator) {               
         
         checkNotNull(text);
         checkNotNull(classLoader);
         checkNotNull(evalMap);
+        checkNotNull(evaluator);
         
         Level logLevel;
         Level exceptionLevel;
@@ -993,30 +1147,29 @@ public final class Josmans {
         }
 
         
-        Matcher matcher = EVAL_PATTERN.matcher(text);
-        List<Integer> execStarts = new ArrayList<>();
-        List<Integer> execEnds = new ArrayList<>();
-        List<String> results = new ArrayList<>();
+        ExprScanner scanner = new ExprScanner(text);
+        StringBuilder sb = new StringBuilder(text.length());
+        int lastIndex = 0;
 
         List<String> erroneusExprs = new ArrayList<>();
         List<String> missingExprs = new ArrayList<>();
 
-        while (matcher.find()) {
+        while (scanner.find()) {
 
-            execStarts.add(matcher.start(0));
-            execEnds.add(matcher.end(0));
+            scanner.appendText(sb, lastIndex, scanner.start());
+            lastIndex = scanner.end();
 
-            boolean evalNow = matcher.group(1) != null;
-            String expr = matcher.group(2);
+            boolean evalNow = scanner.isEvalNow();
+            String expr = scanner.expr();
 
             try {
-                String stringRes = evalExpr(expr, evalMap, evalNow, relPath, classLoader);
-                results.add(stringRes);
+                String stringRes = evalExpr(expr, evalMap, evalNow, relPath, classLoader, evaluator);
+                sb.append(stringRes);
             } catch (ExprNotFoundException ex) {
                 String msg;
                 if (ignoreEvalErrors){
                     msg = "Couldn't find expression among precalculated ones, will ignore it.\n";
-                    results.add("$eval{"+expr+"}");
+                    sb.append("$eval{"+expr+"}");
                 }  else {
                     msg = "Couldn't find expression among precalculated ones!\n";
                 }
@@ -1026,7 +1179,7 @@ public final class Josmans {
             } catch (Exception ex) {
                 String msg;
                 if (ignoreEvalErrors){
-                    results.add("$eval{"+expr+"}");
+                    sb.append("$eval{"+expr+"}");
                     msg = "Couldn't eval expression, will ignore it.";                    
                 } else {
                     msg = "Error while evaluating expression!";                                       
@@ -1040,6 +1193,7 @@ public final class Josmans {
             }
 
         }
+        scanner.appendText(sb, lastIndex, text.length());
 
         if (!missingExprs.isEmpty()) {
             String msg = "Found missing expression(s)! See log for details.";
@@ -1062,25 +1216,7 @@ public final class Josmans {
             
         }
 
-        StringBuilder sb = new StringBuilder();
-
-        int lastIndex = 0;
-        for (int k = 0; k < execStarts.size(); k++) {
-            int start = execStarts.get(k);
-            int end = execEnds.get(k);
-            String res = results.get(k);
-
-            sb.append(text.substring(lastIndex, start));
-            sb.append(res);
-            lastIndex = end;
-        }
-        if (lastIndex < text.length()) {
-            sb.append(text.substring(lastIndex, text.length()));
-        }
-
-        return sb.toString()
-                 .replace("$\'evalNow{", "$evalNow{")
-                 .replace("$\'eval{", "$eval{");        
+        return sb.toString();
     }
 
     /**
@@ -1091,7 +1227,7 @@ public final class Josmans {
      * @param relPath
      * 
      */
-    private static String reportExpr(String expr, String relPath) {
+    static String reportExpr(String expr, String relPath) {
         return "     Expression: " + expr + "\n"
              + "        in file: " + relPath + "\n";
     }
@@ -1126,56 +1262,34 @@ public final class Josmans {
             boolean evalNow,
             String relPath,
             ClassLoader classLoader) {
+        return evalExpr(expr, evals, evalNow, relPath, classLoader, new ExprEvaluator(0, 1));
+    }
+
+    /**
+     * Like {@link #evalExpr(String, Map, boolean, String, ClassLoader)},
+     * evaluating $evalNow expressions with {@code evaluator}
+     * 
+     * @throws ExprNotFoundException
+     * 
+     * @since 0.8.0
+     */
+    static String evalExpr(
+            String expr,
+            Map<String, String> evals,
+            boolean evalNow,
+            String relPath,
+            ClassLoader classLoader,
+            ExprEvaluator evaluator) {
 
         checkNotNull(expr);
         checkNotNull(evals);
         checkNotNull(classLoader);
+        checkNotNull(evaluator);
 
-        String[] names = expr.split("\\.");
+        ExprCache.check(expr);
 
-        checkExpr(expr);        
-        
-        Matcher matcher = EXPR_PATTERN.matcher(expr);
-
-        matcher.find();
-        
         if (evalNow) {
-            String methodOrFieldName;
-            if (matcher.group(1) == null) { // field
-                methodOrFieldName = names[names.length - 1];
-            } else { // method
-                methodOrFieldName = names[names.length - 1].substring(0, names[names.length - 1].indexOf('('));
-            }
-
-            String className = names[0];
-            for (int j = 1; j < names.length - 1; j++) {
-                className += "." + names[j];
-            }
-            Class clazz;
-            try {
-                clazz = Class.forName(className, true, classLoader);
-            } catch (Exception ex) {
-                throw new JosmanException("Error while loading class for calling method " + expr, ex);
-            }
-            String stringRes;
-            try {
-
-                java.lang.reflect.Method method;
-                try {
-                    method = clazz.getMethod(methodOrFieldName);
-                    if (!Modifier.isStatic(method.getModifiers())) {
-                        throw new JosmanException("Non-static methods are not supported!");
-                    }
-                    return String.valueOf(method.invoke(null));
-                } catch (NoSuchMethodException e) {
-                    Field field = clazz.getField(methodOrFieldName);
-                    return String.valueOf(field.get(null));
-                }
-
-            } catch (Exception ex) {
-                throw new JosmanException("Error processing " + expr, ex);
-            }
-
+            return evaluator.eval(expr, relPath, classLoader);
         } else { // take from map
             if (!evals.containsKey(expr)) {
                 throw new ExprNotFoundException(
@@ -1218,7 +1332,9 @@ public final class Josmans {
     }
 
     /**
-     * Writes eval map to a CSV file, creating parent directories if needed.
+     * Writes eval map to a UTF-8 CSV file sorted by expression, creating parent
+     * directories if needed. Also writes the index of the map next to it, see
+     * {@link EvalIndex}.
      *
      * @throws JosmanIoException
      * 
@@ -1230,8 +1346,6 @@ public final class Josmans {
 
         LOG.info("Writing file " + file.getAbsolutePath() + "   ...");
 
-        FileWriter fileWriter = null;
-
         if (!file.exists()) {
             if (!file.getParentFile()
                      .exists()) {
@@ -1246,42 +1360,35 @@ public final class Josmans {
             }
         }
 
-        CSVPrinter csvFilePrinter = null;
+        SortedMap<String, String> sorted = new TreeMap<>(evals);
 
-        try {
+        try (Writer fileWriter = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8);
+                CSVPrinter csvFilePrinter = new CSVPrinter(fileWriter, EVAL_CSV_FORMAT)) {
 
-            fileWriter = new FileWriter(file);
-            csvFilePrinter = new CSVPrinter(fileWriter, EVAL_CSV_FORMAT);
             csvFilePrinter.printRecord(EVAL_CSV_FILE_HEADER);
 
-            for (String expr : evals.keySet()) {
+            for (String expr : sorted.keySet()) {
                 List<String> evalRecord = new ArrayList<>();                
                 checkExpr(expr);
                 evalRecord.add(expr);
-                String val = evals.get(expr);
+                String val = sorted.get(expr);
                 checkNotNull(val);
                 evalRecord.add(val);
                 csvFilePrinter.printRecord(evalRecord);
             }
 
-            LOG.info("CSV file created successfully: " + file.getAbsolutePath());
-
         } catch (IOException ex) {
             throw new JosmanIoException("Error while writing CSV file " + file.getAbsolutePath(), ex);
-        } finally {
-            try {
-                fileWriter.flush();
-                fileWriter.close();
-                csvFilePrinter.close();
-            } catch (IOException e) {
-                LOG.log(Level.SEVERE,
-                        "Error while flushing/closing fileWriter/csvPrinter for file " + file.getAbsolutePath(), e);
-                e.printStackTrace();
-            }
         }
+        LOG.info("CSV file created successfully: " + file.getAbsolutePath());
+
+        EvalIndex.write(sorted, file);
     }
 
     /**
+     * Loads a UTF-8 CSV eval map. If an up-to-date index was written next to
+     * it, returns a read-only map backed by the index instead of parsing the
+     * CSV, see {@link EvalIndex}
      *
      * @throws JosmanNotFoundException
      * @throws JosmanIoException
@@ -1289,26 +1396,28 @@ public final class Josmans {
      * @since 0.8.0
      */
     public static Map<String, String> loadEvalMap(File file) {
+        checkNotNull(file);
 
-        LOG.info("Reading file " + file.getAbsolutePath() + " ...");
+        EvalIndex index = EvalIndex.open(file);
+        if (index != null) {
+            LOG.log(Level.FINE, "Using eval index of {0}", file.getAbsolutePath());
+            return index;
+        }
 
-        HashMap<String, String> ret = new HashMap<>();
+        return readEvalCsv(file);
+    }
 
-        Reader in;
-        try {
-            in = new FileReader(file);
-            Iterable<CSVRecord> records = Josmans.EVAL_CSV_FORMAT.parse(in);
-            boolean header = true;
-            for (CSVRecord record : records) {
-                if (header) {
-                    header = false;
-                } else {
-                    String expr = record.get(0);
-                    String eval = record.get(1);
-                    ret.put(expr, eval);
-                }
-            }
-            return ret;
+    /**
+     * Parses a UTF-8 CSV eval map, ignoring its index.
+     *
+     * @throws JosmanNotFoundException
+     * @throws JosmanIoException
+     */
+    private static Map<String, String> readEvalCsv(File file) {
+        LOG.info("Reading file " + file.getAbsolutePath() + " ...");
+
+        try (Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return loadEvalMap(in);
         } catch (FileNotFoundException ex) {
             throw new JosmanNotFoundException("Couldn't find $eval map at " + file.getAbsolutePath() + " ", ex);
         } catch (IOException e) {
@@ -1316,5 +1425,26 @@ public final class Josmans {
         }
     }
 
+    /**
+     * Parses an eval map, without closing the reader.
+     * 
+     * @since 0.8.0
+     */
+    static Map<String, String> loadEvalMap(Reader in) throws IOException {
+        HashMap<String, String> ret = new HashMap<>();
+        Iterable<CSVRecord> records = Josmans.EVAL_CSV_FORMAT.parse(in);
+        boolean header = true;
+        for (CSVRecord record : records) {
+            if (header) {
+                header = false;
+            } else {
+                String expr = record.get(0);
+                String eval = record.get(1);
+                ret.put(expr, eval);
+            }
+        }
+        return ret;
+    }
+
     
 }
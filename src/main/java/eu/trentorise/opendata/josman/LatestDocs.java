@@ -0,0 +1,139 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Makes the 'latest' docs directory out of a version directory, according to
+ * a {@link LatestMode}. The latest directory must not exist.
+ *
+ * @since 0.8.0
+ */
+final class LatestDocs {
+
+    private static final Logger LOG = Logger.getLogger(LatestDocs.class.getName());
+
+    private LatestDocs() {
+    }
+
+    /**
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    static void create(LatestMode mode, File versionDir, File latestDir) throws IOException {
+        checkNotNull(mode);
+        checkNotNull(versionDir);
+        checkNotNull(latestDir);
+
+        switch (mode) {
+        case symlink:
+            symlink(versionDir, latestDir);
+            break;
+        case hardlink:
+            hardlink(versionDir, latestDir);
+            break;
+        case redirect:
+            redirect(versionDir, latestDir, versionDir.getName(), "");
+            break;
+        case copy:
+            FileUtils.copyDirectory(versionDir, latestDir);
+            break;
+        default:
+            throw new IllegalArgumentException("Unrecognized latest mode: " + mode);
+        }
+    }
+
+    private static void symlink(File versionDir, File latestDir) throws IOException {
+        Path target = latestDir.getParentFile()
+                               .toPath()
+                               .relativize(versionDir.toPath());
+        try {
+            Files.createSymbolicLink(latestDir.toPath(), target);
+        } catch (UnsupportedOperationException | FileSystemException ex) {
+            LOG.log(Level.WARNING, "Couldn''t create symbolic link {0}, copying files instead. Error was: {1}",
+                    new Object[] { latestDir.getAbsolutePath(), ex.toString() });
+            FileUtils.copyDirectory(versionDir, latestDir);
+        }
+    }
+
+    private static void hardlink(File sourceDir, File targetDir) throws IOException {
+        if (!targetDir.mkdirs() && !targetDir.isDirectory()) {
+            throw new IOException("Couldn't create directory " + targetDir.getAbsolutePath());
+        }
+        File[] files = sourceDir.listFiles();
+        if (files == null) {
+            throw new IOException("Couldn't list files in " + sourceDir.getAbsolutePath());
+        }
+        for (File file : files) {
+            File target = new File(targetDir, file.getName());
+            if (file.isDirectory()) {
+                hardlink(file, target);
+            } else {
+                try {
+                    Files.createLink(target.toPath(), file.toPath());
+                } catch (UnsupportedOperationException | FileSystemException ex) {
+                    // i.e. different file stores
+                    LOG.log(Level.FINE, "Couldn't hard link, copying {0}", file.getAbsolutePath());
+                    FileUtils.copyFile(file, target);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes a redirect page for each html page found in {@code sourceDir}.
+     *
+     * @param versionName
+     *            name of the version dir, which is a sibling of latest dir
+     * @param relDir
+     *            path of sourceDir relative to the version dir, either empty
+     *            or ending with a slash
+     */
+    private static void redirect(File sourceDir, File targetDir, String versionName, String relDir)
+            throws IOException {
+        File[] files = sourceDir.listFiles();
+        if (files == null) {
+            throw new IOException("Couldn't list files in " + sourceDir.getAbsolutePath());
+        }
+        for (File file : files) {
+            String relPath = relDir + file.getName();
+            if (file.isDirectory()) {
+                redirect(file, new File(targetDir, file.getName()), versionName, relPath + "/");
+            } else if (file.getName()
+                           .endsWith(".html")) {
+                FileUtils.write(new File(targetDir, file.getName()), redirectPage(versionName, relPath), "UTF-8");
+            }
+        }
+    }
+
+    /**
+     * Returns a page redirecting to file {@code relPath} in version dir.
+     */
+    static String redirectPage(String versionName, String relPath) {
+        int depth = relPath.split("/").length;
+        StringBuilder url = new StringBuilder();
+        for (int i = 0; i < depth; i++) {
+            url.append("../");
+        }
+        url.append(versionName)
+           .append('/')
+           .append(relPath);
+        String escaped = Josmans.escapeHtml(url.toString());
+        return "<!DOCTYPE html>\n<html><head><meta charset=\"UTF-8\">"
+                + "<meta http-equiv=\"refresh\" content=\"0; url=" + escaped + "\">"
+                + "<link rel=\"canonical\" href=\"" + escaped + "\">"
+                + "<title>Redirecting...</title></head>"
+                + "<body><a href=\"" + escaped + "\">" + escaped + "</a></body></html>\n";
+    }
+}
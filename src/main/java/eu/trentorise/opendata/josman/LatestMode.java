@@ -0,0 +1,42 @@
+package eu.trentorise.opendata.josman;
+
+/**
+ * How the 'latest' docs directory is made from the directory of the latest
+ * version.
+ * 
+ * @since 0.8.0
+ */
+public enum LatestMode {
+
+    /**
+     * Default: full copy of the version directory. Works everywhere, but
+     * doubles output size.
+     * 
+     * @since 0.8.0
+     */
+    copy,
+
+    /**
+     * 'latest' is a relative symbolic link to the version directory. Falls
+     * back to copy if the filesystem doesn't support symbolic links.
+     * 
+     * @since 0.8.0
+     */
+    symlink,
+
+    /**
+     * 'latest' is a tree of directories whose files are hard links to the
+     * ones of the version directory. Files which can't be linked are copied.
+     * 
+     * @since 0.8.0
+     */
+    hardlink,
+
+    /**
+     * 'latest' only holds small html pages redirecting to the same page in
+     * the version directory, for static hosts not following links.
+     * 
+     * @since 0.8.0
+     */
+    redirect
+}
@@ -0,0 +1,235 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+import static eu.trentorise.opendata.josman.JosmanProject.DOCS_FOLDER;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.vladsch.flexmark.ast.Document;
+import com.vladsch.flexmark.ast.Heading;
+import com.vladsch.flexmark.ast.Image;
+import com.vladsch.flexmark.ast.ImageRef;
+import com.vladsch.flexmark.ast.Node;
+import com.vladsch.flexmark.ast.util.TextCollectingVisitor;
+import com.vladsch.flexmark.html.AttributeProvider;
+import com.vladsch.flexmark.html.AttributeProviderFactory;
+import com.vladsch.flexmark.html.IndependentAttributeProviderFactory;
+import com.vladsch.flexmark.html.renderer.AttributablePart;
+import com.vladsch.flexmark.html.renderer.NodeRendererContext;
+import com.vladsch.flexmark.util.html.Attributes;
+import com.vladsch.flexmark.util.options.DataKey;
+
+import eu.trentorise.opendata.commons.SemVersion;
+import eu.trentorise.opendata.commons.TodUtils;
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Rewrites links and image paths of md pages so they work in the website:
+ * 
+ * <ul>
+ * <li>{@code docs/} becomes {@code major.minor/}</li>
+ * <li>{@code src} links point to the repository release</li>
+ * <li>wiki, issues and milestones links point to the repository</li>
+ * <li>{@code .md} links become {@code .html}</li>
+ * </ul>
+ * 
+ * Rewriting happens while flexmark renders the page, see {@link #factory()}.
+ * Meanwhile links inside level 3 headings are collected for the sidebar, see
+ * {@link #headingLinks(Node)}
+ * 
+ * @since 0.8.0
+ */
+@Immutable
+final class LinkRewriter {
+
+    private static final Logger LOG = Logger.getLogger(LinkRewriter.class.getName());
+
+    /**
+     * Level of headings shown in the sidebar
+     */
+    private static final int SIDEBAR_HEADING_LEVEL = 3;
+
+    /**
+     * Links found in sidebar headings, stored in the document being rendered.
+     */
+    private static final DataKey<List<Sidebar.HeadingLink>> HEADING_LINKS = new DataKey<>("JOSMAN_HEADING_LINKS",
+            (List<Sidebar.HeadingLink>) null);
+
+    private final SemVersion version;
+
+    private final String prependedPath;
+
+    private final String organization;
+
+    private final String repoName;
+
+    private final boolean failOnError;
+
+    /**
+     * @param prependedPath
+     *            see {@link Josmans#prependedPath(String)}
+     * @since 0.8.0
+     */
+    LinkRewriter(SemVersion version, String prependedPath, String organization, String repoName,
+            boolean failOnError) {
+        checkNotNull(version);
+        checkNotNull(prependedPath);
+        checkNotEmpty(organization, "Invalid organization!");
+        checkNotEmpty(repoName, "Invalid repo name!");
+        this.version = version;
+        this.prependedPath = prependedPath;
+        this.organization = organization;
+        this.repoName = repoName;
+        this.failOnError = failOnError;
+    }
+
+    /**
+     * Returns the rewritten {@code href} of a link. Rewriting an already
+     * rewritten link leaves it unchanged.
+     * 
+     * @throws JosmanException
+     *             if href is invalid and failOnError is set
+     * 
+     * @since 0.8.0
+     */
+    String fixLink(String href) {
+        checkNotNull(href);
+
+        URI uri;
+        try {
+            String slashPath = href.replace("\\", "/");
+            uri = new URI(slashPath);
+        } catch (Exception ex) {
+            String msg = "Invalid path :" + href + "\n prependedPath=" + prependedPath + "\nversion=" + version;
+            if (failOnError) {
+                throw new JosmanException(msg, ex);
+            } else {
+                LOG.warning(msg + "\n Reason:" + ex.getMessage());
+                return href;
+            }
+        }
+
+        if (href.startsWith(prependedPath + "src")) {
+            return href.replace(prependedPath + "src",
+                    Josmans.repoRelease(organization, repoName, version) + "/src");
+        }
+
+        if (TodUtils.removeTrailingSlash(href)
+                    .equals(DOCS_FOLDER)) {
+            return Josmans.majorMinor(version) + "/index.html";
+        }
+
+        String ret = href;
+        if (ret.startsWith(DOCS_FOLDER + "/")) {
+            ret = Josmans.majorMinor(version) + ret.substring(DOCS_FOLDER.length());
+            // note we don't return now, we might have an .md to process
+        }
+
+        if (uri.getPath() != null && TodUtils.removeTrailingSlash(uri.getPath())
+                                             .endsWith(".md")) {
+            return Josmans.htmlizePath(ret);
+        }
+
+        if (ret.startsWith(prependedPath + "../../wiki")) {
+            return ret.replace(prependedPath + "../../wiki", Josmans.repoWiki(organization, repoName));
+        }
+
+        if (ret.startsWith(prependedPath + "../../issues")) {
+            return ret.replace(prependedPath + "../../issues", Josmans.repoIssues(organization, repoName));
+        }
+
+        if (ret.startsWith(prependedPath + "../../milestones")) {
+            return ret.replace(prependedPath + "../../milestones", Josmans.repoMilestones(organization, repoName));
+        }
+
+        return ret;
+    }
+
+    /**
+     * Returns the rewritten {@code src} of an image.
+     * 
+     * @since 0.8.0
+     */
+    String fixImageSrc(String src) {
+        checkNotNull(src);
+        if (src.startsWith(DOCS_FOLDER + "/")) {
+            return Josmans.majorMinor(version) + src.substring(DOCS_FOLDER.length());
+        } else {
+            return src;
+        }
+    }
+
+    /**
+     * Records the link if it is inside a sidebar heading
+     */
+    private static void collectHeadingLink(Node node, String href) {
+        Node parent = node.getParent();
+        while (parent != null && !(parent instanceof Heading)) {
+            parent = parent.getParent();
+        }
+        if (parent != null && ((Heading) parent).getLevel() == SIDEBAR_HEADING_LEVEL) {
+            Document document = node.getDocument();
+            List<Sidebar.HeadingLink> links = document.get(HEADING_LINKS);
+            if (links == null) {
+                links = new ArrayList<>();
+                document.set(HEADING_LINKS, links);
+            }
+            links.add(new Sidebar.HeadingLink(href, new TextCollectingVisitor().collectAndGetText(node)));
+        }
+    }
+
+    /**
+     * Returns the links inside level 3 headings found while rendering
+     * {@code document}, in document order.
+     * 
+     * @since 0.8.0
+     */
+    static List<Sidebar.HeadingLink> headingLinks(Node document) {
+        List<Sidebar.HeadingLink> ret = document.getDocument()
+                                                .get(HEADING_LINKS);
+        if (ret == null) {
+            return Collections.emptyList();
+        } else {
+            return ret;
+        }
+    }
+
+    /**
+     * Returns a factory to plug into a flexmark
+     * {@link com.vladsch.flexmark.html.HtmlRenderer.Builder#attributeProviderFactory(AttributeProviderFactory)
+     * HtmlRenderer}
+     * 
+     * @since 0.8.0
+     */
+    AttributeProviderFactory factory() {
+        final AttributeProvider provider = new AttributeProvider() {
+            @Override
+            public void setAttributes(Node node, AttributablePart part, Attributes attributes) {
+                if (node instanceof Image || node instanceof ImageRef) {
+                    if (attributes.contains("src")) {
+                        attributes.replaceValue("src", fixImageSrc(attributes.getValue("src")));
+                    }
+                } else if (attributes.contains("href")) {
+                    String href = fixLink(attributes.getValue("href"));
+                    attributes.replaceValue("href", href);
+                    collectHeadingLink(node, href);
+                }
+            }
+        };
+
+        return new IndependentAttributeProviderFactory() {
+            @Override
+            public AttributeProvider create(NodeRendererContext context) {
+                // provider is stateless, so it can be shared among renderings
+                return provider;
+            }
+        };
+    }
+}
@@ -0,0 +1,337 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Content addressed store of static outputs. Each file added is hashed, and
+ * if another file with the same content was already added the new one is
+ * replaced by a hard link to it, so i.e. javadoc files which didn't change
+ * among versions take disk space only once. When publishing with git
+ * identical blobs are stored once anyway.
+ *
+ * Since linked files share their content, a file which may have been added
+ * must never be overwritten in place: writes must go through this class,
+ * which removes the old file before writing the new one.
+ *
+ * If linking is disabled or not supported by the filesystem, files are just
+ * written. Thread safe.
+ *
+ * @since 0.8.0
+ */
+final class OutputStore {
+
+    private static final Logger LOG = Logger.getLogger(OutputStore.class.getName());
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    /**
+     * First file added with a given content, plus what's needed to tell
+     * whether it was later replaced.
+     */
+    private static final class Original {
+        final File file;
+        final long length;
+        final long lastModified;
+        @Nullable
+        final Object fileKey;
+
+        Original(File file, BasicFileAttributes attrs) {
+            this.file = file;
+            this.length = attrs.size();
+            this.lastModified = attrs.lastModifiedTime()
+                                     .toMillis();
+            this.fileKey = attrs.fileKey();
+        }
+
+        boolean isSameAs(Original other) {
+            return length == other.length
+                    && lastModified == other.lastModified
+                    && (fileKey == null || fileKey.equals(other.fileKey));
+        }
+    }
+
+    private final ConcurrentMap<String, Original> originals = new ConcurrentHashMap<>();
+
+    private volatile boolean link;
+
+    private final AtomicInteger linked = new AtomicInteger();
+
+    private final AtomicLong savedBytes = new AtomicLong();
+
+    /**
+     * @param link
+     *            if false files are never linked
+     *
+     * @since 0.8.0
+     */
+    OutputStore(boolean link) {
+        this.link = link;
+    }
+
+    /**
+     * Registers a file just written. If a file with same content was added
+     * before, {@code file} is replaced by a link to it. Files kept from
+     * previous build are not added, so they don't need to be hashed again.
+     *
+     * @throws IOException
+     *             if file can't be read
+     *
+     * @since 0.8.0
+     */
+    void add(File file) throws IOException {
+        checkNotNull(file);
+        if (!link) {
+            return;
+        }
+        BasicFileAttributes attrs = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+        if (attrs.size() == 0) {
+            return;
+        }
+        String key = hash(file) + "-" + attrs.size();
+        Original candidate = new Original(file, attrs);
+        Original original = originals.putIfAbsent(key, candidate);
+        if (original == null || original.file.equals(file)) {
+            if (original != null) {
+                originals.replace(key, original, candidate);
+            }
+            return;
+        }
+        if (candidate.fileKey != null && candidate.fileKey.equals(original.fileKey)) {
+            // already linked, i.e. by previous build
+            return;
+        }
+
+        BasicFileAttributes originalAttrs;
+        try {
+            originalAttrs = Files.readAttributes(original.file.toPath(), BasicFileAttributes.class);
+        } catch (IOException ex) {
+            originalAttrs = null;
+        }
+        if (originalAttrs == null || !original.isSameAs(new Original(original.file, originalAttrs))) {
+            // original was deleted or rewritten with another content
+            originals.replace(key, original, candidate);
+            return;
+        }
+        if (link(file, original.file)) {
+            linked.incrementAndGet();
+            savedBytes.addAndGet(attrs.size());
+        }
+    }
+
+    /**
+     * Replaces {@code file} with a hard link to {@code original}, so that
+     * readers always find either the copy or the link. Returns false if the
+     * link couldn't be made.
+     */
+    private boolean link(File file, File original) {
+        File tmp = new File(file.getParentFile(), "." + file.getName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createLink(tmp.toPath(), original.toPath());
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } catch (UnsupportedOperationException ex) {
+            LOG.log(Level.WARNING, "Hard links are not supported, won't deduplicate outputs.");
+            link = false;
+        } catch (FileSystemException ex) {
+            // i.e. different file stores or too many links
+            LOG.log(Level.FINE, "Couldn''t link {0} to {1}: {2}",
+                    new Object[] { file.getAbsolutePath(), original.getAbsolutePath(), ex.toString() });
+        } catch (IOException ex) {
+            LOG.log(Level.FINE, "Couldn''t link " + file.getAbsolutePath(), ex);
+        }
+        if (tmp.exists() && !tmp.delete()) {
+            tmp.deleteOnExit();
+        }
+        return false;
+    }
+
+    /**
+     * Removes {@code target} if it exists, so writing it won't touch files
+     * linked to it.
+     *
+     * @since 0.8.0
+     */
+    static void unlink(File target) throws IOException {
+        Files.deleteIfExists(target.toPath());
+    }
+
+    /**
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    void write(byte[] bytes, File target) throws IOException {
+        unlink(target);
+        FileUtils.writeByteArrayToFile(target, bytes);
+        add(target);
+    }
+
+    /**
+     * Copies the stream to {@code target}, closing the stream.
+     *
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    void copy(InputStream source, File target) throws IOException {
+        unlink(target);
+        FileUtils.copyInputStreamToFile(source, target);
+        add(target);
+    }
+
+    /**
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    void copyFile(File source, File target) throws IOException {
+        unlink(target);
+        FileUtils.copyFile(source, target);
+        add(target);
+    }
+
+    /**
+     * Copies all files in {@code sourceDir} into {@code targetDir}, which may
+     * already exist.
+     *
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    void copyDirectory(File sourceDir, File targetDir) throws IOException {
+        copyDirectoryIfChanged(sourceDir, targetDir, null);
+    }
+
+    /**
+     * Like {@link #copyFile(File, File)}, but if {@code manifest} says
+     * {@code target} was copied by previous build from same source path, size
+     * and modification time, {@code target} is kept without reading it.
+     *
+     * @param manifest
+     *            if null the file is always copied
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    void copyFileIfChanged(File source, File target, @Nullable BuildManifest manifest) throws IOException {
+        if (manifest == null) {
+            copyFile(source, target);
+            return;
+        }
+        String fingerprint = new Fingerprint().put(source.getAbsolutePath())
+                                              .put(String.valueOf(source.length()))
+                                              .put(String.valueOf(source.lastModified()))
+                                              .hex();
+        if (manifest.isUpToDate(target, fingerprint)) {
+            LOG.log(Level.FINE, "Skipping unchanged file {0}", target.getAbsolutePath());
+        } else {
+            copyFile(source, target);
+            manifest.record(target, fingerprint);
+        }
+    }
+
+    /**
+     * Like {@link #copyDirectory(File, File)}, skipping files which are up to
+     * date according to {@link #copyFileIfChanged(File, File, BuildManifest)}
+     *
+     * @param manifest
+     *            if null all files are copied
+     * @throws IOException
+     *             on error
+     *
+     * @since 0.8.0
+     */
+    void copyDirectoryIfChanged(File sourceDir, File targetDir, @Nullable BuildManifest manifest)
+            throws IOException {
+        if (!sourceDir.isDirectory()) {
+            throw new IOException("Source directory doesn't exist: " + sourceDir.getAbsolutePath());
+        }
+        for (File file : FileUtils.listFiles(sourceDir, null, true)) {
+            String relPath = sourceDir.toURI()
+                                      .relativize(file.toURI())
+                                      .getPath();
+            copyFileIfChanged(file, new File(targetDir, relPath), manifest);
+        }
+    }
+
+    /**
+     * Returns the number of files replaced by links so far.
+     *
+     * @since 0.8.0
+     */
+    int getLinked() {
+        return linked.get();
+    }
+
+    /**
+     * Returns the bytes saved by linking so far.
+     *
+     * @since 0.8.0
+     */
+    long getSavedBytes() {
+        return savedBytes.get();
+    }
+
+    private static String hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new JosmanException("Couldn't find SHA-1 digest!", ex);
+        }
+        byte[] buffer = BUFFERS.get();
+        try (InputStream in = new FileInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest.digest()) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
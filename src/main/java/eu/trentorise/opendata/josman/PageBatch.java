@@ -0,0 +1,113 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * A batch of independent page tasks, i.e. the pages of a version. Tasks may
+ * run in parallel on a pool, but failures are reported as if they were run
+ * one after the other: {@link #await()} rethrows the error of the first
+ * submitted task that failed.
+ *
+ * Once a task fails, tasks not yet started are skipped.
+ *
+ * @since 0.8.0
+ */
+final class PageBatch {
+
+    @Nullable
+    private final ExecutorService executor;
+
+    private final List<Future<?>> futures;
+
+    private final AtomicBoolean failed;
+
+    /**
+     * @param executor
+     *            if null tasks are run immediately in the calling thread
+     *
+     * @since 0.8.0
+     */
+    PageBatch(@Nullable ExecutorService executor) {
+        this.executor = executor;
+        this.futures = new ArrayList<>();
+        this.failed = new AtomicBoolean(false);
+    }
+
+    /**
+     * Submits a task. If batch has no executor, task is executed immediately
+     * and any exception is thrown right away.
+     *
+     * @since 0.8.0
+     */
+    void submit(final Runnable task) {
+        checkNotNull(task);
+
+        if (executor == null) {
+            task.run();
+            return;
+        }
+
+        futures.add(executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (failed.get()) {
+                    return;
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException | Error ex) {
+                    failed.set(true);
+                    throw ex;
+                }
+            }
+        }));
+    }
+
+    /**
+     * Waits for all submitted tasks to complete.
+     *
+     * @throws RuntimeException
+     *             the exception raised by the first submitted task that
+     *             failed, as is.
+     *
+     * @since 0.8.0
+     */
+    void await() {
+        Throwable firstError = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException ex) {
+                if (firstError == null) {
+                    firstError = ex.getCause();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new JosmanException("Interrupted while waiting for pages to be processed!", ex);
+            }
+        }
+        futures.clear();
+
+        if (firstError instanceof RuntimeException) {
+            throw (RuntimeException) firstError;
+        }
+        if (firstError instanceof Error) {
+            throw (Error) firstError;
+        }
+        if (firstError != null) {
+            throw new JosmanException(firstError);
+        }
+    }
+}
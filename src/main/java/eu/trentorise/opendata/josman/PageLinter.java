@@ -0,0 +1,341 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.concurrent.Immutable;
+
+import eu.trentorise.opendata.josman.exceptions.ExprNotFoundException;
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * Checks md sources for leftovers before rendering and reports them with
+ * file:line positions:
+ * 
+ * <ul>
+ * <li>TODO markers (only if enabled)</li>
+ * <li><code>${key}</code> placeholders not resolved by variables, outside of
+ * code spans, fenced and indented code blocks and html blocks</li>
+ * <li><code>$eval{expr}</code> expressions missing from the eval map</li>
+ * </ul>
+ * 
+ * @since 0.8.0
+ */
+@Immutable
+final class PageLinter {
+
+    private static final Logger LOG = Logger.getLogger(PageLinter.class.getName());
+
+    private static final Pattern TODO_PATTERN = Pattern.compile("todo", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Escaped <code>$'{key}</code> placeholders are not matched
+     */
+    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile("\\$\\{([^{}\\s]+)\\}");
+
+    private static final Pattern FENCE_PATTERN = Pattern.compile("^ {0,3}(```|~~~)");
+
+    private static final Pattern CODE_SPAN_PATTERN = Pattern.compile("`[^`]*`");
+
+    private static final Pattern LIST_ITEM_PATTERN = Pattern.compile("^ {0,3}([-+*]|\\d{1,9}[.)])(\\s|$)");
+
+    private static final Pattern HEADING_PATTERN = Pattern.compile("^ {0,3}#{1,6}(\\s|$)");
+
+    /**
+     * Html blocks whose content is verbatim and may contain blank lines
+     */
+    private static final Pattern VERBATIM_START_PATTERN = Pattern.compile(
+            "^ {0,3}<(pre|script|style|textarea)(\\s|>|$)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern VERBATIM_END_PATTERN = Pattern.compile("</(pre|script|style|textarea)>",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * Html blocks ending at first blank line, which may also interrupt a
+     * paragraph
+     */
+    private static final Pattern HTML_BLOCK_PATTERN = Pattern.compile("^ {0,3}</?(address|article|aside|base|"
+            + "basefont|blockquote|body|caption|center|col|colgroup|dd|details|dialog|dir|div|dl|dt|fieldset|"
+            + "figcaption|figure|footer|form|frame|frameset|h[1-6]|head|header|hr|html|iframe|legend|li|link|main|"
+            + "menu|menuitem|nav|noframes|ol|optgroup|option|p|param|section|source|summary|table|tbody|td|tfoot|"
+            + "th|thead|title|tr|track|ul)(\\s|/?>|$)", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * A line with just an open or closing tag starts an html block only after
+     * a blank line
+     */
+    private static final Pattern HTML_TAG_LINE_PATTERN = Pattern.compile(
+            "^ {0,3}(<[a-zA-Z][a-zA-Z0-9-]*(\\s[^<>]*)?/?>|</[a-zA-Z][a-zA-Z0-9-]*\\s*>)\\s*$");
+
+    /**
+     * Markdown blocks whose content is not checked for placeholders
+     */
+    private enum Block {
+        NONE, FENCE, INDENTED_CODE, VERBATIM_HTML, HTML_COMMENT, HTML
+    }
+
+    /**
+     * Kinds of issues found by the linter.
+     * 
+     * @since 0.8.0
+     */
+    enum Kind {
+        TODO, UNRESOLVED_VARIABLE, MISSING_EVAL
+    }
+
+    /**
+     * An issue found in a source file.
+     * 
+     * @since 0.8.0
+     */
+    @Immutable
+    static final class Issue {
+        final Kind kind;
+        final String relPath;
+        final int line;
+        final String text;
+
+        Issue(Kind kind, String relPath, int line, String text) {
+            this.kind = checkNotNull(kind);
+            this.relPath = checkNotNull(relPath);
+            this.line = line;
+            this.text = checkNotNull(text);
+        }
+
+        @Override
+        public String toString() {
+            String what;
+            switch (kind) {
+            case TODO:
+                what = "found '" + text + "'";
+                break;
+            case UNRESOLVED_VARIABLE:
+                what = "unresolved variable " + text;
+                break;
+            case MISSING_EVAL:
+                what = "expression not found among precalculated ones: " + text;
+                break;
+            default:
+                what = text;
+            }
+            return relPath + ":" + line + ": " + what;
+        }
+    }
+
+    private final boolean todos;
+
+    /**
+     * @param todos
+     *            if true reports TODO markers
+     * 
+     * @since 0.8.0
+     */
+    PageLinter(boolean todos) {
+        this.todos = todos;
+    }
+
+    /**
+     * Returns issues found in {@code md}, in order of position.
+     * 
+     * @param vars
+     *            variables available to the page
+     * @param evals
+     *            precalculated expressions available to the page
+     * 
+     * @since 0.8.0
+     */
+    List<Issue> lint(String relPath, String md, VarExpander vars, Map<String, String> evals) {
+        checkNotEmpty(relPath, "Invalid relative path!");
+        checkNotNull(md);
+        checkNotNull(vars);
+        checkNotNull(evals);
+
+        List<Issue> ret = new ArrayList<>();
+
+        Matcher todoMatcher = TODO_PATTERN.matcher("");
+        Matcher placeholderMatcher = PLACEHOLDER_PATTERN.matcher("");
+        ExprScanner evalScanner = new ExprScanner("");
+        Matcher codeSpanMatcher = CODE_SPAN_PATTERN.matcher("");
+
+        Block block = Block.NONE;
+        boolean inParagraph = false;
+        boolean inList = false;
+        int lineNumber = 0;
+        int start = 0;
+        while (start <= md.length()) {
+            int end = md.indexOf('\n', start);
+            if (end == -1) {
+                end = md.length();
+            }
+            String line = md.substring(start, end);
+            lineNumber++;
+
+            if (todos && todoMatcher.reset(line)
+                                    .find()) {
+                ret.add(new Issue(Kind.TODO, relPath, lineNumber, todoMatcher.group()));
+            }
+
+            // variables and expressions get expanded also inside code
+            evalScanner.reset(line);
+            while (evalScanner.find()) {
+                String expr = evalScanner.expr();
+                if (!evalScanner.isEvalNow() && !evals.containsKey(expr)) {
+                    ret.add(new Issue(Kind.MISSING_EVAL, relPath, lineNumber, expr));
+                }
+            }
+
+            boolean blank = line.trim()
+                                .isEmpty();
+            boolean indented = indentation(line) >= (inList ? 8 : 4);
+
+            // first closes current block
+            boolean code = true;
+            switch (block) {
+            case FENCE:
+                if (FENCE_PATTERN.matcher(line)
+                                 .find()) {
+                    block = Block.NONE;
+                }
+                break;
+            case VERBATIM_HTML:
+                if (VERBATIM_END_PATTERN.matcher(line)
+                                        .find()) {
+                    block = Block.NONE;
+                }
+                break;
+            case HTML_COMMENT:
+                if (line.contains("-->")) {
+                    block = Block.NONE;
+                }
+                break;
+            case HTML:
+                if (blank) {
+                    block = Block.NONE;
+                }
+                break;
+            case INDENTED_CODE:
+                if (!blank && !indented) {
+                    block = Block.NONE;
+                    code = false;
+                }
+                break;
+            default:
+                code = false;
+            }
+
+            // then sees whether line opens a new one
+            if (!code) {
+                if (FENCE_PATTERN.matcher(line)
+                                 .find()) {
+                    block = Block.FENCE;
+                    code = true;
+                } else if (indented && !inParagraph && !blank) {
+                    block = Block.INDENTED_CODE;
+                    code = true;
+                } else if (VERBATIM_START_PATTERN.matcher(line)
+                                                 .find()) {
+                    block = VERBATIM_END_PATTERN.matcher(line)
+                                                .find() ? Block.NONE : Block.VERBATIM_HTML;
+                    code = true;
+                } else if (line.trim()
+                               .startsWith("<!--")
+                        && indentation(line) < 4) {
+                    block = line.indexOf("-->", line.indexOf("<!--") + 4) == -1 ? Block.HTML_COMMENT : Block.NONE;
+                    code = true;
+                } else if (HTML_BLOCK_PATTERN.matcher(line)
+                                             .find()
+                        || (!inParagraph && HTML_TAG_LINE_PATTERN.matcher(line)
+                                                                 .find())) {
+                    block = Block.HTML;
+                    code = true;
+                }
+            }
+
+            if (code) {
+                inParagraph = false;
+            } else if (blank) {
+                inParagraph = false;
+            } else {
+                if (LIST_ITEM_PATTERN.matcher(line)
+                                     .find()) {
+                    inList = true;
+                } else if (!inParagraph && indentation(line) == 0) {
+                    inList = false;
+                }
+                inParagraph = !HEADING_PATTERN.matcher(line)
+                                              .find();
+            }
+
+            if (!code && line.indexOf("${") != -1) {
+                // unresolved placeholders in code are usually on purpose, i.e. Maven snippets
+                String text = codeSpanMatcher.reset(line)
+                                             .replaceAll("");
+                placeholderMatcher.reset(text);
+                while (placeholderMatcher.find()) {
+                    if (!vars.isDefined(placeholderMatcher.group(1))) {
+                        ret.add(new Issue(Kind.UNRESOLVED_VARIABLE, relPath, lineNumber, placeholderMatcher.group()));
+                    }
+                }
+            }
+
+            start = end + 1;
+        }
+        return ret;
+    }
+
+    /**
+     * Returns the number of leading columns of whitespace, with tab stops of 4
+     */
+    private static int indentation(String line) {
+        int ret = 0;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == ' ') {
+                ret++;
+            } else if (c == '\t') {
+                ret += 4 - ret % 4;
+            } else {
+                break;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Logs issues found in {@code md}. TODOs are only warnings, other issues
+     * are errors if {@code failOnError} is set.
+     * 
+     * @throws ExprNotFoundException
+     *             if an $eval expression is missing and failOnError is set
+     * @throws JosmanException
+     *             if a variable is unresolved and failOnError is set
+     * 
+     * @since 0.8.0
+     */
+    void check(String relPath, String md, VarExpander vars, Map<String, String> evals, boolean failOnError) {
+        Issue firstError = null;
+        for (Issue issue : lint(relPath, md, vars, evals)) {
+            boolean error = failOnError && issue.kind != Kind.TODO;
+            LOG.log(error ? Level.SEVERE : Level.WARNING, issue.toString());
+            if (error && firstError == null) {
+                firstError = issue;
+            }
+        }
+        if (firstError != null) {
+            if (firstError.kind == Kind.MISSING_EVAL) {
+                throw new ExprNotFoundException("Found missing expression at " + firstError, firstError.text, relPath);
+            } else {
+                throw new JosmanException("Found issues in " + relPath + ", first one is " + firstError
+                        + "\n See log for details.");
+            }
+        }
+    }
+}
@@ -0,0 +1,348 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Reads single entries of a zip file served over http with Range requests,
+ * so only the central directory and the wanted entries are downloaded
+ * instead of the whole file. Zip64 archives are not supported.
+ *
+ * Not thread safe.
+ *
+ * @since 0.8.0
+ */
+final class RemoteZip {
+
+    /**
+     * Thrown when server doesn't honour range requests.
+     */
+    static class RangeNotSupportedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        RangeNotSupportedException(String msg) {
+            super(msg);
+        }
+    }
+
+    private static final Logger LOG = Logger.getLogger(RemoteZip.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int TIMEOUT_MILLIS = 20000;
+
+    private static final int EOCD_SIGNATURE = 0x06054b50;
+
+    private static final int CENTRAL_SIGNATURE = 0x02014b50;
+
+    private static final int LOCAL_SIGNATURE = 0x04034b50;
+
+    private static final int EOCD_SIZE = 22;
+
+    /**
+     * End of central directory record plus the longest possible comment
+     */
+    private static final int MAX_TAIL = EOCD_SIZE + 0xFFFF;
+
+    private static final int LOCAL_HEADER_SIZE = 30;
+
+    private final URL url;
+
+    @Nullable
+    private final Proxy proxy;
+
+    private final Map<String, String> headers;
+
+    /**
+     * Null until read
+     */
+    @Nullable
+    private ByteBuffer centralDirectory;
+
+    private int requests;
+
+    private long downloaded;
+
+    /**
+     * @since 0.8.0
+     */
+    RemoteZip(URL url) {
+        this(url, null, Collections.<String, String> emptyMap());
+    }
+
+    /**
+     * @param proxy
+     *            if null the default proxy selector is used
+     * @param headers
+     *            added to each request, i.e. Authorization
+     *
+     * @since 0.8.0
+     */
+    RemoteZip(URL url, @Nullable Proxy proxy, Map<String, String> headers) {
+        checkNotNull(url);
+        checkNotNull(headers);
+        this.url = url;
+        this.proxy = proxy;
+        this.headers = new HashMap<>(headers);
+    }
+
+    /**
+     * Returns the content of entry at {@code path}, or null if the zip
+     * doesn't have it.
+     *
+     * @throws FileNotFoundException
+     *             if the zip doesn't exist
+     * @throws RangeNotSupportedException
+     *             if server doesn't support range requests
+     * @throws IOException
+     *             on any other error, i.e. corrupted zip
+     *
+     * @since 0.8.0
+     */
+    @Nullable
+    byte[] read(String path) throws IOException {
+        checkNotNull(path);
+        if (centralDirectory == null) {
+            centralDirectory = readCentralDirectory();
+        }
+        byte[] name = path.getBytes(UTF8);
+        ByteBuffer cd = centralDirectory.duplicate()
+                                        .order(ByteOrder.LITTLE_ENDIAN);
+        while (cd.remaining() >= 46) {
+            int start = cd.position();
+            if (cd.getInt(start) != CENTRAL_SIGNATURE) {
+                throw new IOException("Corrupted central directory in " + url);
+            }
+            int method = cd.getShort(start + 10) & 0xFFFF;
+            long crc = cd.getInt(start + 16) & 0xFFFFFFFFL;
+            long compressedSize = cd.getInt(start + 20) & 0xFFFFFFFFL;
+            long size = cd.getInt(start + 24) & 0xFFFFFFFFL;
+            int nameLength = cd.getShort(start + 28) & 0xFFFF;
+            int extraLength = cd.getShort(start + 30) & 0xFFFF;
+            int commentLength = cd.getShort(start + 32) & 0xFFFF;
+            long localOffset = cd.getInt(start + 42) & 0xFFFFFFFFL;
+
+            if (nameLength == name.length && regionEquals(cd, start + 46, name)) {
+                return readEntry(path, method, crc, compressedSize, size, localOffset);
+            }
+            cd.position(start + 46 + nameLength + extraLength + commentLength);
+        }
+        return null;
+    }
+
+    /**
+     * Number of http requests made so far
+     *
+     * @since 0.8.0
+     */
+    int getRequests() {
+        return requests;
+    }
+
+    /**
+     * Number of bytes downloaded so far
+     *
+     * @since 0.8.0
+     */
+    long getDownloaded() {
+        return downloaded;
+    }
+
+    private static boolean regionEquals(ByteBuffer buf, int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (buf.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer readCentralDirectory() throws IOException {
+        Range tail = fetch("bytes=-" + MAX_TAIL);
+        ByteBuffer buf = ByteBuffer.wrap(tail.bytes)
+                                   .order(ByteOrder.LITTLE_ENDIAN);
+
+        int eocd = -1;
+        for (int i = tail.bytes.length - EOCD_SIZE; i >= 0; i--) {
+            if (buf.getInt(i) == EOCD_SIGNATURE) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd == -1) {
+            throw new IOException("Couldn't find end of central directory in " + url);
+        }
+        long cdSize = buf.getInt(eocd + 12) & 0xFFFFFFFFL;
+        long cdOffset = buf.getInt(eocd + 16) & 0xFFFFFFFFL;
+        if (cdSize == 0xFFFFFFFFL || cdOffset == 0xFFFFFFFFL) {
+            throw new IOException("Zip64 is not supported: " + url);
+        }
+
+        if (cdOffset >= tail.offset && cdOffset + cdSize <= tail.offset + eocd) {
+            // usually the whole central directory of small zips is already in the tail
+            int from = (int) (cdOffset - tail.offset);
+            return ByteBuffer.wrap(tail.bytes, from, (int) cdSize)
+                             .slice();
+        }
+        return ByteBuffer.wrap(fetch(cdOffset, cdSize).bytes);
+    }
+
+    private byte[] readEntry(String path, int method, long crc, long compressedSize, long size, long localOffset)
+            throws IOException {
+        if (size > Integer.MAX_VALUE || compressedSize > Integer.MAX_VALUE) {
+            throw new IOException("Entry " + path + " is too big: " + size + " bytes");
+        }
+
+        // local extra field may differ from the central one, so header is read first
+        ByteBuffer header = ByteBuffer.wrap(fetch(localOffset, LOCAL_HEADER_SIZE).bytes)
+                                      .order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != LOCAL_SIGNATURE) {
+            throw new IOException("Corrupted local header of entry " + path + " in " + url);
+        }
+        long dataOffset = localOffset + LOCAL_HEADER_SIZE + (header.getShort(26) & 0xFFFF)
+                + (header.getShort(28) & 0xFFFF);
+        byte[] data = compressedSize == 0 ? new byte[0] : fetch(dataOffset, compressedSize).bytes;
+
+        byte[] ret;
+        switch (method) {
+        case 0:
+            ret = data;
+            break;
+        case 8:
+            ret = inflate(data, (int) size);
+            break;
+        default:
+            throw new IOException("Unsupported compression method " + method + " for entry " + path);
+        }
+
+        CRC32 check = new CRC32();
+        check.update(ret);
+        if (check.getValue() != crc) {
+            throw new IOException("CRC mismatch for entry " + path + " in " + url);
+        }
+        return ret;
+    }
+
+    private static byte[] inflate(byte[] data, int size) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            // nowrap inflater may need an extra dummy byte
+            byte[] input = new byte[data.length + 1];
+            System.arraycopy(data, 0, input, 0, data.length);
+            inflater.setInput(input);
+            byte[] ret = new byte[size];
+            int read = 0;
+            while (read < size) {
+                int n = inflater.inflate(ret, read, size - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                read += n;
+            }
+            if (read != size) {
+                throw new IOException("Inflated " + read + " bytes, expected " + size);
+            }
+            return ret;
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupted compressed data", ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Bytes returned by a range request and their offset in the file
+     */
+    private static final class Range {
+        final long offset;
+        final byte[] bytes;
+
+        Range(long offset, byte[] bytes) {
+            this.offset = offset;
+            this.bytes = bytes;
+        }
+    }
+
+    private Range fetch(long offset, long length) throws IOException {
+        Range ret = fetch("bytes=" + offset + "-" + (offset + length - 1));
+        if (ret.offset != offset || ret.bytes.length != length) {
+            throw new IOException("Server returned wrong range for " + url);
+        }
+        return ret;
+    }
+
+    private Range fetch(String range) throws IOException {
+        LOG.log(Level.FINE, "Fetching {0} of {1}", new Object[] { range, url });
+        HttpURLConnection conn = (HttpURLConnection) (proxy == null ? url.openConnection()
+                : url.openConnection(proxy));
+        conn.setConnectTimeout(TIMEOUT_MILLIS);
+        conn.setReadTimeout(TIMEOUT_MILLIS);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        conn.setRequestProperty("Range", range);
+        conn.setRequestProperty("User-Agent", "josman-maven-plugin");
+        requests++;
+        try {
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new FileNotFoundException("Not found: " + url);
+            }
+            if (code != HttpURLConnection.HTTP_PARTIAL) {
+                // don't read the body, it might be the whole file
+                throw new RangeNotSupportedException("Server replied " + code + " to range request for " + url);
+            }
+            long offset = parseContentRangeStart(conn.getHeaderField("Content-Range"));
+            byte[] bytes;
+            try (InputStream in = conn.getInputStream()) {
+                bytes = IOUtils.toByteArray(in);
+            }
+            downloaded += bytes.length;
+            return new Range(offset, bytes);
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * Parses {@code bytes 100-199/1000}
+     */
+    private long parseContentRangeStart(@Nullable String contentRange) throws IOException {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            throw new RangeNotSupportedException("Missing or invalid Content-Range for " + url + ": " + contentRange);
+        }
+        int dash = contentRange.indexOf('-');
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash)
+                                              .trim());
+        } catch (Exception ex) {
+            throw new RangeNotSupportedException("Invalid Content-Range for " + url + ": " + contentRange);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RemoteZip " + url;
+    }
+}
@@ -0,0 +1,151 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * On-disk cache of rendered page parts, shared among builds and projects.
+ * Entries are immutable and addressed by a key which must fingerprint all
+ * the inputs of the rendering, so they never need to be invalidated. The
+ * cache directory can be safely deleted at any time.
+ *
+ * Any error while reading or writing the cache is logged and treated as a
+ * miss, so a broken cache never fails the build.
+ *
+ * Thread safe, also among different processes sharing the same directory.
+ *
+ * @since 0.8.0
+ */
+@Immutable
+final class RenderCache {
+
+    private static final Logger LOG = Logger.getLogger(RenderCache.class.getName());
+
+    private static final String SUFFIX = ".josc";
+
+    private final File dir;
+
+    /**
+     * Cached parts of a page.
+     *
+     * @since 0.8.0
+     */
+    @Immutable
+    static final class Entry {
+        final String content;
+
+        @Nullable
+        final String sidebar;
+
+        Entry(String content, @Nullable String sidebar) {
+            this.content = checkNotNull(content);
+            this.sidebar = sidebar;
+        }
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    RenderCache(File dir) {
+        checkNotNull(dir);
+        this.dir = dir;
+    }
+
+    private File entryFile(String key) {
+        // two level layout to avoid huge directories
+        return new File(new File(dir, key.substring(0, 2)), key + SUFFIX);
+    }
+
+    /**
+     * Returns the entry stored under {@code key}, or null if not found.
+     *
+     * @since 0.8.0
+     */
+    @Nullable
+    Entry get(String key) {
+        checkNotEmpty(key, "Invalid cache key!");
+
+        File file = entryFile(key);
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            String text = FileUtils.readFileToString(file, "UTF-8");
+            int headerEnd = text.indexOf('\n');
+            String[] lengths = text.substring(0, headerEnd)
+                                   .split(" ");
+            int contentLength = Integer.parseInt(lengths[0]);
+            int sidebarLength = Integer.parseInt(lengths[1]);
+            int contentStart = headerEnd + 1;
+            int sidebarStart = contentStart + contentLength;
+            if (sidebarStart + Math.max(0, sidebarLength) != text.length()) {
+                throw new IllegalStateException("Lengths in header don't match file size");
+            }
+            String content = text.substring(contentStart, sidebarStart);
+            String sidebar = sidebarLength < 0 ? null : text.substring(sidebarStart);
+            return new Entry(content, sidebar);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Ignoring corrupted render cache entry " + file.getAbsolutePath());
+            LOG.log(Level.FINE, "Error was: ", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Stores an entry under {@code key}. The entry becomes visible to readers
+     * only once completely written.
+     *
+     * @since 0.8.0
+     */
+    void put(String key, Entry entry) {
+        checkNotEmpty(key, "Invalid cache key!");
+        checkNotNull(entry);
+
+        File file = entryFile(key);
+        File tmp = null;
+        try {
+            File parent = file.getParentFile();
+            if (!parent.mkdirs() && !parent.isDirectory()) {
+                throw new IOException("Couldn't create directory " + parent.getAbsolutePath());
+            }
+            StringBuilder sb = new StringBuilder(entry.content.length()
+                    + (entry.sidebar == null ? 0 : entry.sidebar.length()) + 24);
+            sb.append(entry.content.length())
+              .append(' ')
+              .append(entry.sidebar == null ? -1 : entry.sidebar.length())
+              .append('\n')
+              .append(entry.content);
+            if (entry.sidebar != null) {
+                sb.append(entry.sidebar);
+            }
+            tmp = File.createTempFile(key, ".tmp", parent);
+            FileUtils.write(tmp, sb, "UTF-8");
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, "Couldn't write render cache entry " + file.getAbsolutePath());
+            LOG.log(Level.FINE, "Error was: ", ex);
+        } finally {
+            if (tmp != null && !tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+        }
+    }
+}
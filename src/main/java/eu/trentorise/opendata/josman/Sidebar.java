@@ -0,0 +1,117 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+import static eu.trentorise.opendata.josman.JosmanProject.DOCS_FOLDER;
+
+import java.util.List;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The sidebar listing the pages of a version. Html of the entries is computed
+ * once, then for each page only the selected entry with its heading links is
+ * generated.
+ *
+ * @since 0.8.0
+ */
+@Immutable
+final class Sidebar {
+
+    /**
+     * A link to a heading inside the current page.
+     *
+     * @since 0.8.0
+     */
+    @Immutable
+    static final class HeadingLink {
+        final String href;
+        final String text;
+
+        HeadingLink(String href, String text) {
+            this.href = checkNotNull(href);
+            this.text = checkNotNull(text);
+        }
+    }
+
+    private static final String TREE_OPEN = "<ul class=\"josman-tree\">";
+
+    private static final String TREE_CLOSE = "</ul>";
+
+    private final ImmutableList<String> relpaths;
+
+    /**
+     * Html of entries when not selected, in the same order of
+     * {@link #relpaths}
+     */
+    private final ImmutableList<String> entries;
+
+    private final int length;
+
+    /**
+     * @param relpaths
+     *            relative paths of the pages of a version, i.e. docs/README.md
+     * @since 0.8.0
+     */
+    Sidebar(List<String> relpaths) {
+        checkNotNull(relpaths);
+        this.relpaths = ImmutableList.copyOf(Josmans.orderRelpaths(relpaths));
+
+        ImmutableList.Builder<String> entriesBuilder = ImmutableList.builder();
+        int len = TREE_OPEN.length() + TREE_CLOSE.length();
+        for (String relpath : this.relpaths) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("<li><div class=\"josman-sidebar-page-title\"><a href=\"")
+              .append(Josmans.escapeHtml(Josmans.htmlizePath(relpath.substring(DOCS_FOLDER.length() + 1))))
+              .append("\">")
+              .append(Josmans.escapeHtml(Josmans.targetName(relpath)))
+              .append("</a></div>")
+              .append(TREE_OPEN)
+              .append(TREE_CLOSE)
+              .append("</li>");
+            entriesBuilder.add(sb.toString());
+            len += sb.length();
+        }
+        this.entries = entriesBuilder.build();
+        this.length = len;
+    }
+
+    /**
+     * Returns the sidebar html for page at {@code currentRelPath}
+     *
+     * @param headingLinks
+     *            links to level 3 headings of current page
+     * @since 0.8.0
+     */
+    String render(String currentRelPath, List<HeadingLink> headingLinks) {
+        checkNotEmpty(currentRelPath, "Invalid current rel path!");
+        checkNotNull(headingLinks);
+
+        StringBuilder sb = new StringBuilder(length + 64 * (headingLinks.size() + 1));
+        sb.append(TREE_OPEN);
+        for (int i = 0; i < relpaths.size(); i++) {
+            String relpath = relpaths.get(i);
+            if (relpath.equals(currentRelPath)) {
+                sb.append("<li><div class=\"josman-sidebar-page-title josman-sidebar-selected\">")
+                  .append(Josmans.escapeHtml(Josmans.targetName(relpath)))
+                  .append("</div>")
+                  .append(TREE_OPEN);
+                for (HeadingLink link : headingLinks) {
+                    sb.append("<div><a href=\"")
+                      .append(Josmans.escapeHtml(link.href))
+                      .append("\">")
+                      .append(Josmans.escapeHtml(link.text))
+                      .append("</a></div>");
+                }
+                sb.append(TREE_CLOSE)
+                  .append("</li>");
+            } else {
+                sb.append(entries.get(i));
+            }
+        }
+        sb.append(TREE_CLOSE);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * A compiled page skeleton, made of fixed text segments interleaved with named
+ * insertion slots. Pages are produced by plain appends, without reparsing the
+ * skeleton.
+ *
+ * To create one, put {@link #marker(Slot) markers} into the skeleton html
+ * where slot contents should go and then call {@link #of(String)}
+ *
+ * @since 0.8.0
+ */
+@Immutable
+final class SkeletonTemplate {
+
+    /**
+     * Places in the skeleton where page-specific content goes.
+     *
+     * @since 0.8.0
+     */
+    enum Slot {
+        /**
+         * The html rendered from markdown
+         */
+        CONTENT,
+        /**
+         * The list of pages of the version, with headers of current page
+         */
+        SIDEBAR,
+        /**
+         * Links to the versions in the header
+         */
+        VERSION_TABS
+    }
+
+    private static final String MARKER_PREFIX = "JOSMANSLOT";
+
+    private static final char MARKER_SUFFIX = 'X';
+
+    /**
+     * Always one element more than {@link #slots}
+     */
+    private final ImmutableList<String> segments;
+
+    private final ImmutableList<Slot> slots;
+
+    private final int length;
+
+    private SkeletonTemplate(ImmutableList<String> segments, ImmutableList<Slot> slots) {
+        this.segments = segments;
+        this.slots = slots;
+        int len = 0;
+        for (String segment : segments) {
+            len += segment.length();
+        }
+        this.length = len;
+    }
+
+    /**
+     * Returns the text to put in the skeleton html where the slot will be. It
+     * only contains ascii letters so it survives html serialization untouched.
+     *
+     * @since 0.8.0
+     */
+    static String marker(Slot slot) {
+        return MARKER_PREFIX + slot.name()
+                                   .replace("_", "") + MARKER_SUFFIX;
+    }
+
+    /**
+     * Compiles html containing {@link #marker(Slot) markers}
+     *
+     * @throws JosmanException
+     *             if markers are malformed
+     *
+     * @since 0.8.0
+     */
+    static SkeletonTemplate of(String html) {
+        checkNotNull(html);
+
+        ImmutableList.Builder<String> segments = ImmutableList.builder();
+        ImmutableList.Builder<Slot> slots = ImmutableList.builder();
+
+        int last = 0;
+        int pos = html.indexOf(MARKER_PREFIX);
+        while (pos != -1) {
+            Slot found = null;
+            for (Slot slot : Slot.values()) {
+                if (html.startsWith(marker(slot), pos)) {
+                    found = slot;
+                    break;
+                }
+            }
+            if (found == null) {
+                throw new JosmanException("Found unknown slot marker in skeleton at position " + pos);
+            }
+            segments.add(html.substring(last, pos));
+            slots.add(found);
+            last = pos + marker(found).length();
+            pos = html.indexOf(MARKER_PREFIX, last);
+        }
+        segments.add(html.substring(last));
+
+        return new SkeletonTemplate(segments.build(), slots.build());
+    }
+
+    /**
+     * Returns the length of the fixed text, without slot contents.
+     *
+     * @since 0.8.0
+     */
+    int fixedLength() {
+        return length;
+    }
+
+    /**
+     * Puts fixed text and slots into {@code fingerprint}
+     *
+     * @since 0.8.0
+     */
+    void addTo(Fingerprint fingerprint) {
+        fingerprint.put(segments)
+                   .put(slots);
+    }
+
+    /**
+     * Appends the page to {@code out}, filling slots with provided
+     * {@code values}. Slots with no value are left empty.
+     *
+     * @since 0.8.0
+     */
+    void writeTo(Appendable out, Map<Slot, ? extends CharSequence> values) throws IOException {
+        checkNotNull(out);
+        checkNotNull(values);
+
+        for (int i = 0; i < slots.size(); i++) {
+            out.append(segments.get(i));
+            CharSequence value = values.get(slots.get(i));
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        out.append(segments.get(segments.size() - 1));
+    }
+
+}
@@ -0,0 +1,26 @@
+package eu.trentorise.opendata.josman;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+
+import com.google.common.collect.ImmutableList;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * A place where to discover release tags of a project, i.e. the local git
+ * repository or GitHub. Tags only need a name, commit sha may be missing.
+ * 
+ * @since 0.8.0
+ */
+public interface TagSource {
+
+    /**
+     * Returns all the tags found, including ones not about releases.
+     * 
+     * @throws JosmanIoException
+     *             if tags couldn't be read
+     * 
+     * @since 0.8.0
+     */
+    ImmutableList<RepositoryTag> fetchTags();
+}
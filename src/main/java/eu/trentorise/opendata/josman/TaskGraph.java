@@ -0,0 +1,285 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * A directed acyclic graph of named tasks with explicit dependencies. Tasks
+ * are run on a work-stealing pool as soon as all of their dependencies are
+ * done, so i.e. network bound downloads can overlap with rendering.
+ *
+ * If a task fails, no new task is started and {@link #run()} rethrows the
+ * error of the first task that failed once running ones are over.
+ *
+ * Not thread safe: tasks must be added from a single thread before calling
+ * {@link #run()}.
+ *
+ * @since 0.8.0
+ */
+final class TaskGraph {
+
+    private static final Logger LOG = Logger.getLogger(TaskGraph.class.getName());
+
+    /**
+     * @since 0.8.0
+     */
+    private static final class Task {
+        final String name;
+        final Runnable runnable;
+        final List<Task> dependencies = new ArrayList<>();
+        final List<Task> dependents = new ArrayList<>();
+        final AtomicInteger pending = new AtomicInteger();
+        volatile long start;
+        volatile long end;
+
+        Task(String name, Runnable runnable) {
+            this.name = name;
+            this.runnable = runnable;
+        }
+
+        long durationMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(end - start);
+        }
+    }
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+
+    private final int threads;
+
+    private final Object lock = new Object();
+
+    /**
+     * Guarded by {@link #lock}
+     */
+    private int running;
+
+    /**
+     * Guarded by {@link #lock}
+     */
+    private int remaining;
+
+    /**
+     * Guarded by {@link #lock}
+     */
+    @Nullable
+    private Throwable firstError;
+
+    /**
+     * Guarded by {@link #lock}
+     */
+    @Nullable
+    private Task lastFinished;
+
+    /**
+     * @param threads
+     *            maximum number of tasks to run in parallel
+     * @since 0.8.0
+     */
+    TaskGraph(int threads) {
+        checkArgument(threads >= 1, "Threads must be at least 1, found instead %s", threads);
+        this.threads = threads;
+    }
+
+    /**
+     * Adds a task which will run after all the tasks named in
+     * {@code dependencies}, which must have already been added.
+     *
+     * @throws IllegalArgumentException
+     *             if a task with the same name already exists or a
+     *             dependency is not found.
+     *
+     * @since 0.8.0
+     */
+    TaskGraph add(String name, Runnable runnable, String... dependencies) {
+        checkNotEmpty(name, "Invalid task name!");
+        checkNotNull(runnable);
+        checkArgument(!tasks.containsKey(name), "Task %s was already added!", name);
+
+        Task task = new Task(name, runnable);
+        for (String dep : dependencies) {
+            Task depTask = tasks.get(dep);
+            checkArgument(depTask != null, "Couldn't find dependency %s of task %s", dep, name);
+            if (!task.dependencies.contains(depTask)) {
+                task.dependencies.add(depTask);
+                depTask.dependents.add(task);
+            }
+        }
+        // dependencies are always added before, so there can't be cycles
+        tasks.put(name, task);
+        return this;
+    }
+
+    /**
+     * Returns true if a task with given name was added.
+     *
+     * @since 0.8.0
+     */
+    boolean contains(String name) {
+        return tasks.containsKey(name);
+    }
+
+    /**
+     * Runs all the tasks and waits for them to complete, then logs the
+     * critical path.
+     *
+     * @throws RuntimeException
+     *             the exception raised by the first failed task, as is.
+     *
+     * @since 0.8.0
+     */
+    void run() {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        // workers keep the class loader of the caller, i.e. the plugin one
+        final ClassLoader classLoader = Thread.currentThread()
+                                              .getContextClassLoader();
+        ForkJoinPool pool = new ForkJoinPool(threads, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread ret = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                ret.setName("josman-task-" + ret.getPoolIndex());
+                ret.setContextClassLoader(classLoader);
+                return ret;
+            }
+        }, null, false);
+        long start = System.nanoTime();
+        try {
+            synchronized (lock) {
+                remaining = tasks.size();
+                for (Task task : tasks.values()) {
+                    task.pending.set(task.dependencies.size());
+                }
+                for (Task task : tasks.values()) {
+                    if (task.dependencies.isEmpty()) {
+                        schedule(pool, task);
+                    }
+                }
+                while (running > 0 || (firstError == null && remaining > 0)) {
+                    lock.wait();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new JosmanException("Interrupted while waiting for tasks!", ex);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable error;
+        synchronized (lock) {
+            error = firstError;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new JosmanException(error);
+        }
+
+        logCriticalPath(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Must be called holding {@link #lock}
+     */
+    private void schedule(final ForkJoinPool pool, final Task task) {
+        running++;
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                Throwable error = null;
+                task.start = System.nanoTime();
+                try {
+                    LOG.log(Level.FINE, "Starting task {0}", task.name);
+                    task.runnable.run();
+                } catch (Throwable tr) {
+                    error = tr;
+                } finally {
+                    task.end = System.nanoTime();
+                }
+                completed(pool, task, error);
+            }
+        });
+    }
+
+    private void completed(ForkJoinPool pool, Task task, @Nullable Throwable error) {
+        synchronized (lock) {
+            running--;
+            remaining--;
+            if (error != null) {
+                LOG.log(Level.FINE, "Task " + task.name + " failed", error);
+                if (firstError == null) {
+                    firstError = error;
+                }
+            } else {
+                lastFinished = task;
+                if (firstError == null) {
+                    for (Task dependent : task.dependents) {
+                        if (dependent.pending.decrementAndGet() == 0) {
+                            schedule(pool, dependent);
+                        }
+                    }
+                }
+            }
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Logs the chain of dependencies which determined the total time,
+     * starting from the task which finished last.
+     */
+    private void logCriticalPath(long totalMillis) {
+        Task task;
+        synchronized (lock) {
+            task = lastFinished;
+        }
+        List<Task> path = new ArrayList<>();
+        while (task != null) {
+            path.add(task);
+            Task slowest = null;
+            for (Task dep : task.dependencies) {
+                if (slowest == null || dep.end > slowest.end) {
+                    slowest = dep;
+                }
+            }
+            task = slowest;
+        }
+        Collections.reverse(path);
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("Site generated in ")
+          .append(totalMillis)
+          .append(" ms, critical path:");
+        for (Task t : path) {
+            sb.append("\n    ")
+              .append(t.durationMillis())
+              .append(" ms\t")
+              .append(t.name);
+        }
+        LOG.info(sb.toString());
+    }
+}
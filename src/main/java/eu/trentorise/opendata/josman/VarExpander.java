@@ -0,0 +1,208 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+
+/**
+ * Expands variables like <code>${project.version}</code> and legacy ones like
+ * <code>#{version}</code> in a single linear scan of the text. Escaped forms
+ * <code>$'{key}</code> and <code>#'{key}</code> are rendered verbatim as
+ * <code>${key}</code> and <code>#{key}</code>.
+ *
+ * Only keys present in the lookup tables are expanded, any other
+ * <code>${...}</code> is left untouched.
+ *
+ * @since 0.8.0
+ */
+@Immutable
+final class VarExpander {
+
+    /**
+     * Old name of Josman, still recognized in pages for legacy compat.
+     */
+    private static final String LEGACY_NAME = "jedoc";
+
+    private static final String NAME = "josman";
+
+    private final Map<String, String> vars;
+
+    private final Map<String, String> legacyVars;
+
+    /**
+     * Longest key among all tables, used to bound the search for closing
+     * braces.
+     */
+    private final int maxKeyLength;
+
+    /**
+     * @param vars
+     *            variables to be used for <code>${key}</code> expansion. Null
+     *            values are ignored.
+     * @param legacyVars
+     *            variables to be used for <code>#{key}</code> expansion. Null
+     *            values are ignored.
+     * @since 0.8.0
+     */
+    VarExpander(Map<String, String> vars, Map<String, String> legacyVars) {
+        checkNotNull(vars);
+        checkNotNull(legacyVars);
+        this.vars = withoutNulls(vars);
+        this.legacyVars = withoutNulls(legacyVars);
+
+        int max = 0;
+        for (String key : this.vars.keySet()) {
+            max = Math.max(max, key.length());
+        }
+        for (String key : this.legacyVars.keySet()) {
+            max = Math.max(max, key.length());
+        }
+        // legacy names in keys are shorter than current ones, so the bound holds
+        this.maxKeyLength = max;
+    }
+
+    private static Map<String, String> withoutNulls(Map<String, String> map) {
+        HashMap<String, String> ret = new HashMap<>();
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            if (entry.getKey() != null && entry.getValue() != null) {
+                ret.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a new expander holding the variables of this one plus the
+     * provided ones, the latter taking precedence.
+     *
+     * @since 0.8.0
+     */
+    VarExpander with(Map<String, String> moreVars, Map<String, String> moreLegacyVars) {
+        HashMap<String, String> newVars = new HashMap<>(vars);
+        newVars.putAll(withoutNulls(moreVars));
+        HashMap<String, String> newLegacyVars = new HashMap<>(legacyVars);
+        newLegacyVars.putAll(withoutNulls(moreLegacyVars));
+        return new VarExpander(newVars, newLegacyVars);
+    }
+
+    /**
+     * Returns the value of {@code key}, or null if not present.
+     *
+     * @since 0.8.0
+     */
+    String get(String key) {
+        return vars.get(key);
+    }
+
+    /**
+     * Returns true if <code>${key}</code> would be expanded, also accounting
+     * for legacy names in {@code key}.
+     *
+     * @since 0.8.0
+     */
+    boolean isDefined(String key) {
+        return vars.containsKey(normalizeKey(key));
+    }
+
+    /**
+     * Puts all the variables into {@code fingerprint}
+     *
+     * @since 0.8.0
+     */
+    void addTo(Fingerprint fingerprint) {
+        fingerprint.put(vars)
+                   .put(legacyVars);
+    }
+
+    /**
+     * Returns a new string with all known variables expanded.
+     *
+     * @since 0.8.0
+     */
+    String expand(String text) {
+        checkNotNull(text);
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        expand(text, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends {@code text} to {@code sb} expanding all known variables.
+     *
+     * @since 0.8.0
+     */
+    void expand(String text, StringBuilder sb) {
+        int n = text.length();
+        int i = 0;
+        int lastCopied = 0;
+
+        while (i < n) {
+            char ch = text.charAt(i);
+
+            if (ch == '$' || ch == '#') {
+                boolean escaped = i + 1 < n && text.charAt(i + 1) == '\'';
+                int open = escaped ? i + 2 : i + 1;
+                if (open < n && text.charAt(open) == '{') {
+                    int close = findClose(text, open + 1);
+                    if (close != -1) {
+                        String key = normalizeKey(text.substring(open + 1, close));
+                        Map<String, String> table = ch == '$' ? vars : legacyVars;
+                        String value = table.get(key);
+                        if (value != null) {
+                            sb.append(text, lastCopied, i);
+                            if (escaped) {
+                                sb.append(ch)
+                                  .append('{')
+                                  .append(key)
+                                  .append('}');
+                            } else {
+                                sb.append(value);
+                            }
+                            i = close + 1;
+                            lastCopied = i;
+                            continue;
+                        }
+                    }
+                }
+            } else if (ch == 'j' && text.startsWith(LEGACY_NAME, i)) {
+                sb.append(text, lastCopied, i);
+                sb.append(NAME);
+                i += LEGACY_NAME.length();
+                lastCopied = i;
+                continue;
+            }
+            i++;
+        }
+        sb.append(text, lastCopied, n);
+    }
+
+    /**
+     * Returns the position of the closing brace of a variable starting at
+     * {@code from}, or -1 if it can't be a known variable.
+     */
+    private int findClose(String text, int from) {
+        int limit = Math.min(text.length(), from + maxKeyLength + 1);
+        for (int j = from; j < limit; j++) {
+            char c = text.charAt(j);
+            if (c == '}') {
+                return j;
+            }
+            if (c == '{' || c == '\n' || c == '\r') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static String normalizeKey(String key) {
+        if (key.contains(LEGACY_NAME)) {
+            return key.replace(LEGACY_NAME, NAME);
+        } else {
+            return key;
+        }
+    }
+
+}
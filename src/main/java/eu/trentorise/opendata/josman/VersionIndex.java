@@ -0,0 +1,252 @@
+package eu.trentorise.opendata.josman;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static eu.trentorise.opendata.commons.validation.Preconditions.checkNotEmpty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+import eu.trentorise.opendata.commons.SemVersion;
+
+/**
+ * Release tags of a project, parsed once and ordered by semantic version.
+ * Only the tag with highest patch is kept for each major.minor pair.
+ *
+ * @since 0.8.0
+ */
+@Immutable
+final class VersionIndex {
+
+    private static final Logger LOG = Logger.getLogger(VersionIndex.class.getName());
+
+    /**
+     * Orders by major, minor and patch. Pre-release part is not considered.
+     *
+     * @since 0.8.0
+     */
+    static final Comparator<SemVersion> VERSION_ORDER = new Comparator<SemVersion>() {
+        @Override
+        public int compare(SemVersion a, SemVersion b) {
+            if (a.getMajor() != b.getMajor()) {
+                return a.getMajor() < b.getMajor() ? -1 : 1;
+            }
+            if (a.getMinor() != b.getMinor()) {
+                return a.getMinor() < b.getMinor() ? -1 : 1;
+            }
+            if (a.getPatch() != b.getPatch()) {
+                return a.getPatch() < b.getPatch() ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    /**
+     * A release tag with its parsed version.
+     *
+     * @since 0.8.0
+     */
+    @Immutable
+    static final class Release {
+        final SemVersion version;
+        final RepositoryTag tag;
+
+        Release(SemVersion version, RepositoryTag tag) {
+            this.version = checkNotNull(version);
+            this.tag = checkNotNull(tag);
+        }
+    }
+
+    private static final VersionIndex EMPTY = new VersionIndex(ImmutableList.<Release> of(), false);
+
+    /**
+     * Newest first
+     */
+    private final ImmutableList<Release> releases;
+
+    private final ImmutableMap<String, Release> byMajorMinor;
+
+    private final boolean snapshotReplacesFirst;
+
+    private VersionIndex(ImmutableList<Release> releases, boolean snapshotReplacesFirst) {
+        this.releases = releases;
+        ImmutableMap.Builder<String, Release> mapb = ImmutableMap.builder();
+        for (Release release : releases) {
+            mapb.put(Josmans.majorMinor(release.version), release);
+        }
+        this.byMajorMinor = mapb.build();
+        this.snapshotReplacesFirst = snapshotReplacesFirst;
+    }
+
+    /**
+     * Returns an index without releases.
+     *
+     * @since 0.8.0
+     */
+    static VersionIndex of() {
+        return EMPTY;
+    }
+
+    /**
+     * Indexes tags of the format repoName-x.y.z, other tags are skipped.
+     *
+     * @param tags
+     *            tags from the repository, if null an empty index is
+     *            returned.
+     * @param ignoredVersions
+     *            tags having exactly these versions are removed, after
+     *            picking the highest patch of each major.minor
+     * @param snapshotVersion
+     *            if not null and it replaces the newest release (same major
+     *            and minor, patch not lower), that release is not among
+     *            {@link #remaining()} ones.
+     *
+     * @since 0.8.0
+     */
+    static VersionIndex of(String repoName, @Nullable List<RepositoryTag> tags, List<SemVersion> ignoredVersions,
+            @Nullable SemVersion snapshotVersion) {
+        checkNotEmpty(repoName, "Invalid repo name!");
+        checkNotNull(ignoredVersions);
+
+        if (tags == null) {
+            return EMPTY;
+        }
+
+        List<Release> releases = latestPatches(repoName, tags);
+
+        Set<String> ignored = new HashSet<>();
+        for (SemVersion ignoredVersion : ignoredVersions) {
+            ignored.add(Josmans.releaseTag(repoName, ignoredVersion));
+        }
+        List<Release> filtered = new ArrayList<>();
+        for (Release release : releases) {
+            if (!ignored.contains(release.tag.getName())) {
+                filtered.add(release);
+            }
+        }
+
+        Collections.sort(filtered, new Comparator<Release>() {
+            @Override
+            public int compare(Release a, Release b) {
+                return VERSION_ORDER.compare(b.version, a.version);
+            }
+        });
+
+        boolean snapshotReplacesFirst = false;
+        if (snapshotVersion != null && !filtered.isEmpty()) {
+            SemVersion first = filtered.get(0).version;
+            snapshotReplacesFirst = snapshotVersion.getMajor() == first.getMajor()
+                    && snapshotVersion.getMinor() == first.getMinor()
+                    && snapshotVersion.getPatch() >= first.getPatch();
+        }
+
+        return new VersionIndex(ImmutableList.copyOf(filtered), snapshotReplacesFirst);
+    }
+
+    /**
+     * Returns releases of repoName with the highest patch for each
+     * major.minor, in no particular order. On equal patch the first tag wins.
+     *
+     * @since 0.8.0
+     */
+    static List<Release> latestPatches(String repoName, List<RepositoryTag> tags) {
+        String prefix = repoName + "-";
+        Map<String, Release> byMajorMinor = new HashMap<>();
+        List<String> order = new ArrayList<>();
+        for (RepositoryTag tag : tags) {
+            if (!tag.getName()
+                    .startsWith(prefix)) {
+                continue;
+            }
+            SemVersion version;
+            try {
+                version = Josmans.version(repoName, tag.getName());
+            } catch (Exception ex) {
+                LOG.log(Level.WARNING, "Skipping tag {0}, it has no valid version", tag.getName());
+                continue;
+            }
+            String key = Josmans.majorMinor(version);
+            Release prev = byMajorMinor.get(key);
+            if (prev == null) {
+                order.add(key);
+                byMajorMinor.put(key, new Release(version, tag));
+            } else if (version.getPatch() > prev.version.getPatch()) {
+                byMajorMinor.put(key, new Release(version, tag));
+            }
+        }
+        List<Release> ret = new ArrayList<>();
+        for (String key : order) {
+            ret.add(byMajorMinor.get(key));
+        }
+        return ret;
+    }
+
+    /**
+     * Returns all indexed releases, newest first.
+     *
+     * @since 0.8.0
+     */
+    ImmutableList<Release> releases() {
+        return releases;
+    }
+
+    /**
+     * Returns releases to generate docs for, newest first: the newest one is
+     * missing if the snapshot replaces it.
+     *
+     * @since 0.8.0
+     */
+    ImmutableList<Release> remaining() {
+        if (snapshotReplacesFirst) {
+            return releases.subList(1, releases.size());
+        } else {
+            return releases;
+        }
+    }
+
+    /**
+     * Returns the newest of {@link #remaining()} releases, or null if there
+     * are none.
+     *
+     * @since 0.8.0
+     */
+    @Nullable
+    Release latest() {
+        List<Release> remaining = remaining();
+        return remaining.isEmpty() ? null : remaining.get(0);
+    }
+
+    /**
+     * Returns true if the snapshot version replaces the newest release.
+     *
+     * @since 0.8.0
+     */
+    boolean snapshotReplacesFirst() {
+        return snapshotReplacesFirst;
+    }
+
+    /**
+     * Returns the release with given major and minor, or null if not found.
+     *
+     * @since 0.8.0
+     */
+    @Nullable
+    Release find(int major, int minor) {
+        return byMajorMinor.get(major + "." + minor);
+    }
+}
@@ -0,0 +1,180 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 0.8.0
+ */
+public class EvalFingerprintTest {
+
+    private static final String FIRST = EvalFingerprintTest.class.getName() + ".first()";
+
+    private static final String SECOND = EvalFingerprintTest.class.getName() + ".second()";
+
+    private static final AtomicInteger EVALUATED = new AtomicInteger();
+
+    private static final long MTIME = 1400000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File jar;
+
+    private File evalMapFile;
+
+    private File fingerprintFile;
+
+    // For testing doc expressions
+    public static String first() {
+        EVALUATED.incrementAndGet();
+        return "first";
+    }
+
+    // For testing doc expressions
+    public static String second() {
+        EVALUATED.incrementAndGet();
+        return "second";
+    }
+
+    @Before
+    public void before() throws IOException {
+        EVALUATED.set(0);
+        jar = new File(folder.getRoot(), "lib.jar");
+        FileUtils.write(jar, "jar content", "UTF-8");
+        assertTrue(jar.setLastModified(MTIME));
+        evalMapFile = new File(folder.getRoot(), "target/josman-eval.csv");
+        fingerprintFile = new File(folder.getRoot(), "target/josman-eval.properties");
+    }
+
+    private List<String> classpath() {
+        return Collections.singletonList(jar.getPath());
+    }
+
+    private static Map<String, String> exprs(String... exprs) {
+        Map<String, String> ret = new LinkedHashMap<>();
+        for (String expr : exprs) {
+            ret.put(expr, "docs/README.md");
+        }
+        return ret;
+    }
+
+    private int update(Map<String, String> exprs) {
+        return Josmans.updateEvalMap(exprs, classpath(), evalMapFile, fingerprintFile, getClass().getClassLoader(),
+                false, new PageBatch(null), new ExprEvaluator(0, 1));
+    }
+
+    @Test
+    public void testUnchangedSkipsEvaluation() throws IOException {
+        assertEquals(1, update(exprs(FIRST)));
+        assertEquals(1, EVALUATED.get());
+
+        assertTrue(evalMapFile.setLastModified(MTIME));
+        String csv = FileUtils.readFileToString(evalMapFile, "UTF-8");
+
+        assertEquals(0, update(exprs(FIRST)));
+        assertEquals(1, EVALUATED.get());
+        assertEquals(MTIME, evalMapFile.lastModified());
+        assertEquals(csv, FileUtils.readFileToString(evalMapFile, "UTF-8"));
+    }
+
+    @Test
+    public void testOnlyNewExprIsEvaluated() {
+        update(exprs(FIRST));
+        EVALUATED.set(0);
+
+        assertEquals(1, update(exprs(FIRST, SECOND)));
+        assertEquals(1, EVALUATED.get());
+
+        Map<String, String> evals = Josmans.loadEvalMap(evalMapFile);
+        assertEquals(2, evals.size());
+        assertEquals("first", evals.get(FIRST));
+        assertEquals("second", evals.get(SECOND));
+    }
+
+    @Test
+    public void testChangedClasspathEvaluatesAll() throws IOException {
+        update(exprs(FIRST, SECOND));
+        EVALUATED.set(0);
+
+        FileUtils.write(jar, "new jar content", "UTF-8");
+        assertEquals(2, update(exprs(FIRST, SECOND)));
+        assertEquals(2, EVALUATED.get());
+    }
+
+    @Test
+    public void testTouchedJarWithSameContent() throws IOException {
+        update(exprs(FIRST));
+        EVALUATED.set(0);
+
+        assertTrue(jar.setLastModified(MTIME + 10000));
+        assertEquals(0, update(exprs(FIRST)));
+        assertEquals(0, EVALUATED.get());
+
+        // new stamp was stored, so the jar won't be hashed again
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(fingerprintFile)) {
+            props.load(in);
+        }
+        assertTrue(props.getProperty("jar." + jar.getPath())
+                        .startsWith(jar.length() + ":" + (MTIME + 10000) + ":"));
+    }
+
+    /**
+     * If size and modification time of a jar didn't change its stored hash is
+     * trusted, so it is not read again.
+     */
+    @Test
+    public void testStoredJarHashIsReused() throws IOException {
+        EvalFingerprint.load(fingerprintFile)
+                       .putClasspath(classpath())
+                       .save(fingerprintFile);
+
+        FileUtils.write(jar, "jar CONTENT", "UTF-8");
+        assertTrue(jar.setLastModified(MTIME));
+        assertTrue(EvalFingerprint.load(fingerprintFile)
+                                  .putClasspath(classpath())
+                                  .isClasspathUnchanged());
+
+        assertTrue(jar.setLastModified(MTIME + 10000));
+        assertFalse(EvalFingerprint.load(fingerprintFile)
+                                   .putClasspath(classpath())
+                                   .isClasspathUnchanged());
+    }
+
+    @Test
+    public void testExprs() {
+        EvalFingerprint.load(fingerprintFile)
+                       .putExprs(Arrays.asList(FIRST, SECOND))
+                       .save(fingerprintFile);
+
+        assertTrue(EvalFingerprint.load(fingerprintFile)
+                                  .putExprs(Arrays.asList(SECOND, FIRST))
+                                  .isExprsUnchanged());
+        assertFalse(EvalFingerprint.load(fingerprintFile)
+                                   .putExprs(Arrays.asList(FIRST))
+                                   .isExprsUnchanged());
+        assertFalse(EvalFingerprint.load(new File(folder.getRoot(), "missing.properties"))
+                                   .putExprs(Arrays.asList(FIRST))
+                                   .isExprsUnchanged());
+    }
+}
@@ -0,0 +1,125 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 0.8.0
+ */
+public class EvalIndexTest {
+
+    /**
+     * Size of the index header, see {@link EvalIndex}
+     */
+    private static final int HEADER_SIZE = 28;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Map<String, String> evals(int n) {
+        Map<String, String> ret = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ret.put("a.B.c" + i, "value " + i);
+        }
+        return ret;
+    }
+
+    @Test
+    public void testLookup() throws IOException {
+        File csv = new File(folder.getRoot(), "josman-eval.csv");
+        Map<String, String> evals = evals(50);
+        Josmans.saveEvalMap(evals, csv);
+
+        EvalIndex index = EvalIndex.open(csv);
+        assertNotNull(index);
+        assertEquals(evals, index);
+        assertEquals("value 7", index.get("a.B.c7"));
+        assertFalse(index.containsKey("a.B.c50"));
+        assertNull(index.get(3));
+    }
+
+    /**
+     * A new index replaces the file instead of overwriting it, so indexes
+     * still mapped keep their content.
+     */
+    @Test
+    public void testRewriteWhileOpen() throws IOException {
+        File csv = new File(folder.getRoot(), "josman-eval.csv");
+        Josmans.saveEvalMap(evals(10), csv);
+        EvalIndex old = EvalIndex.open(csv);
+
+        Map<String, String> changed = evals(20);
+        changed.put("a.B.c3", "other");
+        Josmans.saveEvalMap(changed, csv);
+
+        assertEquals(evals(10), old);
+        assertEquals(changed, EvalIndex.open(csv));
+        assertEquals(2, folder.getRoot()
+                              .list().length);
+    }
+
+    @Test
+    public void testCsvFingerprint() throws IOException {
+        File csv = new File(folder.getRoot(), "josman-eval.csv");
+        Josmans.saveEvalMap(evals(10), csv);
+        String first = EvalIndex.open(csv)
+                                .csvFingerprint();
+
+        Josmans.saveEvalMap(evals(10), csv);
+        assertEquals(first, EvalIndex.open(csv)
+                                     .csvFingerprint());
+
+        Map<String, String> changed = evals(10);
+        changed.put("a.B.c3", "other");
+        Josmans.saveEvalMap(changed, csv);
+        assertFalse(first.equals(EvalIndex.open(csv)
+                                          .csvFingerprint()));
+    }
+
+    /**
+     * A damaged offset in the middle of the table must make the index be
+     * ignored, not fail lookups later.
+     */
+    @Test
+    public void testCorruptOffset() throws IOException {
+        File csv = new File(folder.getRoot(), "josman-eval.csv");
+        Map<String, String> evals = evals(10);
+        Josmans.saveEvalMap(evals, csv);
+
+        try (RandomAccessFile raf = new RandomAccessFile(EvalIndex.indexFile(csv), "rw")) {
+            raf.seek(HEADER_SIZE + 4 * 5);
+            raf.writeInt(1000000);
+        }
+        assertNull(EvalIndex.open(csv));
+
+        Map<String, String> read = Josmans.loadEvalMap(csv);
+        assertFalse(read instanceof EvalIndex);
+        assertEquals(evals, read);
+    }
+
+    @Test
+    public void testTruncatedIndex() throws IOException {
+        File csv = new File(folder.getRoot(), "josman-eval.csv");
+        Josmans.saveEvalMap(evals(10), csv);
+
+        try (RandomAccessFile raf = new RandomAccessFile(EvalIndex.indexFile(csv), "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+        assertNull(EvalIndex.open(csv));
+        assertTrue(Josmans.loadEvalMap(csv)
+                          .containsKey("a.B.c3"));
+    }
+}
@@ -0,0 +1,320 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * @since 0.8.0
+ */
+public class ExprEvaluatorTest {
+
+    private static final String SLEEPY = ExprEvaluatorTest.class.getName() + ".sleepy()";
+
+    private static final String SHORT_NAP = ExprEvaluatorTest.class.getName() + ".shortNap()";
+
+    private static final String FAST = ExprEvaluatorTest.class.getName() + ".fast()";
+
+    private static final String CONTEXT = ExprEvaluatorTest.class.getName() + ".contextClassLoader()";
+
+    private static final String FAILING = ExprEvaluatorTest.class.getName() + ".failing()";
+
+    private static final String[] STUBBORN = { ExprEvaluatorTest.class.getName() + ".stubborn1()",
+            ExprEvaluatorTest.class.getName() + ".stubborn2()", ExprEvaluatorTest.class.getName() + ".stubborn3()" };
+
+    private static final AtomicInteger FAILED = new AtomicInteger();
+
+    private final Logger logger = Logger.getLogger(ExprEvaluator.class.getName());
+
+    private final List<String> warnings = Collections.synchronizedList(new ArrayList<String>());
+
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            warnings.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    private ExprEvaluator evaluator;
+
+    // For testing doc expressions
+    public static String sleepy() throws InterruptedException {
+        Thread.sleep(10000);
+        return "awake";
+    }
+
+    // For testing doc expressions
+    public static String shortNap() throws InterruptedException {
+        Thread.sleep(300);
+        return "nap";
+    }
+
+    // For testing doc expressions
+    public static String fast() {
+        return "fast";
+    }
+
+    /**
+     * Sleeps for 10 seconds ignoring interruptions
+     */
+    private static String sleepStubbornly() {
+        long end = System.currentTimeMillis() + 10000;
+        long now;
+        while ((now = System.currentTimeMillis()) < end) {
+            try {
+                Thread.sleep(end - now);
+            } catch (InterruptedException ex) {
+
+            }
+        }
+        return "awake";
+    }
+
+    // For testing doc expressions
+    public static String stubborn1() {
+        return sleepStubbornly();
+    }
+
+    // For testing doc expressions
+    public static String stubborn2() {
+        return sleepStubbornly();
+    }
+
+    // For testing doc expressions
+    public static String stubborn3() {
+        return sleepStubbornly();
+    }
+
+    // For testing doc expressions
+    public static String failing() {
+        FAILED.incrementAndGet();
+        throw new IllegalStateException("Failing on purpose");
+    }
+
+    // For testing doc expressions
+    public static String contextClassLoader() {
+        return String.valueOf(System.identityHashCode(Thread.currentThread()
+                                                            .getContextClassLoader()));
+    }
+
+    @Before
+    public void before() {
+        logger.addHandler(handler);
+    }
+
+    @After
+    public void after() {
+        logger.removeHandler(handler);
+        if (evaluator != null) {
+            evaluator.close();
+        }
+    }
+
+    private ClassLoader classLoader() {
+        return getClass().getClassLoader();
+    }
+
+    @Test
+    public void testTimeout() {
+        evaluator = new ExprEvaluator(200, 1);
+        try {
+            evaluator.eval(SLEEPY, "docs/slow.md", classLoader());
+            fail("Should have timed out!");
+        } catch (JosmanException ex) {
+
+        }
+        assertEquals(1, evaluator.getTimeouts());
+
+        boolean reported = false;
+        for (String warning : warnings) {
+            if (warning.contains(Josmans.reportExpr(SLEEPY, "docs/slow.md"))) {
+                reported = true;
+            }
+        }
+        assertTrue("Timeout was not reported, log was: " + warnings, reported);
+
+        // pool is still usable
+        assertEquals("fast", evaluator.eval(FAST, "docs/fast.md", classLoader()));
+    }
+
+    @Test
+    public void testTimeoutIgnoringErrors() {
+        evaluator = new ExprEvaluator(200, 2);
+        Map<String, String> exprs = new LinkedHashMap<>();
+        exprs.put(SLEEPY, "docs/slow.md");
+        exprs.put(FAST, "docs/fast.md");
+
+        Map<String, String> evals = Josmans.evalExprs(exprs, classLoader(), true, new PageBatch(null), evaluator);
+        assertEquals("${" + SLEEPY + "}", evals.get(SLEEPY));
+        assertEquals("fast", evals.get(FAST));
+    }
+
+    @Test
+    public void testTimeoutFailOnError() {
+        evaluator = new ExprEvaluator(200, 1);
+        Map<String, String> exprs = Collections.singletonMap(SLEEPY, "docs/slow.md");
+        try {
+            Josmans.evalExprs(exprs, classLoader(), false, new PageBatch(null), evaluator);
+            fail("Should have failed!");
+        } catch (JosmanException ex) {
+
+        }
+    }
+
+    /**
+     * Time waiting for a free thread doesn't count against the evaluation
+     * timeout.
+     */
+    @Test
+    public void testQueuedNotTimedOut() throws Exception {
+        evaluator = new ExprEvaluator(500, 1);
+        ExecutorService callers = Executors.newFixedThreadPool(2);
+        try {
+            // with a single evaluation thread, the last one finishes after 600 ms
+            PageBatch batch = new PageBatch(callers);
+            final List<String> results = Collections.synchronizedList(new ArrayList<String>());
+            for (int i = 0; i < 2; i++) {
+                batch.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        results.add(evaluator.eval(SHORT_NAP, "docs/page.md", classLoader()));
+                    }
+                });
+            }
+            batch.await();
+            assertEquals(2, results.size());
+            assertEquals(0, evaluator.getTimeouts());
+        } finally {
+            callers.shutdownNow();
+        }
+    }
+
+    /**
+     * Evaluations ignoring interruption keep running after timing out, but
+     * don't take threads away from following ones.
+     */
+    @Test
+    public void testMoreStubbornThanThreads() {
+        evaluator = new ExprEvaluator(200, 2);
+        for (String expr : STUBBORN) {
+            try {
+                evaluator.eval(expr, "docs/slow.md", classLoader());
+                fail("Should have timed out!");
+            } catch (JosmanException ex) {
+
+            }
+        }
+        assertEquals(3, evaluator.getTimeouts());
+        assertEquals("fast", evaluator.eval(FAST, "docs/fast.md", classLoader()));
+
+        // following pages fail at once
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < 10; i++) {
+            try {
+                evaluator.eval(STUBBORN[0], "docs/page" + i + ".md", classLoader());
+                fail("Should have failed!");
+            } catch (JosmanException ex) {
+
+            }
+        }
+        assertTrue(System.currentTimeMillis() - start < 200);
+        assertEquals(3, evaluator.getTimeouts());
+    }
+
+    @Test
+    public void testFailureRemembered() {
+        FAILED.set(0);
+        for (ExprEvaluator ev : new ExprEvaluator[] { new ExprEvaluator(1000, 1), new ExprEvaluator(0, 1) }) {
+            evaluator = ev;
+            for (int i = 0; i < 3; i++) {
+                try {
+                    evaluator.eval(FAILING, "docs/page" + i + ".md", classLoader());
+                    fail("Should have failed!");
+                } catch (RuntimeException ex) {
+
+                }
+            }
+            evaluator.close();
+        }
+        assertEquals(2, FAILED.get());
+    }
+
+    @Test
+    public void testHistogram() {
+        evaluator = new ExprEvaluator(500, 1);
+        evaluator.eval(FAST, "docs/fast.md", classLoader());
+        evaluator.eval(FAST, "docs/fast.md", classLoader());
+        evaluator.eval(SHORT_NAP, "docs/nap.md", classLoader());
+        try {
+            evaluator.eval(SLEEPY, "docs/slow.md", classLoader());
+        } catch (JosmanException ex) {
+
+        }
+
+        long[] histogram = evaluator.getHistogram();
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        assertEquals(4, total);
+        // nap and timeout are between 100 ms and 1 s
+        assertEquals(2, histogram[3]);
+
+        String report = evaluator.histogramReport();
+        assertTrue(report, report.contains("Evaluated 4 expressions (3 distinct), 1 timed out"));
+        // sorted by total time, the timeout is cut at 500 ms
+        assertTrue(report, report.indexOf(SLEEPY) < report.indexOf(SHORT_NAP));
+        assertTrue(report, report.indexOf(SHORT_NAP) < report.indexOf(FAST));
+        assertTrue(report, report.contains("docs/nap.md"));
+
+        evaluator.close();
+        assertEquals(0, evaluator.getTimeouts());
+        assertEquals(0, evaluator.getHistogram()[3]);
+    }
+
+    /**
+     * Expressions see the loader they are evaluated with as context class
+     * loader, also on pool threads.
+     */
+    @Test
+    public void testContextClassLoader() {
+        ClassLoader before = Thread.currentThread()
+                                   .getContextClassLoader();
+        ClassLoader loader = new ClassLoader(classLoader()) {
+        };
+        String expected = String.valueOf(System.identityHashCode(loader));
+
+        evaluator = new ExprEvaluator(1000, 1);
+        assertEquals(expected, evaluator.eval(CONTEXT, "docs/a.md", loader));
+        assertEquals(expected, new ExprEvaluator(0, 1).eval(CONTEXT, "docs/a.md", loader));
+        assertSame(before, Thread.currentThread()
+                                 .getContextClassLoader());
+    }
+}
@@ -0,0 +1,88 @@
+package eu.trentorise.opendata.josman;
+
+import static eu.trentorise.opendata.josman.OutputStoreTest.fileKey;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 0.8.0
+ */
+public class JarExtractorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File jar(String name, Map<String, String> entries) throws IOException {
+        File file = new File(folder.getRoot(), name);
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(file))) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                out.putNextEntry(new JarEntry(entry.getKey()));
+                out.write(entry.getValue()
+                               .getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    private static int extract(File jar, File destDir, OutputStore store) {
+        return JarExtractor.extract(jar, destDir, "apidocs/", new PageBatch(null), 2, store);
+    }
+
+    private static String read(File dir, String relPath) throws IOException {
+        return FileUtils.readFileToString(new File(dir, relPath), "UTF-8");
+    }
+
+    /**
+     * Re-extracting a jar with a changed entry rewrites only that file, and
+     * doesn't touch the copies of other versions linked to it.
+     */
+    @Test
+    public void testReextractChangedEntry() throws IOException {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("apidocs/index.html", "<p>index</p>");
+        entries.put("apidocs/a/A.html", "<p>A</p>");
+        entries.put("apidocs/a/B.html", "<p>B</p>");
+        entries.put("other.txt", "not extracted");
+        File jar1 = jar("docs-1.jar", entries);
+
+        File dir1 = folder.newFolder("0.1");
+        File dir2 = folder.newFolder("0.2");
+        OutputStore store = new OutputStore(true);
+        assertEquals(3, extract(jar1, dir1, store));
+        assertEquals(3, extract(jar1, dir2, store));
+        assertEquals(3, store.getLinked());
+        assertFalse(new File(dir2, "other.txt").exists());
+
+        // next build, 0.2 javadoc changed
+        entries.put("apidocs/a/A.html", "<p>A changed</p>");
+        File jar2 = jar("docs-2.jar", entries);
+        OutputStore nextStore = new OutputStore(true);
+        assertEquals(1, extract(jar2, dir2, nextStore));
+
+        assertEquals("<p>A changed</p>", read(dir2, "a/A.html"));
+        assertEquals("<p>A</p>", read(dir1, "a/A.html"));
+        assertFalse(fileKey(new File(dir1, "a/A.html")).equals(fileKey(new File(dir2, "a/A.html"))));
+
+        // unchanged files are still shared
+        assertEquals("<p>B</p>", read(dir1, "a/B.html"));
+        assertEquals(fileKey(new File(dir1, "a/B.html")), fileKey(new File(dir2, "a/B.html")));
+        assertEquals(fileKey(new File(dir1, "index.html")), fileKey(new File(dir2, "index.html")));
+
+        // nothing changed, nothing written
+        assertEquals(0, extract(jar2, dir2, nextStore));
+    }
+}
@@ -0,0 +1,99 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 0.8.0
+ */
+public class LatestDocsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File versionDir;
+
+    private File latestDir;
+
+    @Before
+    public void before() throws IOException {
+        versionDir = folder.newFolder("0.8");
+        latestDir = new File(folder.getRoot(), "latest");
+        FileUtils.write(new File(versionDir, "index.html"), "<p>index</p>", "UTF-8");
+        FileUtils.write(new File(versionDir, "a/b.html"), "<p>b</p>", "UTF-8");
+        FileUtils.write(new File(versionDir, "img/logo.png"), "png", "UTF-8");
+    }
+
+    private static String url(String page) {
+        String prefix = "url=";
+        int start = page.indexOf(prefix) + prefix.length();
+        return page.substring(start, page.indexOf('"', start));
+    }
+
+    @Test
+    public void testRedirectPage() {
+        assertEquals("../0.8/index.html", url(LatestDocs.redirectPage("0.8", "index.html")));
+        assertEquals("../../0.8/a/b.html", url(LatestDocs.redirectPage("0.8", "a/b.html")));
+        assertTrue(LatestDocs.redirectPage("0.8", "a/b.html")
+                             .contains("<link rel=\"canonical\" href=\"../../0.8/a/b.html\">"));
+    }
+
+    @Test
+    public void testRedirect() throws IOException {
+        LatestDocs.create(LatestMode.redirect, versionDir, latestDir);
+
+        assertEquals("../../0.8/a/b.html",
+                url(FileUtils.readFileToString(new File(latestDir, "a/b.html"), "UTF-8")));
+        assertEquals("../0.8/index.html",
+                url(FileUtils.readFileToString(new File(latestDir, "index.html"), "UTF-8")));
+        // only pages are redirected
+        assertFalse(new File(latestDir, "img/logo.png").exists());
+    }
+
+    @Test
+    public void testSymlink() throws IOException {
+        LatestDocs.create(LatestMode.symlink, versionDir, latestDir);
+
+        assertTrue(Files.isSymbolicLink(latestDir.toPath()));
+        // relative, so the site can be moved
+        assertEquals(Paths.get("0.8"), Files.readSymbolicLink(latestDir.toPath()));
+        assertEquals("<p>b</p>", FileUtils.readFileToString(new File(latestDir, "a/b.html"), "UTF-8"));
+    }
+
+    /**
+     * If the link can't be made files are copied. A leftover directory is
+     * the failure easiest to provoke on any filesystem.
+     */
+    @Test
+    public void testSymlinkFallsBackToCopy() throws IOException {
+        assertTrue(latestDir.mkdir());
+
+        LatestDocs.create(LatestMode.symlink, versionDir, latestDir);
+
+        assertFalse(Files.isSymbolicLink(latestDir.toPath()));
+        assertEquals("<p>index</p>", FileUtils.readFileToString(new File(latestDir, "index.html"), "UTF-8"));
+        assertEquals("<p>b</p>", FileUtils.readFileToString(new File(latestDir, "a/b.html"), "UTF-8"));
+        assertTrue(new File(latestDir, "img/logo.png").exists());
+    }
+
+    @Test
+    public void testHardlink() throws IOException {
+        LatestDocs.create(LatestMode.hardlink, versionDir, latestDir);
+
+        File page = new File(latestDir, "a/b.html");
+        assertEquals("<p>b</p>", FileUtils.readFileToString(page, "UTF-8"));
+        assertEquals(OutputStoreTest.fileKey(new File(versionDir, "a/b.html")), OutputStoreTest.fileKey(page));
+    }
+}
@@ -0,0 +1,127 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 0.8.0
+ */
+public class OutputStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    static Object fileKey(File file) throws IOException {
+        return Files.readAttributes(file.toPath(), BasicFileAttributes.class)
+                    .fileKey();
+    }
+
+    @Test
+    public void testIdenticalFilesAreLinked() throws IOException {
+        File a = new File(folder.newFolder("0.1"), "a.html");
+        File b = new File(folder.newFolder("0.2"), "a.html");
+        FileUtils.write(a, "<p>same</p>", "UTF-8");
+        FileUtils.write(b, "<p>same</p>", "UTF-8");
+
+        OutputStore store = new OutputStore(true);
+        store.add(a);
+        store.add(b);
+
+        assertNotNull(fileKey(a));
+        assertEquals(fileKey(a), fileKey(b));
+        assertEquals(1, store.getLinked());
+        assertEquals(a.length(), store.getSavedBytes());
+        assertEquals("<p>same</p>", FileUtils.readFileToString(b, "UTF-8"));
+
+        // adding again doesn't count twice
+        store.add(b);
+        assertEquals(1, store.getLinked());
+    }
+
+    @Test
+    public void testWriteDoesntTouchTwin() throws IOException {
+        File a = new File(folder.newFolder("0.1"), "a.html");
+        File b = new File(folder.newFolder("0.2"), "a.html");
+
+        OutputStore store = new OutputStore(true);
+        store.write("<p>same</p>".getBytes("UTF-8"), a);
+        store.write("<p>same</p>".getBytes("UTF-8"), b);
+        assertEquals(fileKey(a), fileKey(b));
+
+        store.write("<p>changed</p>".getBytes("UTF-8"), b);
+        assertEquals("<p>same</p>", FileUtils.readFileToString(a, "UTF-8"));
+        assertEquals("<p>changed</p>", FileUtils.readFileToString(b, "UTF-8"));
+        assertFalse(fileKey(a).equals(fileKey(b)));
+    }
+
+    @Test
+    public void testNoLink() throws IOException {
+        File a = folder.newFile("a.html");
+        File b = folder.newFile("b.html");
+        FileUtils.write(a, "<p>same</p>", "UTF-8");
+        FileUtils.write(b, "<p>same</p>", "UTF-8");
+
+        OutputStore store = new OutputStore(false);
+        store.add(a);
+        store.add(b);
+
+        assertFalse(fileKey(a).equals(fileKey(b)));
+        assertEquals(0, store.getLinked());
+    }
+
+    @Test
+    public void testCopyIfChangedSkipsUpToDate() throws IOException {
+        File pagesDir = folder.newFolder("pages");
+        File source = folder.newFile("LICENSE.txt");
+        File target = new File(pagesDir, "LICENSE.txt");
+        FileUtils.write(source, "v1", "UTF-8");
+
+        BuildManifest manifest = BuildManifest.load(pagesDir, "site");
+        new OutputStore(false).copyFileIfChanged(source, target, manifest);
+        manifest.save();
+        assertEquals("v1", FileUtils.readFileToString(target, "UTF-8"));
+
+        // so we can tell whether it is copied again
+        FileUtils.write(target, "kept", "UTF-8");
+        manifest = BuildManifest.load(pagesDir, "site");
+        new OutputStore(false).copyFileIfChanged(source, target, manifest);
+        manifest.save();
+        assertEquals("kept", FileUtils.readFileToString(target, "UTF-8"));
+
+        FileUtils.write(source, "v2", "UTF-8");
+        source.setLastModified(source.lastModified() + 2000);
+        manifest = BuildManifest.load(pagesDir, "site");
+        new OutputStore(false).copyFileIfChanged(source, target, manifest);
+        assertEquals("v2", FileUtils.readFileToString(target, "UTF-8"));
+    }
+
+    @Test
+    public void testCopyIfChangedOverride() throws IOException {
+        File pagesDir = folder.newFolder("pages");
+        File templateImg = folder.newFile("template.png");
+        File docsImg = folder.newFile("docs.png");
+        File target = new File(pagesDir, "img/logo.png");
+        FileUtils.write(templateImg, "template", "UTF-8");
+        FileUtils.write(docsImg, "docs", "UTF-8");
+
+        for (int i = 0; i < 2; i++) {
+            BuildManifest manifest = BuildManifest.load(pagesDir, "site");
+            OutputStore store = new OutputStore(false);
+            store.copyFileIfChanged(templateImg, target, manifest);
+            store.copyFileIfChanged(docsImg, target, manifest);
+            manifest.save();
+            assertEquals("docs", FileUtils.readFileToString(target, "UTF-8"));
+        }
+    }
+}
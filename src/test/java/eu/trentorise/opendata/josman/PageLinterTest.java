@@ -0,0 +1,154 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import eu.trentorise.opendata.josman.exceptions.ExprNotFoundException;
+import eu.trentorise.opendata.josman.exceptions.JosmanException;
+
+/**
+ * @since 0.8.0
+ */
+public class PageLinterTest {
+
+    private static final Map<String, String> NO_EVALS = Collections.emptyMap();
+
+    private static final VarExpander VARS = new VarExpander(Collections.singletonMap("project.version", "1.2.3"),
+            Collections.<String, String> emptyMap());
+
+    @Test
+    public void testTodoOnlyForReleases() {
+        String md = "# Title\n\nTODO write intro\n";
+
+        List<PageLinter.Issue> issues = new PageLinter(true).lint("docs/README.md", md, VARS, NO_EVALS);
+        assertEquals(1, issues.size());
+        assertEquals(PageLinter.Kind.TODO, issues.get(0).kind);
+        assertEquals("docs/README.md:3: found 'TODO'", issues.get(0)
+                                                          .toString());
+
+        assertTrue(new PageLinter(false).lint("docs/README.md", md, VARS, NO_EVALS)
+                                        .isEmpty());
+
+        // just a warning
+        new PageLinter(true).check("docs/README.md", md, VARS, NO_EVALS, true);
+    }
+
+    @Test
+    public void testUnresolvedVariable() {
+        String md = "Version ${project.version}\n"
+                + "\n"
+                + "Missing ${project.nope} and $'{escaped}\n";
+
+        List<PageLinter.Issue> issues = new PageLinter(false).lint("docs/a/b.md", md, VARS, NO_EVALS);
+        assertEquals(1, issues.size());
+        assertEquals(PageLinter.Kind.UNRESOLVED_VARIABLE, issues.get(0).kind);
+        assertEquals("docs/a/b.md:3: unresolved variable ${project.nope}", issues.get(0)
+                                                                               .toString());
+
+        new PageLinter(false).check("docs/a/b.md", md, VARS, NO_EVALS, false);
+        try {
+            new PageLinter(false).check("docs/a/b.md", md, VARS, NO_EVALS, true);
+            fail("Should have failed on unresolved variable!");
+        } catch (ExprNotFoundException ex) {
+            fail("Variables are not expressions!");
+        } catch (JosmanException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage()
+                                          .contains("docs/a/b.md:3"));
+        }
+    }
+
+    @Test
+    public void testNoUnresolvedVariableInCode() {
+        String md = "Use `${project.nope}` in poms\n"
+                + "\n"
+                + "```xml\n"
+                + "<version>${project.nope}</version>\n"
+                + "```\n"
+                + "~~~\n"
+                + "${in.tilde.fence}\n"
+                + "~~~\n"
+                + "after ${project.nope}";
+
+        List<PageLinter.Issue> issues = new PageLinter(false).lint("docs/README.md", md, VARS, NO_EVALS);
+        assertEquals(1, issues.size());
+        assertEquals(9, issues.get(0).line);
+        assertEquals("${project.nope}", issues.get(0).text);
+    }
+
+    @Test
+    public void testNoUnresolvedVariableInIndentedCode() {
+        String md = "Configure it like this:\n"
+                + "\n"
+                + "    <version>${project.nope}</version>\n"
+                + "\n"
+                + "\t${tab.indented}\n"
+                + "paragraph ${project.nope}\n"
+                + "    lazy continuation ${project.nope}\n"
+                + "\n"
+                + "- item\n"
+                + "\n"
+                + "    item paragraph ${project.nope}\n"
+                + "\n"
+                + "        ${item.code}\n";
+
+        List<PageLinter.Issue> issues = new PageLinter(false).lint("docs/README.md", md, VARS, NO_EVALS);
+        assertEquals(3, issues.size());
+        assertEquals(6, issues.get(0).line);
+        assertEquals(7, issues.get(1).line);
+        assertEquals(11, issues.get(2).line);
+    }
+
+    @Test
+    public void testNoUnresolvedVariableInHtml() {
+        String md = "<pre>\n"
+                + "${in.pre}\n"
+                + "\n"
+                + "${still.in.pre}\n"
+                + "</pre>\n"
+                + "<!--\n"
+                + "${in.comment}\n"
+                + "-->\n"
+                + "<div class=\"x\">\n"
+                + "${in.div}\n"
+                + "\n"
+                + "<b>inline</b> ${project.nope}\n";
+
+        List<PageLinter.Issue> issues = new PageLinter(false).lint("docs/README.md", md, VARS, NO_EVALS);
+        assertEquals(1, issues.size());
+        assertEquals(12, issues.get(0).line);
+    }
+
+    @Test
+    public void testMissingEval() {
+        String md = "Found $eval{a.B.c()}\n"
+                + "and $eval{a.B.missing()}\n"
+                + "but not $evalNow{a.B.now()}\n";
+        Map<String, String> evals = Collections.singletonMap("a.B.c()", "c");
+
+        List<PageLinter.Issue> issues = new PageLinter(false).lint("docs/README.md", md, VARS, evals);
+        assertEquals(1, issues.size());
+        assertEquals(PageLinter.Kind.MISSING_EVAL, issues.get(0).kind);
+        assertEquals(2, issues.get(0).line);
+        assertEquals("a.B.missing()", issues.get(0).text);
+
+        // only logged
+        new PageLinter(false).check("docs/README.md", md, VARS, evals, false);
+
+        try {
+            new PageLinter(false).check("docs/README.md", md, VARS, evals, true);
+            fail("Should have failed on missing expression!");
+        } catch (ExprNotFoundException ex) {
+            assertEquals("docs/README.md", ex.getRelPath());
+            assertEquals("a.B.missing()", ex.getExpr());
+            assertTrue(ex.getMessage(), ex.getMessage()
+                                          .contains("docs/README.md:2"));
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 0.8.0
+ */
+public class RenderCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String key(int format, String source) {
+        return new Fingerprint().put(String.valueOf(format))
+                                .put(source)
+                                .hex();
+    }
+
+    @Test
+    public void testHitReturnsSameHtml() throws IOException {
+        File dir = folder.newFolder("cache");
+        RenderCache cache = new RenderCache(dir);
+        String key = key(JosmanProject.RENDER_CACHE_FORMAT, "# Title");
+        String content = "<h1 id=\"title\">Title \u00e8</h1>\n<p>a\r\nb</p>";
+        String sidebar = "<ul><li><a href=\"#title\">Title</a></li></ul>";
+
+        assertNull(cache.get(key));
+        cache.put(key, new RenderCache.Entry(content, sidebar));
+
+        // as another build would see it
+        RenderCache.Entry entry = new RenderCache(dir).get(key);
+        assertNotNull(entry);
+        assertEquals(content, entry.content);
+        assertEquals(sidebar, entry.sidebar);
+
+        String rootKey = key(JosmanProject.RENDER_CACHE_FORMAT, "root");
+        cache.put(rootKey, new RenderCache.Entry(content, null));
+        assertNull(cache.get(rootKey).sidebar);
+    }
+
+    @Test
+    public void testKeyChangeMisses() throws IOException {
+        RenderCache cache = new RenderCache(folder.newFolder("cache"));
+        cache.put(key(JosmanProject.RENDER_CACHE_FORMAT, "# Title"), new RenderCache.Entry("<h1>Title</h1>", null));
+
+        assertNull(cache.get(key(JosmanProject.RENDER_CACHE_FORMAT + 1, "# Title")));
+        assertNull(cache.get(key(JosmanProject.RENDER_CACHE_FORMAT, "# Other")));
+    }
+
+    @Test
+    public void testCorruptEntryMisses() throws IOException {
+        File dir = folder.newFolder("cache");
+        RenderCache cache = new RenderCache(dir);
+        String key = key(JosmanProject.RENDER_CACHE_FORMAT, "# Title");
+        cache.put(key, new RenderCache.Entry("<h1>Title</h1>", null));
+
+        File entry = new File(new File(dir, key.substring(0, 2)), key + ".josc");
+        FileUtils.write(entry, "99 -1\n<h1>", "UTF-8");
+        assertNull(cache.get(key));
+    }
+}
@@ -0,0 +1,152 @@
+package eu.trentorise.opendata.josman;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+/**
+ * @since 0.8.0
+ */
+public class TaskGraphTest {
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    private Runnable logging(final String name, final long sleepMillis) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add("start " + name);
+                try {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread()
+                          .interrupt();
+                }
+                log.add("end " + name);
+            }
+        };
+    }
+
+    private void assertBefore(String first, String then) {
+        int i = log.indexOf(first);
+        int j = log.indexOf(then);
+        assertTrue(first + " not found in " + log, i != -1);
+        assertTrue(then + " not found in " + log, j != -1);
+        assertTrue("Expected " + first + " before " + then + " in " + log, i < j);
+    }
+
+    @Test
+    public void testDependencyOrder() {
+        TaskGraph graph = new TaskGraph(4);
+        // slow roots, so dependents would overtake them if not waiting
+        graph.add("javadoc 1.2.1", logging("javadoc 1.2.1", 200));
+        graph.add("docs 1.2.1", logging("docs 1.2.1", 100), "javadoc 1.2.1");
+        graph.add("docs 1.1.0", logging("docs 1.1.0", 0));
+        graph.add("snapshot docs", logging("snapshot docs", 0), "javadoc 1.2.1", "docs 1.2.1");
+        graph.add("latest docs", logging("latest docs", 0), "snapshot docs");
+
+        graph.run();
+
+        assertEquals(10, log.size());
+        assertBefore("end javadoc 1.2.1", "start docs 1.2.1");
+        assertBefore("end docs 1.2.1", "start snapshot docs");
+        assertBefore("end snapshot docs", "start latest docs");
+        // independent tasks don't wait
+        assertBefore("end docs 1.1.0", "end javadoc 1.2.1");
+    }
+
+    @Test
+    public void testInvalidDependencies() {
+        TaskGraph graph = new TaskGraph(1);
+        graph.add("a", logging("a", 0));
+        try {
+            graph.add("a", logging("a", 0));
+            fail("Should have refused duplicate task!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        try {
+            graph.add("b", logging("b", 0), "missing");
+            fail("Should have refused missing dependency!");
+        } catch (IllegalArgumentException ex) {
+
+        }
+        assertTrue(graph.contains("a"));
+        assertFalse(graph.contains("b"));
+    }
+
+    /**
+     * The first error is rethrown as is once running tasks are over, and no
+     * other task is started, even if its dependencies succeeded.
+     */
+    @Test
+    public void testFirstErrorAborts() throws InterruptedException {
+        final IllegalStateException first = new IllegalStateException("first");
+        final CountDownLatch failed = new CountDownLatch(1);
+        final AtomicBoolean slowDone = new AtomicBoolean();
+        TaskGraph graph = new TaskGraph(2);
+        graph.add("failing", new Runnable() {
+            @Override
+            public void run() {
+                failed.countDown();
+                throw first;
+            }
+        });
+        graph.add("slow", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    failed.await(5, TimeUnit.SECONDS);
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread()
+                          .interrupt();
+                }
+                slowDone.set(true);
+            }
+        });
+        graph.add("after slow", logging("after slow", 0), "slow");
+
+        try {
+            graph.run();
+            fail("Should have failed!");
+        } catch (IllegalStateException ex) {
+            assertSame(first, ex);
+        }
+        // running tasks are waited for
+        assertTrue(slowDone.get());
+        assertTrue(log.toString(), log.isEmpty());
+    }
+
+    @Test
+    public void testDependentsNotStartedAfterFailure() {
+        TaskGraph graph = new TaskGraph(1);
+        graph.add("javadoc 1.2.1", new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalArgumentException("no javadoc");
+            }
+        });
+        graph.add("docs 1.2.1", logging("docs 1.2.1", 0), "javadoc 1.2.1");
+        graph.add("snapshot docs", logging("snapshot docs", 0), "docs 1.2.1");
+
+        try {
+            graph.run();
+            fail("Should have failed!");
+        } catch (IllegalArgumentException ex) {
+            assertEquals("no javadoc", ex.getMessage());
+        }
+        assertTrue(log.toString(), log.isEmpty());
+    }
+}
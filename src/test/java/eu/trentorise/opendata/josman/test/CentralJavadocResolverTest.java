@@ -0,0 +1,196 @@
+package eu.trentorise.opendata.josman.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import eu.trentorise.opendata.commons.SemVersion;
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.josman.CentralJavadocResolver;
+import eu.trentorise.opendata.josman.JosmanProject;
+import eu.trentorise.opendata.josman.exceptions.JosmanNotFoundException;
+
+/**
+ * Tests reading single jar entries against a local stub of a Maven
+ * repository.
+ */
+public class CentralJavadocResolverTest {
+
+    private static final String JAR_PATH = "/org/example/art/1.2.3/art-1.2.3-javadoc.jar";
+
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private String repoUrl;
+
+    private byte[] jar;
+
+    private byte[] evals;
+
+    private volatile boolean supportsRanges = true;
+
+    private final AtomicLong served = new AtomicLong();
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(CentralJavadocResolverTest.class);
+    }
+
+    @Before
+    public void before() throws IOException {
+        evals = "expr,eval\n\"1+1\",\"2\"\n".getBytes("UTF-8");
+        jar = makeJar(evals);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        repoUrl = "http://127.0.0.1:" + server.getAddress()
+                                              .getPort();
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                if (!JAR_PATH.equals(exchange.getRequestURI()
+                                             .getPath())) {
+                    exchange.sendResponseHeaders(404, -1);
+                    exchange.close();
+                    return;
+                }
+                String range = exchange.getRequestHeaders()
+                                       .getFirst("Range");
+                int from = 0;
+                int to = jar.length - 1;
+                int code = 200;
+                if (supportsRanges && range != null) {
+                    Matcher m = RANGE.matcher(range);
+                    assertTrue(m.matches());
+                    if (m.group(1)
+                         .isEmpty()) {
+                        from = Math.max(0, jar.length - Integer.parseInt(m.group(2)));
+                    } else {
+                        from = Integer.parseInt(m.group(1));
+                        to = Math.min(to, Integer.parseInt(m.group(2)));
+                    }
+                    code = 206;
+                    exchange.getResponseHeaders()
+                            .add("Content-Range", "bytes " + from + "-" + to + "/" + jar.length);
+                }
+                int length = to - from + 1;
+                exchange.sendResponseHeaders(code, length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(jar, from, length);
+                }
+                served.addAndGet(length);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void after() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * A jar with the eval map plus a big random file, half stored and half
+     * deflated entries.
+     */
+    private static byte[] makeJar(byte[] evals) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JarOutputStream out = new JarOutputStream(bytes)) {
+            byte[] big = new byte[1024 * 1024];
+            new Random(0).nextBytes(big);
+            JarEntry bigEntry = new JarEntry("big.bin");
+            bigEntry.setMethod(ZipEntry.STORED);
+            bigEntry.setSize(big.length);
+            CRC32 crc = new CRC32();
+            crc.update(big);
+            bigEntry.setCrc(crc.getValue());
+            out.putNextEntry(bigEntry);
+            out.write(big);
+            out.closeEntry();
+
+            for (int i = 0; i < 100; i++) {
+                out.putNextEntry(new JarEntry("pkg/Class" + i + ".html"));
+                out.write(("<html>" + i + "</html>").getBytes("UTF-8"));
+                out.closeEntry();
+            }
+
+            out.putNextEntry(new JarEntry(JosmanProject.RELATIVE_EVAL_FILEPATH));
+            out.write(evals);
+            out.closeEntry();
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testRangeRequests() throws IOException {
+        CentralJavadocResolver resolver = new CentralJavadocResolver(repoUrl, folder.newFolder("cache"));
+
+        byte[] read = resolver.fetchEntry("org.example", "art", SemVersion.of("1.2.3"),
+                JosmanProject.RELATIVE_EVAL_FILEPATH);
+        assertArrayEquals(evals, read);
+        assertTrue("Served " + served.get() + " bytes of a " + jar.length + " bytes jar",
+                served.get() < jar.length / 4);
+
+        assertArrayEquals("<html>7</html>".getBytes("UTF-8"), resolver.fetchEntry("org.example", "art",
+                SemVersion.of("1.2.3"), "pkg/Class7.html"));
+
+        assertNull(resolver.fetchEntry("org.example", "art", SemVersion.of("1.2.3"), "missing.txt"));
+
+        // now it's cached
+        long before = served.get();
+        assertArrayEquals(evals, resolver.fetchEntry("org.example", "art", SemVersion.of("1.2.3"),
+                JosmanProject.RELATIVE_EVAL_FILEPATH));
+        assertNull(resolver.fetchEntry("org.example", "art", SemVersion.of("1.2.3"), "missing.txt"));
+        assertEquals(before, served.get());
+    }
+
+    @Test
+    public void testWithoutRangeSupport() throws IOException {
+        supportsRanges = false;
+        CentralJavadocResolver resolver = new CentralJavadocResolver(repoUrl, folder.newFolder("cache"));
+        assertArrayEquals(evals, resolver.fetchEntry("org.example", "art", SemVersion.of("1.2.3"),
+                JosmanProject.RELATIVE_EVAL_FILEPATH));
+    }
+
+    @Test
+    public void testNotFound() {
+        CentralJavadocResolver resolver = new CentralJavadocResolver(repoUrl, null);
+        try {
+            resolver.fetchEntry("org.example", "art", SemVersion.of("9.9.9"), JosmanProject.RELATIVE_EVAL_FILEPATH);
+            fail("Shouldn't find a missing jar!");
+        } catch (JosmanNotFoundException ex) {
+
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package eu.trentorise.opendata.josman.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.josman.Josmans;
+
+/**
+ * Benchmarks scanning for expressions on inputs which made the old regex
+ * quadratic. Doubling the input should roughly double the time.
+ *
+ * @since 0.8.0
+ */
+public class ExprScannerSlowTest {
+
+    private static final Logger LOG = Logger.getLogger(ExprScannerSlowTest.class.getName());
+
+    private static final int SIZE = 200000;
+
+    private static final Map<String, String> EVALS = Collections.singletonMap("a", "x");
+
+    /**
+     * Quadratic scanning would give 16
+     */
+    private static final double MAX_RATIO = 8;
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(ExprScannerSlowTest.class);
+    }
+
+    private static String repeat(String s, int length) {
+        StringBuilder sb = new StringBuilder(length + s.length());
+        while (sb.length() < length) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Best of a few runs, in nanosecs
+     */
+    private static long time(String text) {
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            long start = System.nanoTime();
+            Josmans.expandExprs(text, EVALS, "test-path",
+                    ExprScannerSlowTest.class.getClassLoader(), false);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void checkLinear(String unit) {
+        // warm up
+        time(repeat(unit, SIZE));
+
+        long small = time(repeat(unit, SIZE));
+        long big = time(repeat(unit, 4 * SIZE));
+        double ratio = (double) big / Math.max(1, small);
+        LOG.info("'" + unit + "': " + SIZE + " chars in " + small / 1000 + " us, " + 4 * SIZE + " chars in "
+                + big / 1000 + " us, ratio " + ratio);
+        assertTrue("Scanning doesn't look linear, time ratio for 4x input is " + ratio, ratio < MAX_RATIO);
+    }
+
+    @Test
+    public void testUnclosedParens() {
+        checkLinear("$eval{a(");
+    }
+
+    @Test
+    public void testUnclosedBraces() {
+        checkLinear("$evalNow{ a.b ");
+    }
+
+    @Test
+    public void testManyParens() {
+        checkLinear("$eval{a()");
+    }
+
+    /**
+     * Many statements actually found, among escaped ones
+     */
+    @Test
+    public void testManyStatements() {
+        checkLinear("$eval{a} $'eval{a} ");
+    }
+
+    @Test
+    public void testEscapes() {
+        checkLinear("$'eval{a}$'evalNow{b}");
+    }
+}
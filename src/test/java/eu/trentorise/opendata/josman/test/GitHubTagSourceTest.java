@@ -0,0 +1,178 @@
+package eu.trentorise.opendata.josman.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import eu.trentorise.opendata.commons.TodConfig;
+import eu.trentorise.opendata.josman.GitHubTagSource;
+import eu.trentorise.opendata.josman.exceptions.JosmanIoException;
+
+/**
+ * Tests tags caching against a local stub of GitHub API.
+ */
+public class GitHubTagSourceTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    private String apiUrl;
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    private volatile String page1 = "[{\"name\":\"repo-0.2.0\"}]";
+
+    private volatile String page2 = "[{\"name\":\"repo-0.1.0\"}]";
+
+    private static String etag(String body) {
+        return "\"" + Integer.toHexString(body.hashCode()) + "\"";
+    }
+
+    @BeforeClass
+    public static void beforeClass() {
+        TodConfig.init(GitHubTagSourceTest.class);
+    }
+
+    @Before
+    public void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        apiUrl = "http://127.0.0.1:" + server.getAddress()
+                                             .getPort();
+        server.createContext("/repos/org/repo/tags", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                String query = exchange.getRequestURI()
+                                       .getQuery();
+                String body;
+                if (query.contains("page=2")) {
+                    body = page2;
+                } else {
+                    body = page1;
+                    exchange.getResponseHeaders()
+                            .add("Link", "<" + apiUrl + "/repos/org/repo/tags?per_page=100&page=2>; rel=\"next\"");
+                }
+                if (etag(body).equals(exchange.getRequestHeaders()
+                                              .getFirst("If-None-Match"))) {
+                    notModified.incrementAndGet();
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders()
+                        .add("ETag", etag(body));
+                byte[] bytes = body.getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void after() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void testPagesAndConditionalRequests() throws IOException {
+        File cacheDir = folder.newFolder("cache");
+
+        List<RepositoryTag> tags = new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+        assertEquals(2, tags.size());
+        assertEquals("repo-0.2.0", tags.get(0)
+                                       .getName());
+        assertEquals("repo-0.1.0", tags.get(1)
+                                       .getName());
+        assertEquals(2, requests.get());
+
+        // expired cache is revalidated, page by page
+        tags = new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+        assertEquals(2, tags.size());
+        assertEquals(4, requests.get());
+        assertEquals(2, notModified.get());
+
+        // fresh cache is used as is
+        tags = new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 60000).fetchTags();
+        assertEquals(2, tags.size());
+        assertEquals(4, requests.get());
+    }
+
+    /**
+     * Tags are not listed by creation date, so a new tag may only change a
+     * page after the first one.
+     */
+    @Test
+    public void testChangeOnLaterPage() throws IOException {
+        File cacheDir = folder.newFolder("cache");
+        new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+
+        page2 = "[{\"name\":\"repo-0.1.0\"},{\"name\":\"repo-0.1.1\"}]";
+        List<RepositoryTag> tags = new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+        assertEquals(3, tags.size());
+        assertEquals("repo-0.2.0", tags.get(0)
+                                       .getName());
+        assertEquals("repo-0.1.1", tags.get(2)
+                                       .getName());
+        assertEquals(1, notModified.get());
+
+        // deleted tags are noticed too
+        page2 = "[]";
+        tags = new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+        assertEquals(1, tags.size());
+    }
+
+    @Test
+    public void testOffline() throws IOException {
+        File cacheDir = folder.newFolder("cache");
+
+        new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+        server.stop(0);
+        server = null;
+
+        List<RepositoryTag> tags = new GitHubTagSource(apiUrl, "org", "repo", null, cacheDir, 0).fetchTags();
+        assertEquals(2, tags.size());
+
+        try {
+            new GitHubTagSource(apiUrl, "org", "repo", null, folder.newFolder("empty-cache"), 0).fetchTags();
+            fail("Shouldn't be able to fetch tags without server nor cache!");
+        } catch (JosmanIoException ex) {
+
+        }
+    }
+
+    @Test
+    public void testWithoutCache() {
+        new GitHubTagSource(apiUrl, "org", "repo", null, null, 60000).fetchTags();
+        List<RepositoryTag> tags = new GitHubTagSource(apiUrl, "org", "repo", null, null, 60000).fetchTags();
+        assertEquals(2, tags.size());
+        assertEquals(4, requests.get());
+        assertEquals(0, notModified.get());
+    }
+}
@@ -4,6 +4,10 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.collect.ImmutableList;
 import eu.trentorise.opendata.commons.TodConfig;
 import static eu.trentorise.opendata.commons.TodUtils.checkNotEmpty;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import eu.trentorise.opendata.josman.FileTagSource;
+import eu.trentorise.opendata.josman.GitTagSource;
 import eu.trentorise.opendata.josman.Josmans;
 import java.io.File;
 import java.io.IOException;
@@ -59,6 +63,51 @@ public class GitTest {
         }
     }
 
+    @Test
+    public void testGitTagSource() throws IOException, GitAPIException {
+        File repoFile = createSampleGitRepo();
+        Repository repo = new FileRepositoryBuilder().setGitDir(repoFile)
+                                                     .build();
+        Git git = new Git(repo);
+        git.tag()
+           .setName("josman-0.1.0")
+           .setMessage("annotated")
+           .call();
+        git.tag()
+           .setName("josman-0.2.0")
+           .setAnnotated(false)
+           .call();
+        String headSha = repo.resolve(Constants.HEAD)
+                             .name();
+
+        GitTagSource tagSource = new GitTagSource(repo);
+        assertTrue(tagSource.hasTags());
+        SortedMap<String, RepositoryTag> tags = Josmans.versionTags("josman", tagSource.fetchTags());
+        assertEquals(2, tags.size());
+        for (RepositoryTag tag : tags.values()) {
+            assertEquals(headSha, tag.getCommit()
+                                     .getSha());
+        }
+        repo.close();
+    }
+
+    @Test
+    public void testFileTagSource() throws IOException {
+        File file = File.createTempFile("josman-tags", ".txt");
+        file.deleteOnExit();
+        FileUtils.writeStringToFile(file, "# released\njosman-0.1.0 abc\n\njosman-0.2.0\n", "UTF-8");
+
+        List<RepositoryTag> tags = new FileTagSource(file).fetchTags();
+        assertEquals(2, tags.size());
+        assertEquals("josman-0.1.0", tags.get(0)
+                                         .getName());
+        assertEquals("abc", tags.get(0)
+                                .getCommit()
+                                .getSha());
+        assertEquals("josman-0.2.0", tags.get(1)
+                                         .getName());
+    }
+
     @Test
     public void testReadRepo() throws IOException, GitAPIException {
         File repoFile = createSampleGitRepo();
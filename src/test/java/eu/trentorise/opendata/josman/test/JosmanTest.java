@@ -1,5 +1,7 @@
 package eu.trentorise.opendata.josman.test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -67,6 +69,122 @@ public class JosmanTest {
         prj.generateSite();
     }
     
+    /**
+     * @since 0.8.0
+     */
+    @Test
+    public void testParallelPages() throws IOException {
+        MavenProject mvnPrj = createMinimalProject();
+        File sourceRepo = createMinimalRepo();
+
+        for (int i = 0; i < 20; i++) {
+            try (PrintWriter out = new PrintWriter(new File(sourceRepo, "docs/Page" + i + ".md"))) {
+                out.println("### Page " + i + " ${project.version}");
+            }
+        }
+
+        String pagesDirPath = folder.newFolder("site")
+                                    .getAbsolutePath();
+
+        JosmanProject prj = new JosmanProject(mvnPrj,
+                JosmanConfig.builder()
+                            .setSourceRepoDir(sourceRepo.getAbsolutePath())
+                            .setPagesDir(pagesDirPath)
+                            .setThreads(4)
+                            .build());
+
+        prj.generateSite();
+
+        for (int i = 0; i < 20; i++) {
+            String output = FileUtils.readFileToString(
+                    new File(pagesDirPath, Josmans.majorMinor(SemVersion.of(mvnPrj.getVersion())) + "/Page" + i + ".html"),
+                    "UTF-8");
+            assertTrue(output.contains("Page " + i + " " + mvnPrj.getVersion()));
+        }
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Test
+    public void testLinks() throws IOException {
+        MavenProject mvnPrj = createMinimalProject();
+        File sourceRepo = createMinimalRepo();
+
+        try (PrintWriter out = new PrintWriter(new File(sourceRepo, "docs/Links.md"))) {
+            out.println("### Some heading");
+            out.println();
+            out.println("[md](Other.md) [anchor](Other.md#a)");
+            out.println();
+            out.println("<a href=\"Verbatim.md\">verbatim</a>");
+        }
+
+        String pagesDirPath = folder.newFolder("site")
+                                    .getAbsolutePath();
+
+        new JosmanProject(mvnPrj,
+                JosmanConfig.builder()
+                            .setSourceRepoDir(sourceRepo.getAbsolutePath())
+                            .setPagesDir(pagesDirPath)
+                            .build()).generateSite();
+
+        String output = FileUtils.readFileToString(
+                new File(pagesDirPath, Josmans.majorMinor(SemVersion.of(mvnPrj.getVersion())) + "/Links.html"),
+                "UTF-8");
+        assertTrue(output.contains("href=\"Other.html\""));
+        assertTrue(output.contains("href=\"Other.html#a\""));
+        assertTrue(output.contains("href=\"Verbatim.html\""));
+        // sidebar
+        assertTrue(output.contains(">Some heading</a></div>"));
+    }
+
+    /**
+     * @since 0.8.0
+     */
+    @Test
+    public void testIncremental() throws IOException {
+        MavenProject mvnPrj = createMinimalProject();
+        File sourceRepo = createMinimalRepo();
+
+        for (String name : new String[] { "Kept", "Changed", "Removed" }) {
+            try (PrintWriter out = new PrintWriter(new File(sourceRepo, "docs/" + name + ".md"))) {
+                out.println("### " + name + " page");
+            }
+        }
+
+        String pagesDirPath = folder.newFolder("site")
+                                    .getAbsolutePath();
+        File versionDir = new File(pagesDirPath, Josmans.majorMinor(SemVersion.of(mvnPrj.getVersion())));
+
+        JosmanConfig cfg = JosmanConfig.builder()
+                                       .setSourceRepoDir(sourceRepo.getAbsolutePath())
+                                       .setPagesDir(pagesDirPath)
+                                       .setIncremental(true)
+                                       .build();
+
+        new JosmanProject(mvnPrj, cfg).generateSite();
+
+        File kept = new File(versionDir, "Kept.html");
+        File changed = new File(versionDir, "Changed.html");
+        File removed = new File(versionDir, "Removed.html");
+        assertTrue(kept.exists());
+        assertTrue(removed.exists());
+        assertTrue(kept.setLastModified(1000));
+
+        try (PrintWriter out = new PrintWriter(new File(sourceRepo, "docs/Changed.md"))) {
+            out.println("### Changed page again");
+        }
+        assertTrue(new File(sourceRepo, "docs/Removed.md").delete());
+
+        new JosmanProject(mvnPrj, cfg).generateSite();
+
+        assertEquals(1000, kept.lastModified());
+        assertTrue(FileUtils.readFileToString(changed, "UTF-8")
+                            .contains("Changed page again"));
+        assertFalse(removed.exists());
+        assertFalse(new File(pagesDirPath, "latest/Removed.html").exists());
+    }
+
     /**
      * @since 0.8.0
      */    
@@ -168,6 +286,7 @@ public class JosmanTest {
     public void testVariables() throws IOException {
         
         MavenProject mvnPrj = createMinimalProject();
+        mvnPrj.getProperties().setProperty("my.prop", "my$value\\");
                         
         File sourceRepo = createMinimalRepo();
         
@@ -182,6 +301,7 @@ public class JosmanTest {
             out.println("d$'{project.version} e$'{josman.majorMinorVersion} f$'{josman.repoRelease}   " );
             out.println("g#{version} h#{majorMinorVersion} i#{repoRelease} " );
             out.println("l#'{version} m#'{majorMinorVersion} n#'{repoRelease} " );            
+            out.println("o${my.prop} p$'{my.prop} q${not.a.prop} r${jedoc.majorMinorVersion}" );
             out.close();
         }
                
@@ -222,6 +342,11 @@ public class JosmanTest {
         assertTrue(output.contains("l#{version}"));        
         assertTrue(output.contains("m#{majorMinorVersion}"));
         assertTrue(output.contains("n#{repoRelease}"));
+
+        assertTrue(output.contains("omy$value\\"));
+        assertTrue(output.contains("p${my.prop}"));
+        assertTrue(output.contains("q${not.a.prop}"));
+        assertTrue(output.contains("r"+Josmans.majorMinor(SemVersion.of(mvnPrj.getVersion()))));
         
     }
     
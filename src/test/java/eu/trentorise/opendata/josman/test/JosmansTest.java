@@ -1,5 +1,6 @@
 package eu.trentorise.opendata.josman.test;
 
+import eu.trentorise.opendata.commons.SemVersion;
 import eu.trentorise.opendata.commons.TodConfig;
 import eu.trentorise.opendata.josman.Josmans;
 import eu.trentorise.opendata.josman.exceptions.ExprNotFoundException;
@@ -7,11 +8,16 @@ import eu.trentorise.opendata.josman.exceptions.JosmanException;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
+import org.eclipse.egit.github.core.RepositoryTag;
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import static org.junit.Assert.assertEquals;
 import org.junit.BeforeClass;
@@ -19,6 +25,7 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 /**
@@ -34,6 +41,8 @@ public class JosmansTest {
      */
     public static final String TEST_STRING = "test string";
 
+    public static int counter = 0;
+
     @Rule
     public TemporaryFolder folder = new TemporaryFolder();
 
@@ -80,6 +89,30 @@ public class JosmansTest {
 
     }
 
+    private static RepositoryTag tag(String name) {
+        RepositoryTag ret = new RepositoryTag();
+        ret.setName(name);
+        return ret;
+    }
+
+    @Test
+    public void testVersionTags() {
+        List<RepositoryTag> tags = ImmutableList.of(tag("josman-0.10.0"),
+                tag("josman-0.9.0"),
+                tag("other-1.0.0"),
+                tag("josman-0.9.1"),
+                tag("josman-0.2.0"));
+
+        assertEquals(ImmutableList.of("josman-0.2.0", "josman-0.9.1", "josman-0.10.0"),
+                ImmutableList.copyOf(Josmans.versionTags("josman", tags)
+                                            .keySet()));
+        assertEquals(SemVersion.of("0.10.0"), Josmans.latestVersion("josman", tags));
+        assertEquals(ImmutableList.of("josman-0.2.0", "josman-0.10.0"),
+                ImmutableList.copyOf(Josmans.versionTagsToProcess("josman", tags,
+                        ImmutableList.of(SemVersion.of("0.9.1")))
+                                            .keySet()));
+    }
+
     @Test
     public void testHtmlizePath() {
         assertEquals("docs/BLA.html", Josmans.htmlizePath("docs\\BLA.md"));
@@ -191,6 +224,49 @@ public class JosmansTest {
         assertEquals("3-"+TEST_STRING, output);
     }
     
+    /**
+     * For testing doc expressions
+     * 
+     * @since 0.8.0
+     */
+    public static String contextClassLoader(){
+        return String.valueOf(System.identityHashCode(Thread.currentThread().getContextClassLoader()));
+    }
+
+    /**
+     * Expressions must see the class loader they are evaluated with as thread
+     * context class loader, like they would in tests.
+     * 
+     * @since 0.8.0
+     */
+    @Test
+    public void testEvalNowContextClassLoader() throws IOException{
+        ClassLoader before = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader loader = new URLClassLoader(new URL[0], this.getClass().getClassLoader())) {
+            assertEquals(String.valueOf(System.identityHashCode(loader)),
+                    Josmans.evalNow(this.getClass().getCanonicalName() + ".contextClassLoader()",
+                            "test-path", loader));
+        }
+        Assert.assertSame(before, Thread.currentThread().getContextClassLoader());
+    }
+
+    /**
+     * Resolved expressions are reused, but non final fields must still be read
+     * each time.
+     * 
+     * @since 0.8.0
+     */
+    @Test
+    public void testEvalNowRepeated(){
+        String expr = this.getClass().getCanonicalName() + ".counter";
+        for (int i = 0; i < 3; i++){
+            counter = i;
+            assertEquals(String.valueOf(i), Josmans.evalNow(expr, "test-path", this.getClass().getClassLoader()));
+            assertEquals(TEST_STRING, Josmans.evalNow(this.getClass().getCanonicalName() + ".TEST_STRING", 
+                    "test-path", this.getClass().getClassLoader()));
+        }
+    }
+    
     /**
      * @since 0.8.0
      */
@@ -267,7 +343,20 @@ public class JosmansTest {
                 false);
         assertEquals("$evalNow{a}", output);
     }
-    
+
+    /**
+     * @since 0.8.0
+     */
+    @Test
+    public void testEscapesAmongExprs(){
+        String output = Josmans.expandExprs("$'eval{a} $eval{ a }$'evalNow{b}$eval{a(\n)}",
+                ImmutableMap.of("a", "x"),
+                "test-path",
+                this.getClass().getClassLoader(),
+                false);
+        assertEquals("$eval{a} x$evalNow{b}$eval{a(\n)}", output);
+    }
+
     /**
      * @since 0.8.0
      */
@@ -284,9 +373,35 @@ public class JosmansTest {
         Map<String, String> readMap = Josmans.loadEvalMap(file);
         assertEquals(evals.size(), readMap.size());
         assertEquals(evals.get("k1"), readMap.get("k1"));
-        assertEquals(evals.get("k2"), readMap.get("k2"));        
+        assertEquals(evals.get("k2"), readMap.get("k2"));
     }
-    
+
+    /**
+     * @since 0.8.0
+     */
+    @Test
+    public void testEvalIndex() throws IOException{
+        HashMap<String,String> evals = new HashMap();
+        for (int i = 0; i < 100; i++){
+            evals.put("k" + i, "v\u00e8\n" + i);
+        }
+        File file = folder.newFile("josman-eval.csv");
+        Josmans.saveEvalMap(evals, file);
+        Assert.assertTrue(new File(folder.getRoot(), "josman-eval.idx").exists());
+
+        String csv = FileUtils.readFileToString(file, "UTF-8");
+        Assert.assertTrue(csv.indexOf("k0,") < csv.indexOf("k1,"));
+        Assert.assertTrue(csv.indexOf("k10,") < csv.indexOf("k2,"));
+
+        Map<String, String> readMap = Josmans.loadEvalMap(file);
+        assertEquals(evals, readMap);
+        Assert.assertNull(readMap.get("k100"));
+
+        // stale index is ignored
+        FileUtils.writeStringToFile(file, "expr,eval\nk0,changed\n", "UTF-8");
+        assertEquals(ImmutableMap.of("k0", "changed"), Josmans.loadEvalMap(file));
+    }
+
     // For testing doc expressions
     public static String calcDate(){
         return new Date().toString();